@@ -1,7 +1,6 @@
 package StevenDimDoors.mod_pocketDim;
 
 import java.util.ArrayList;
-import java.util.Collection;
 
 import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
 
@@ -18,17 +17,16 @@ public class ConnectionHandler  implements IConnectionHandler
 	private static boolean connected = false;
 	private static DDProperties properties = null;
 		
-	//sends a packet to clients containing all the information about the dims and links. Lots of packets, actually. 
+	//sends a packet to clients containing the dims they need to register. Links are sent as the client loads chunks, see LinkSyncTracker.
 	@Override
 	public String connectionReceived(NetLoginHandler netHandler, INetworkManager manager) 
 	{
 		if (properties == null)
 			properties = DDProperties.instance();
 		
-		Collection set = new ArrayList();
-		set.addAll(dimHelper.dimList.keySet());	
-		PacketHandler.onClientJoinPacket(manager, dimHelper.dimList);
-		PacketHandler.onDimCreatedPacket(new DimData(properties.LimboDimensionID, false, 0, 0, 0, 0, 0));
+		ArrayList<DimData> dimensions = new ArrayList<DimData>(dimHelper.dimList.values());
+		dimensions.add(new DimData(properties.LimboDimensionID, false, 0, 0, 0, 0, 0));
+		PacketHandler.onClientJoinPacket(manager, dimensions);
 		return null;
 	}
 
@@ -51,8 +49,10 @@ public class ConnectionHandler  implements IConnectionHandler
 		{
 			System.out.println("Clearing dim cache");
 			dimHelper.instance.save();
+			dimHelper.instance.closeStore();
 			dimHelper.instance.unregsisterDims();
 			dimHelper.dimList.clear();
+			LinkRegistry.instance().clear();
 		    
 		}
 		connected = false;
@@ -0,0 +1,196 @@
+package StevenDimDoors.mod_pocketDim;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import StevenDimDoors.mod_pocketDim.dungeon.DungeonSchematicCache;
+import StevenDimDoors.mod_pocketDim.ticking.IRegularTickReceiver;
+import StevenDimDoors.mod_pocketDim.util.TimingHistogram;
+
+/**
+ * Collects timings and counters for the parts of DimDoors that run on the server thread, so that it's possible
+ * to tell which of them is using up the tick budget. Tick receivers are timed by CommonTickHandler. Everything
+ * here is only touched from the server thread, so no synchronization is needed. Callers that can also run on the
+ * client thread, like link lookups, only record metrics on the server side.
+ */
+public class DDMetrics
+{
+	private static final DDMetrics instance = new DDMetrics();
+
+	private static final String CSV_HEADER = "time,name,count,mean_ns,p99_ns,max_ns,work_items";
+
+	private final LinkedHashMap<String, TimingHistogram> receiverTimings = new LinkedHashMap<String, TimingHistogram>();
+	private final TimingHistogram pocketGenerationTimings = new TimingHistogram();
+	//Time from the moment a pocket was requested until it was ready, including the ticks spent waiting
+	private final TimingHistogram pocketLatencyTimings = new TimingHistogram();
+	private final TimingHistogram saveTimings = new TimingHistogram();
+	private long teleportCount = 0;
+	private long linkLookupCount = 0;
+	private long startTime = System.currentTimeMillis();
+
+	private DDMetrics() { }
+
+	public static DDMetrics instance()
+	{
+		return instance;
+	}
+
+	public TimingHistogram getReceiverTimings(IRegularTickReceiver receiver)
+	{
+		String name = receiver.getClass().getSimpleName();
+		TimingHistogram timings = receiverTimings.get(name);
+		if (timings == null)
+		{
+			timings = new TimingHistogram();
+			receiverTimings.put(name, timings);
+		}
+		return timings;
+	}
+
+	/**
+	 * Records how many units of work (rifts, chunks, links...) a tick receiver processed.
+	 */
+	public void recordWorkItems(IRegularTickReceiver receiver, int count)
+	{
+		getReceiverTimings(receiver).addWorkItems(count);
+	}
+
+	public void recordPocketGeneration(long nanos)
+	{
+		pocketGenerationTimings.record(nanos);
+	}
+
+	public void recordPocketGenerationLatency(long nanos)
+	{
+		pocketLatencyTimings.record(nanos);
+	}
+
+	public void recordSave(long nanos)
+	{
+		saveTimings.record(nanos);
+	}
+
+	public void countTeleport()
+	{
+		teleportCount++;
+	}
+
+	public void countLinkLookup()
+	{
+		linkLookupCount++;
+	}
+
+	public void reset()
+	{
+		for (TimingHistogram timings : receiverTimings.values())
+		{
+			timings.reset();
+		}
+		pocketGenerationTimings.reset();
+		pocketLatencyTimings.reset();
+		saveTimings.reset();
+		teleportCount = 0;
+		linkLookupCount = 0;
+		startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns a human-readable summary of the metrics, one line per subsystem.
+	 */
+	public ArrayList<String> getReport()
+	{
+		ArrayList<String> lines = new ArrayList<String>();
+		lines.add("DimDoors metrics for the last " + ((System.currentTimeMillis() - startTime) / 1000) + " seconds:");
+		for (Entry<String, TimingHistogram> entry : receiverTimings.entrySet())
+		{
+			lines.add(describe(entry.getKey(), entry.getValue()));
+		}
+		lines.add(describe("Pocket generation", pocketGenerationTimings));
+		lines.add(describe("Pocket generation latency", pocketLatencyTimings));
+		if (mod_pocketDim.pocketGenerator != null)
+		{
+			lines.add(mod_pocketDim.pocketGenerator.getStatistics());
+		}
+		if (mod_pocketDim.pocketUnloader != null)
+		{
+			lines.add(mod_pocketDim.pocketUnloader.getStatistics());
+		}
+		if (mod_pocketDim.pocketPool != null && DDProperties.instance().PocketPoolSize > 0)
+		{
+			lines.add(mod_pocketDim.pocketPool.getStatistics());
+		}
+		if (mod_pocketDim.pocketPregenerator != null && DDProperties.instance().PocketPregenerationEnabled)
+		{
+			lines.add(mod_pocketDim.pocketPregenerator.getStatistics());
+		}
+		if (mod_pocketDim.syncBatcher != null)
+		{
+			lines.add(mod_pocketDim.syncBatcher.getStatistics());
+		}
+		lines.add(describe("Save", saveTimings));
+		lines.add("Teleports: " + teleportCount + ", link lookups: " + linkLookupCount);
+		lines.add(DungeonSchematicCache.instance().getStatistics());
+		return lines;
+	}
+
+	/**
+	 * Appends the current metrics to a CSV file, one row per subsystem, writing the header if the file is new.
+	 */
+	public void writeCsv(File file) throws IOException
+	{
+		boolean isNew = !file.exists();
+		if (file.getParentFile() != null)
+		{
+			file.getParentFile().mkdirs();
+		}
+		PrintWriter writer = new PrintWriter(new FileWriter(file, true));
+		try
+		{
+			long time = System.currentTimeMillis();
+			if (isNew)
+			{
+				writer.println(CSV_HEADER);
+			}
+			for (Entry<String, TimingHistogram> entry : receiverTimings.entrySet())
+			{
+				writeCsvRow(writer, time, entry.getKey(), entry.getValue());
+			}
+			writeCsvRow(writer, time, "PocketGeneration", pocketGenerationTimings);
+			writeCsvRow(writer, time, "PocketGenerationLatency", pocketLatencyTimings);
+			writeCsvRow(writer, time, "Save", saveTimings);
+			writer.println(time + ",Teleports," + teleportCount + ",0,0,0,0");
+			writer.println(time + ",LinkLookups," + linkLookupCount + ",0,0,0,0");
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	private static void writeCsvRow(PrintWriter writer, long time, String name, TimingHistogram timings)
+	{
+		writer.println(time + "," + name + "," + timings.getCount() + "," + timings.getMeanNanos() + "," +
+				timings.getPercentileNanos(0.99) + "," + timings.getMaxNanos() + "," + timings.getWorkItems());
+	}
+
+	private static String describe(String name, TimingHistogram timings)
+	{
+		String line = name + ": " + timings.getCount() + " runs, mean " + toMillis(timings.getMeanNanos()) +
+				" ms, p99 " + toMillis(timings.getPercentileNanos(0.99)) + " ms, max " + toMillis(timings.getMaxNanos()) + " ms";
+		if (timings.getWorkItems() > 0)
+		{
+			line += ", " + timings.getWorkItems() + " items";
+		}
+		return line;
+	}
+
+	private static String toMillis(long nanos)
+	{
+		return String.format("%.3f", nanos / 1000000.0);
+	}
+}
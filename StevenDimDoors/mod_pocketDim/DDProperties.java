@@ -94,6 +94,8 @@ public class DDProperties
 	public final boolean DoorRenderingEnabled;
 	public final boolean TNFREAKINGT_Enabled;
 	public final boolean RiftBladeRiftCreationEnabled;
+	public final boolean PocketPregenerationEnabled;
+	public final boolean MetricsConsoleOutputEnabled;
 
 	/**
 	 * Other
@@ -105,6 +107,13 @@ public class DDProperties
 	public final int GatewayGenerationChance;
 	public final int MonolithSpawningChance;
 	public final int LimboReturnRange;
+	public final int MetricsLogInterval;
+	public final int PocketPregenerationRadius;
+	public final int PocketPregenerationLimit;
+	public final int PocketPregenerationMemory;
+	public final int PocketPoolSize;
+	public final int PocketUnloadDelay;
+	public final int LinkSyncRateLimit;
 	public final String CustomSchematicDirectory;
 	
 	//Singleton instance
@@ -222,6 +231,40 @@ public class DDProperties
 				"Sets the number of times a rift can spread. 0 prevents rifts from spreading at all. " +
 				"A value greater than 5 is not recommended as the growth is exponential.").getInt();
 
+		MetricsLogInterval = config.get(Configuration.CATEGORY_GENERAL, "Metrics Log Interval", 0,
+				"Sets how often, in minutes, DimDoors performance metrics are written to " +
+				"DimensionalDoors/metrics.csv in the world folder. 0 disables the periodic dump. " +
+				"The metrics can also be viewed with the dd-metrics command.").getInt();
+
+		MetricsConsoleOutputEnabled = config.get(Configuration.CATEGORY_GENERAL, "Write Metrics To Console", false,
+				"Sets whether the periodic metrics dump is also written to the server console.").getBoolean(false);
+
+		PocketPregenerationEnabled = config.get(Configuration.CATEGORY_GENERAL, "Enable Pocket Pregeneration", false,
+				"Sets whether the pockets behind unused doors near players are generated in the background " +
+				"before anyone walks through them").getBoolean(false);
+
+		PocketPregenerationRadius = config.get(Configuration.CATEGORY_GENERAL, "Pocket Pregeneration Radius", 16,
+				"Sets how close, in blocks, a player must be to an unused door for its pocket to be pregenerated.").getInt();
+
+		PocketPregenerationLimit = config.get(Configuration.CATEGORY_GENERAL, "Pocket Pregeneration Limit", 8,
+				"Sets the maximum number of pregenerated pockets that can be waiting for a visitor at once.").getInt();
+
+		PocketPregenerationMemory = config.get(Configuration.CATEGORY_GENERAL, "Pocket Pregeneration Memory", 64,
+				"Sets the approximate amount of memory, in megabytes, that pregenerated pockets waiting for a visitor " +
+				"may use.").getInt();
+
+		PocketPoolSize = config.get(Configuration.CATEGORY_GENERAL, "Pocket Dimension Pool Size", 4,
+				"Sets how many pocket dimension IDs are registered ahead of time so that new pockets can be created " +
+				"quickly. 0 disables the pool.").getInt();
+
+		PocketUnloadDelay = config.get(Configuration.CATEGORY_GENERAL, "Idle Pocket Unload Delay", 300,
+				"Sets how long, in seconds, a pocket dimension must be empty before its world is saved and unloaded " +
+				"to free memory. 0 leaves unloading to Forge.").getInt();
+
+		LinkSyncRateLimit = config.get(Configuration.CATEGORY_GENERAL, "Link Sync Rate Limit", 1024,
+				"Sets the maximum number of rift updates sent to each player per tick. Updates past the limit wait " +
+				"for the next tick.").getInt();
+
 		LimboBiomeID = config.get(CATEGORY_BIOME, "Limbo Biome ID", 251).getInt();
 		PocketBiomeID = config.get(CATEGORY_BIOME, "Pocket Biome ID", 250).getInt();
 
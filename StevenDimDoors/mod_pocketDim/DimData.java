@@ -3,13 +3,22 @@ package StevenDimDoors.mod_pocketDim;
  * wether or not the dim is a pocket or not, along with its depth. 
  * @Return
  */
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 
 import net.minecraft.util.MathHelper;
 import net.minecraft.world.World;
+import StevenDimDoors.mod_pocketDim.saving.LinkEdit;
+import StevenDimDoors.mod_pocketDim.util.CoordinatePacker;
+import StevenDimDoors.mod_pocketDim.util.LongOpenHashMap;
 
 public class DimData implements Serializable
 {
@@ -27,9 +36,42 @@ public class DimData implements Serializable
 	public boolean isDimRandomRift=false;
 	public DungeonGenerator dungeonGenerator = null;
 	//public boolean isPrivatePocket = false;
-	public HashMap<Integer, HashMap<Integer, HashMap<Integer,  LinkData>>> linksInThisDim = new HashMap();
-	HashMap<Integer, LinkData> dimX;
-	HashMap<Integer, HashMap<Integer, LinkData>> dimY ;
+
+	//Records of where this dimension came from, used to pick dungeons without searching across links.
+	//They're written by DimDataWriter and are transient so that legacy serialization ignores them.
+	//parentDimID is the dimension this pocket was created from, or NO_PARENT if it has none.
+	public transient int parentDimID = NO_PARENT;
+	//packDepth is the number of dungeons in a row from the same pack that lead up to and include this
+	//dimension's dungeon. It's UNKNOWN_PACK_DEPTH for dimensions from older saves until DungeonHelper works it out.
+	//chainHistory holds the type IDs of the dungeons in that chain, most recent first, up to MAX_CHAIN_HISTORY of them.
+	//The array is replaced rather than modified, so it can be shared between copies.
+	public transient int packDepth = 0;
+	public transient int[] chainHistory = EMPTY_CHAIN_HISTORY;
+
+	public static final int NO_PARENT = Integer.MIN_VALUE;
+	public static final int UNKNOWN_PACK_DEPTH = -1;
+	public static final int MAX_CHAIN_HISTORY = 16;
+	public static final int[] EMPTY_CHAIN_HISTORY = new int[0];
+	
+	//Links in this dimension indexed by their packed coordinates, see CoordinatePacker
+	private transient LongOpenHashMap<LinkData> links = new LongOpenHashMap<LinkData>();
+	//The same links bucketed by the 16x16x16 chunk section they're in, used for finding nearby rifts
+	private transient LongOpenHashMap<ArrayList<LinkData>> sections = new LongOpenHashMap<ArrayList<LinkData>>();
+	//Links nested by Z, Y, and X. This is only used to read and write DimData with Java serialization,
+	//which older versions used to save their data.
+	private HashMap<Integer, HashMap<Integer, HashMap<Integer, LinkData>>> linksInThisDim;
+
+	//Save tracking. isDirty means the whole dimension must be rewritten, isHeaderDirty means only
+	//the fields above have changed, and linkEdits lists link changes since the last save.
+	//These are transient so that they're ignored by legacy serialization.
+	private transient boolean isDirty = true;
+	private transient boolean isHeaderDirty = false;
+	private transient ArrayList<LinkEdit> linkEdits = null;
+
+	//If more links than this change between saves, it's cheaper to rewrite the whole dimension
+	private static final int MAX_PENDING_LINK_EDITS = 256;
+	//The number of 16-block sections in a chunk column
+	private static final int MAX_SECTION_Y = 16;
 
 	static final long serialVersionUID = 454342L;
 
@@ -49,113 +91,130 @@ public class DimData implements Serializable
 
 	public LinkData findNearestRift(World world, int range, int x, int y, int z)
 	{
-		LinkData nearest=null;
-		float distance=range+1;
-		int i=-range;
-		int j=-range;
-		int k=-range;
-		DDProperties properties = DDProperties.instance();
-
-		while (i<range)
+		return this.findNearestRift(world, range, x, y, z, false);
+	}
+
+	/**
+	 * Finds the rift closest to a point by Manhattan distance. Only rifts with offsets from -range to range - 1
+	 * on every axis are considered. Ties are broken in favor of the rift with the lowest X, then Y, then Z
+	 * coordinate, which matches scanning the area block by block in that order. Only the links in nearby
+	 * chunk sections are checked, so the cost doesn't grow with the size of the area.
+	 */
+	public LinkData findNearestRift(World world, int range, int x, int y, int z, boolean includeCenter)
+	{
+		LinkData nearest = null;
+		int nearestDistance = range;
+		int riftBlockID = DDProperties.instance().RiftBlockID;
+
+		for (int sectionX = (x - range) >> 4; sectionX <= (x + range - 1) >> 4; sectionX++)
 		{
-			while (j<range)
+			for (int sectionY = (y - range) >> 4; sectionY <= (y + range - 1) >> 4; sectionY++)
 			{
-				while (k<range)
+				for (int sectionZ = (z - range) >> 4; sectionZ <= (z + range - 1) >> 4; sectionZ++)
 				{
-					if (world.getBlockId(x+i, y+j, z+k) == properties.RiftBlockID && MathHelper.abs(i)+MathHelper.abs(j)+MathHelper.abs(k)<distance)
+					ArrayList<LinkData> section = this.sections.get(CoordinatePacker.pack(sectionX, sectionY, sectionZ));
+					if (section == null)
+					{
+						continue;
+					}
+					for (int index = 0; index < section.size(); index++)
 					{
-						if(MathHelper.abs(i)+MathHelper.abs(j)+MathHelper.abs(k)!=0)
+						LinkData link = section.get(index);
+						int dx = link.locXCoord - x;
+						int dy = link.locYCoord - y;
+						int dz = link.locZCoord - z;
+						if (dx < -range || dx >= range || dy < -range || dy >= range || dz < -range || dz >= range)
 						{
-							nearest=this.findLinkAtCoords(x+i, y+j, z+k);
-							distance=MathHelper.abs(i)+MathHelper.abs(j)+MathHelper.abs(k);
+							continue;
+						}
+						int distance = MathHelper.abs(dx) + MathHelper.abs(dy) + MathHelper.abs(dz);
+						if (distance > nearestDistance || (distance == 0 && !includeCenter))
+						{
+							continue;
+						}
+						if (nearest != null && distance == nearestDistance && !isBefore(link, nearest))
+						{
+							continue;
+						}
+						if (world.getBlockId(link.locXCoord, link.locYCoord, link.locZCoord) == riftBlockID)
+						{
+							nearest = link;
+							nearestDistance = distance;
 						}
-
 					}
-					k++;
 				}
-				k=-range;
-				j++;
-
 			}
-			j=-range;
-			i++;		
-
 		}
-
-
 		return nearest;
-
 	}
 
+	/**
+	 * Returns all the rifts with offsets from -range to range - 1 on every axis, excluding the center,
+	 * sorted by their X, Y, and Z coordinates.
+	 */
 	public ArrayList findRiftsInRange(World world, int range, int x, int y, int z)
 	{
-		LinkData nearest=null;
-		ArrayList rifts = new ArrayList();
-		int i=-range;
-		int j=-range;
-		int k=-range;
-		DDProperties properties = DDProperties.instance();
-
-		while (i<range)
+		ArrayList<LinkData> rifts = new ArrayList<LinkData>();
+		int riftBlockID = DDProperties.instance().RiftBlockID;
+
+		for (int sectionX = (x - range) >> 4; sectionX <= (x + range - 1) >> 4; sectionX++)
 		{
-			while (j<range)
+			for (int sectionY = (y - range) >> 4; sectionY <= (y + range - 1) >> 4; sectionY++)
 			{
-				while (k<range)
+				for (int sectionZ = (z - range) >> 4; sectionZ <= (z + range - 1) >> 4; sectionZ++)
 				{
-					if(world.getBlockId(x+i, y+j, z+k)==properties.RiftBlockID)
+					ArrayList<LinkData> section = this.sections.get(CoordinatePacker.pack(sectionX, sectionY, sectionZ));
+					if (section == null)
+					{
+						continue;
+					}
+					for (int index = 0; index < section.size(); index++)
 					{
-						if(MathHelper.abs(i)+MathHelper.abs(j)+MathHelper.abs(k)!=0)
+						LinkData link = section.get(index);
+						int dx = link.locXCoord - x;
+						int dy = link.locYCoord - y;
+						int dz = link.locZCoord - z;
+						if (dx < -range || dx >= range || dy < -range || dy >= range || dz < -range || dz >= range)
 						{
-							nearest=this.findLinkAtCoords(x+i, y+j, z+k);
-							if(nearest!=null)
-							{
-								rifts.add(nearest);
-							}
+							continue;
+						}
+						if ((dx != 0 || dy != 0 || dz != 0) &&
+							world.getBlockId(link.locXCoord, link.locYCoord, link.locZCoord) == riftBlockID)
+						{
+							rifts.add(link);
 						}
-
 					}
-					k++;
 				}
-				k=-range;
-				j++;
-
 			}
-			j=-range;
-			i++;		
-
 		}
-
-
+		Collections.sort(rifts, LOCATION_ORDER);
 		return rifts;
-
 	}
 
-
-
-	public LinkData addLinkToDim(LinkData link)
+	private static boolean isBefore(LinkData first, LinkData second)
 	{
-		if(this.linksInThisDim.containsKey(link.locZCoord))
-		{
-			this.dimY=this.linksInThisDim.get(link.locZCoord);
+		return (LOCATION_ORDER.compare(first, second) < 0);
+	}
 
-			if(this.dimY.containsKey(link.locYCoord))
-			{
-				this.dimX=this.dimY.get(link.locYCoord);
-			}
-			else
-			{
-				this.dimX=new HashMap<Integer, LinkData>();
-			}
-		}
-		else
+	private static final Comparator<LinkData> LOCATION_ORDER = new Comparator<LinkData>()
+	{
+		@Override
+		public int compare(LinkData first, LinkData second)
 		{
-			this.dimX=new HashMap<Integer, LinkData>();
-			this.dimY=new HashMap<Integer, HashMap<Integer, LinkData>>();
+			if (first.locXCoord != second.locXCoord)
+				return (first.locXCoord < second.locXCoord) ? -1 : 1;
+			if (first.locYCoord != second.locYCoord)
+				return (first.locYCoord < second.locYCoord) ? -1 : 1;
+			if (first.locZCoord != second.locZCoord)
+				return (first.locZCoord < second.locZCoord) ? -1 : 1;
+			return 0;
 		}
+	};
 
-		this.dimX.put(link.locXCoord, link);
-		this.dimY.put(link.locYCoord, dimX);
-		this.linksInThisDim.put(link.locZCoord, dimY);
+	public LinkData addLinkToDim(LinkData link)
+	{
+		this.indexLink(link);
+		this.markLinkDirty(link);
 
 		//System.out.println("added link to dim "+this.dimID);
 		return link;	
@@ -181,55 +240,85 @@ public class DimData implements Serializable
 
 	public void removeLinkAtCoords(int locationID, int locationXCoord, int locationYCoord, int locationZCoord)
 	{
-		if (this.linksInThisDim.containsKey(locationZCoord))
+		LinkData removed = this.links.remove(CoordinatePacker.pack(locationXCoord, locationYCoord, locationZCoord));
+		if (removed != null)
 		{
-			this.dimY=this.linksInThisDim.get(locationZCoord);
+			this.removeFromSection(removed);
+			LinkRegistry.instance().remove(removed);
+			this.addLinkEdit(LinkEdit.remove(locationXCoord, locationYCoord, locationZCoord));
+		}
+	}
 
-			if(this.dimY.containsKey(locationYCoord))
-			{
-				this.dimX=this.dimY.get(locationYCoord);
-			}
-			else
+	public LinkData findLinkAtCoords(int locationXCoord, int locationYCoord, int locationZCoord)
+	{
+		return this.links.get(CoordinatePacker.pack(locationXCoord, locationYCoord, locationZCoord));
+	}
+
+	private void indexLink(LinkData link)
+	{
+		LinkData previous = this.links.put(CoordinatePacker.pack(link.locXCoord, link.locYCoord, link.locZCoord), link);
+		if (previous != null)
+		{
+			this.removeFromSection(previous);
+			if (previous != link)
 			{
-				this.dimX=new HashMap<Integer, LinkData>();
+				LinkRegistry.instance().remove(previous);
 			}
 		}
-		else
+		LinkRegistry.instance().add(link);
+		long sectionKey = CoordinatePacker.pack(link.locXCoord >> 4, link.locYCoord >> 4, link.locZCoord >> 4);
+		ArrayList<LinkData> section = this.sections.get(sectionKey);
+		if (section == null)
 		{
-			this.dimX=new HashMap<Integer, LinkData>();
-			this.dimY=new HashMap<Integer, HashMap<Integer, LinkData>>();
+			section = new ArrayList<LinkData>(4);
+			this.sections.put(sectionKey, section);
 		}
-
-		this.dimX.remove(locationXCoord);
-		this.dimY.put(locationYCoord, dimX);
-		this.linksInThisDim.put(locationZCoord, dimY);
+		section.add(link);
 	}
 
-	public LinkData findLinkAtCoords(int locationXCoord, int locationYCoord, int locationZCoord)
+	private void removeFromSection(LinkData link)
 	{
-		try
+		long sectionKey = CoordinatePacker.pack(link.locXCoord >> 4, link.locYCoord >> 4, link.locZCoord >> 4);
+		ArrayList<LinkData> section = this.sections.get(sectionKey);
+		if (section != null)
 		{
-			if(this.linksInThisDim.containsKey(locationZCoord))
+			section.remove(link);
+			if (section.isEmpty())
 			{
-				this.dimY=this.linksInThisDim.get(locationZCoord);
+				this.sections.remove(sectionKey);
+			}
+		}
+	}
 
-				if(this.dimY.containsKey(locationYCoord))
-				{
-					this.dimX=this.dimY.get(locationYCoord);
+	public int getLinkCount()
+	{
+		return this.links.size();
+	}
 
-					if(this.dimX.containsKey(locationXCoord))
-					{
-						return this.dimX.get(locationXCoord);
-					}
+	/**
+	 * Returns the links in this dimension without copying them. The result must not be iterated
+	 * while links are being added to or removed from this dimension.
+	 */
+	public Iterable<LinkData> getLinks()
+	{
+		return this.links;
+	}
 
-				}
-			}
-		}
-		catch(Exception E)
+	/**
+	 * Returns a copy of the list of links in the chunk column at the given chunk coordinates.
+	 */
+	public ArrayList<LinkData> getLinksInChunk(int chunkX, int chunkZ)
+	{
+		ArrayList<LinkData> result = new ArrayList<LinkData>();
+		for (int sectionY = 0; sectionY < MAX_SECTION_Y; sectionY++)
 		{
-			return null;
+			ArrayList<LinkData> section = this.sections.get(CoordinatePacker.pack(chunkX, sectionY, chunkZ));
+			if (section != null)
+			{
+				result.addAll(section);
+			}
 		}
-		return null;		
+		return result;
 	}
 
 	public ArrayList<LinkData> getLinksInDim()
@@ -237,21 +326,123 @@ public class DimData implements Serializable
 		//TODO: We might want to modify this function, but I'm afraid of breaking something right now.
 		//To begin with, the name is wrong. This doesn't print anything! >_o  ~SenseiKiwi
 		
-		ArrayList<LinkData> links = new ArrayList<LinkData>();
-		if (this.linksInThisDim == null)
+		ArrayList<LinkData> result = new ArrayList<LinkData>(this.links.size());
+		for (LinkData linkData : this.links)
 		{
-			return links;
+			result.add(linkData);
 		}
-		for (HashMap<Integer, HashMap<Integer, LinkData>> first : this.linksInThisDim.values())
+		return result;
+	}
+
+	private void writeObject(ObjectOutputStream stream) throws IOException
+	{
+		//Rebuild the nested maps that older versions expect
+		this.linksInThisDim = new HashMap<Integer, HashMap<Integer, HashMap<Integer, LinkData>>>();
+		for (LinkData link : this.links)
+		{
+			HashMap<Integer, HashMap<Integer, LinkData>> dimY = this.linksInThisDim.get(link.locZCoord);
+			if (dimY == null)
+			{
+				dimY = new HashMap<Integer, HashMap<Integer, LinkData>>();
+				this.linksInThisDim.put(link.locZCoord, dimY);
+			}
+			HashMap<Integer, LinkData> dimX = dimY.get(link.locYCoord);
+			if (dimX == null)
+			{
+				dimX = new HashMap<Integer, LinkData>();
+				dimY.put(link.locYCoord, dimX);
+			}
+			dimX.put(link.locXCoord, link);
+		}
+		stream.defaultWriteObject();
+		this.linksInThisDim = null;
+	}
+
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException
+	{
+		stream.defaultReadObject();
+		this.parentDimID = NO_PARENT;
+		this.packDepth = UNKNOWN_PACK_DEPTH;
+		this.chainHistory = EMPTY_CHAIN_HISTORY;
+		this.links = new LongOpenHashMap<LinkData>();
+		this.sections = new LongOpenHashMap<ArrayList<LinkData>>();
+		if (this.linksInThisDim != null)
 		{
-			for (HashMap<Integer, LinkData> second : first.values())
+			for (HashMap<Integer, HashMap<Integer, LinkData>> dimY : this.linksInThisDim.values())
 			{
-				for (LinkData linkData : second.values())
+				for (HashMap<Integer, LinkData> dimX : dimY.values())
 				{
-					links.add(linkData);
+					for (LinkData link : dimX.values())
+					{
+						this.indexLink(link);
+					}
 				}
 			}
-		}	
-		return links;
+			this.linksInThisDim = null;
+		}
+	}
+
+	/**
+	 * Marks the fields of this dimension as changed so that they are written on the next save.
+	 * Must be called after changing fields such as hasBeenFilled or dungeonGenerator directly.
+	 */
+	public void markDirty()
+	{
+		this.isHeaderDirty = true;
+	}
+
+	/**
+	 * Records that a link in this dimension has been changed in place so that it is written on the next save.
+	 */
+	public void markLinkDirty(LinkData link)
+	{
+		LinkRegistry.instance().updateDestination(link);
+		this.addLinkEdit(LinkEdit.put(link));
+	}
+
+	private void addLinkEdit(LinkEdit edit)
+	{
+		if (this.isDirty)
+		{
+			return;
+		}
+		if (this.linkEdits == null)
+		{
+			this.linkEdits = new ArrayList<LinkEdit>();
+		}
+		if (this.linkEdits.size() >= MAX_PENDING_LINK_EDITS)
+		{
+			this.isDirty = true;
+			this.linkEdits = null;
+			return;
+		}
+		this.linkEdits.add(edit);
+	}
+
+	public boolean isDirty()
+	{
+		return this.isDirty;
+	}
+
+	public boolean isHeaderDirty()
+	{
+		return this.isHeaderDirty;
+	}
+
+	public boolean hasLinkEdits()
+	{
+		return (this.linkEdits != null && !this.linkEdits.isEmpty());
+	}
+
+	public List<LinkEdit> getLinkEdits()
+	{
+		return this.linkEdits;
+	}
+
+	public void clearDirty()
+	{
+		this.isDirty = false;
+		this.isHeaderDirty = false;
+		this.linkEdits = null;
 	}
-}
\ No newline at end of file
+}
@@ -34,6 +34,18 @@ public class DungeonGenerator implements Serializable
 		dungeonTypes.put(this, dungeonType); //Hax...
 	}
 
+	/**
+	 * Creates a DungeonGenerator for data loaded from a save file. The dungeon's type is not
+	 * registered here because doing so would overwrite the type of the equivalent dungeon
+	 * that was registered by DungeonHelper. The type is looked up or inferred on demand.
+	 */
+	public DungeonGenerator(int weight, String schematicPath, boolean isOpen)
+	{
+		this.weight = weight;
+		this.schematicPath = schematicPath;
+		this.isOpen = isOpen;
+	}
+
 	public DungeonType getDungeonType()
 	{
 		DungeonType type = dungeonTypes.get(this);
@@ -5,6 +5,7 @@ import net.minecraftforge.client.event.sound.SoundLoadEvent;
 import net.minecraftforge.event.ForgeSubscribe;
 import net.minecraftforge.event.entity.living.LivingFallEvent;
 import net.minecraftforge.event.entity.player.PlayerDropsEvent;
+import net.minecraftforge.event.world.ChunkWatchEvent;
 import net.minecraftforge.event.world.WorldEvent;
 import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
 import cpw.mods.fml.relauncher.Side;
@@ -42,7 +43,9 @@ public class EventHookContainer
     		System.out.println("Registering Pocket Dims");
     		mod_pocketDim.hasInitDims = true;
     		dimHelper.instance.unregsisterDims();
+    		mod_pocketDim.pocketPool.clear();
         	dimHelper.dimList.clear();
+        	LinkRegistry.instance().clear();
         	dimHelper.instance.interDimLinkList.clear();
         	dimHelper.instance.initPockets();
     	}
@@ -84,6 +87,28 @@ public class EventHookContainer
     	mod_pocketDim.limboSpawnInventory.put(event.entityPlayer.username, event.drops);
     }
 
+    @ForgeSubscribe
+    public void onWorldUnload(WorldEvent.Unload event)
+    {
+    	if (!event.world.isRemote && mod_pocketDim.riftScheduler != null)
+    	{
+    		//The rifts of an unloaded world must not be kept around by the scheduler
+    		mod_pocketDim.riftScheduler.unregisterDimension(event.world.provider.dimensionId);
+    	}
+    }
+
+    @ForgeSubscribe
+    public void onChunkWatch(ChunkWatchEvent.Watch event)
+    {
+    	LinkSyncTracker.instance().watchChunk(event.player, event.chunk.chunkXPos, event.chunk.chunkZPos);
+    }
+
+    @ForgeSubscribe
+    public void onChunkUnwatch(ChunkWatchEvent.UnWatch event)
+    {
+    	LinkSyncTracker.instance().unwatchChunk(event.player, event.chunk.chunkXPos, event.chunk.chunkZPos);
+    }
+
     @ForgeSubscribe
     public void onWorldsave(WorldEvent.Save event)
     {
@@ -1,5 +1,6 @@
 package StevenDimDoors.mod_pocketDim;
 
+import java.util.ArrayList;
 import java.util.Random;
 
 import net.minecraft.block.Block;
@@ -7,26 +8,30 @@ import net.minecraft.block.BlockContainer;
 import net.minecraft.world.ChunkCoordIntPair;
 import net.minecraft.world.World;
 import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
-import StevenDimDoors.mod_pocketDim.ticking.IRegularTickReceiver;
 import StevenDimDoors.mod_pocketDim.ticking.IRegularTickSender;
+import StevenDimDoors.mod_pocketDim.ticking.IResumableTickReceiver;
 
 /**
  * Provides methods for applying Limbo decay. Limbo decay refers to the effect that most blocks placed in Limbo
  * naturally change into stone, then cobble, then gravel, and finally Unraveled Fabric as time passes.
  */
-public class LimboDecay implements IRegularTickReceiver {
+public class LimboDecay implements IResumableTickReceiver {
 
 	private static final int MAX_DECAY_SPREAD_CHANCE = 100;
 	private static final int DECAY_SPREAD_CHANCE = 50;
 	private static final int CHUNK_SIZE = 16;
 	private static final int SECTION_HEIGHT = 16;
 	private static final int LIMBO_DECAY_INTERVAL = 10; //Apply spread decay every 10 ticks
+	private static final int LIMBO_DECAY_BUDGET = 2; //Milliseconds of fast decay per tick, the rest carries over
 	
 	//Provides a reversed list of the block IDs that blocks cycle through during decay.
 	private final int[] decaySequence;
 	
 	private Random random;
 	private DDProperties properties = null;
+	//The active Limbo chunks that still have to be decayed in the current round, see resumeTick()
+	private ArrayList<ChunkCoordIntPair> pendingChunks = new ArrayList<ChunkCoordIntPair>();
+	private int pendingIndex = 0;
 	
 	public LimboDecay(IRegularTickSender tickSender, DDProperties properties)
 	{
@@ -39,16 +44,56 @@ public class LimboDecay implements IRegularTickReceiver {
 		
 		this.properties = properties;
 		this.random = new Random();
-		tickSender.registerForTicking(this, LIMBO_DECAY_INTERVAL, false);
+		tickSender.registerForTicking(this, LIMBO_DECAY_INTERVAL, false, IRegularTickSender.PRIORITY_LOW, LIMBO_DECAY_BUDGET);
 	}
 
 	/**
-	 * Applies fast Limbo decay periodically.
+	 * Starts a new round of fast Limbo decay over the chunks that are currently active.
 	 */
 	@Override
 	public void notifyTick()
 	{
-		applyRandomFastDecay();
+		pendingChunks.clear();
+		pendingIndex = 0;
+		World limbo = dimHelper.getWorld(properties.LimboDimensionID);
+		if (limbo != null)
+		{
+			for (Object coordObject : limbo.activeChunkSet)
+			{
+				pendingChunks.add((ChunkCoordIntPair) coordObject);
+			}
+		}
+	}
+
+	/**
+	 * Applies fast Limbo decay to the pending chunks until they're done or the deadline is reached.
+	 */
+	@Override
+	public boolean resumeTick(long deadline)
+	{
+		World limbo = dimHelper.getWorld(properties.LimboDimensionID);
+		if (limbo == null)
+		{
+			pendingChunks.clear();
+			return true;
+		}
+		int start = pendingIndex;
+		while (pendingIndex < pendingChunks.size())
+		{
+			applyRandomFastDecay(limbo, pendingChunks.get(pendingIndex));
+			pendingIndex++;
+			if (System.nanoTime() >= deadline)
+			{
+				break;
+			}
+		}
+		DDMetrics.instance().recordWorkItems(this, pendingIndex - start);
+		if (pendingIndex < pendingChunks.size())
+		{
+			return false;
+		}
+		pendingChunks.clear();
+		return true;
 	}
 
 	/**
@@ -73,36 +118,23 @@ public class LimboDecay implements IRegularTickReceiver {
 	}
 	
 	/**
-	 * Picks random blocks from each active chunk in Limbo and, if decay is applicable, converts them directly to Unraveled Fabric.
+	 * Picks random blocks from an active chunk in Limbo and, if decay is applicable, converts them directly to Unraveled Fabric.
 	 * This decay method is designed to stop players from avoiding Limbo decay by building floating structures.
 	 */
-	private void applyRandomFastDecay()
+	private void applyRandomFastDecay(World limbo, ChunkCoordIntPair chunkCoord)
 	{
 		int x, y, z;
 		int sectionY;
-		int limboHeight;
-		World limbo = dimHelper.getWorld(properties.LimboDimensionID);
+		int limboHeight = limbo.getHeight();
 		
-		if (limbo != null)
+		//Loop through each chunk section and fast-decay a random block
+		//Apply the changes using the world object instead of directly to the chunk so that clients are always notified.
+		for (sectionY = 0; sectionY < limboHeight; sectionY += SECTION_HEIGHT)
 		{
-			limboHeight = limbo.getHeight();
-			
-			//Obtain the coordinates of active chunks in Limbo. For each section of each chunk,
-			//pick a random block and try to apply fast decay.
-			for (Object coordObject : limbo.activeChunkSet)
-			{
-				ChunkCoordIntPair chunkCoord = (ChunkCoordIntPair) coordObject;
-				
-				//Loop through each chunk section and fast-decay a random block
-				//Apply the changes using the world object instead of directly to the chunk so that clients are always notified.
-				for (sectionY = 0; sectionY < limboHeight; sectionY += SECTION_HEIGHT)
-				{
-					x = chunkCoord.chunkXPos * CHUNK_SIZE + random.nextInt(CHUNK_SIZE);
-					z = chunkCoord.chunkZPos * CHUNK_SIZE + random.nextInt(CHUNK_SIZE);
-					y = sectionY + random.nextInt(SECTION_HEIGHT);
-					decayBlockFast(limbo, x, y, z);
-				}
-			}
+			x = chunkCoord.chunkXPos * CHUNK_SIZE + random.nextInt(CHUNK_SIZE);
+			z = chunkCoord.chunkZPos * CHUNK_SIZE + random.nextInt(CHUNK_SIZE);
+			y = sectionY + random.nextInt(SECTION_HEIGHT);
+			decayBlockFast(limbo, x, y, z);
 		}
 	}
 	
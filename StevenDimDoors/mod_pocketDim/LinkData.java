@@ -24,6 +24,13 @@ public class LinkData implements Serializable
 	
 	static final long serialVersionUID = 45544342L;
 	
+	//Positions of this link in the lists of LinkRegistry, plus one so that 0 means the link isn't listed
+	transient int registrySlot = 0;
+	transient int nonPocketRegistrySlot = 0;
+	//The destination this link was last indexed under by LinkRegistry
+	transient int indexedDestDimID;
+	transient long indexedDestKey;
+	
 	
 	public LinkData()
 	{
@@ -55,6 +62,15 @@ public class LinkData implements Serializable
 		this.linkOrientation=orientation;
 	}
 	 
+	public LinkData clone()
+	{
+		LinkData copy = new LinkData(locDimID, destDimID, locXCoord, locYCoord, locZCoord, destXCoord, destYCoord, destZCoord, isLocPocket, linkOrientation);
+		copy.numberofChildren = numberofChildren;
+		copy.exists = exists;
+		copy.hasGennedDoor = hasGennedDoor;
+		return copy;
+	}
+	 
 	public String printLinkData()
 	{
 		//TODO: Rewrite this to make it prettier. @_@ I'm afraid of changing it to ToString() on the off
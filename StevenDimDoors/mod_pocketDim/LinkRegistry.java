@@ -0,0 +1,290 @@
+package StevenDimDoors.mod_pocketDim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Random;
+
+import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
+import StevenDimDoors.mod_pocketDim.util.CoordinatePacker;
+import StevenDimDoors.mod_pocketDim.util.LongOpenHashMap;
+
+/**
+ * Keeps every link in every dimension in a dense list so that a uniformly random link can be picked
+ * in constant time. Links outside of pocket dimensions are also kept in a second list so that
+ * getRandomLink(random, false) doesn't have to reject pocket links. Each link remembers its position
+ * in both lists, so removal swaps the last entry into the vacated slot instead of shifting the list.
+ *
+ * DimData adds and removes links as they are placed in or taken out of a dimension. Since dimHelper.dimList
+ * is also changed directly in several places, links are checked against it before being returned and
+ * any stale entries are dropped then.
+ *
+ * The registry also indexes links by their destination, so the links pointing at a given block or
+ * into a given dimension can be found without scanning every dimension. A link remembers the destination
+ * it was indexed under, since destinations are changed in place. DimData.markLinkDirty() moves the link
+ * to its new destination.
+ */
+public class LinkRegistry
+{
+	private static final LinkRegistry instance = new LinkRegistry();
+
+	private final ArrayList<LinkData> allLinks = new ArrayList<LinkData>();
+	private final ArrayList<LinkData> nonPocketLinks = new ArrayList<LinkData>();
+	//Maps destination dimension IDs to the links pointing into them, grouped by packed destination coordinates
+	private final HashMap<Integer, LongOpenHashMap<ArrayList<LinkData>>> incomingLinks = new HashMap<Integer, LongOpenHashMap<ArrayList<LinkData>>>();
+
+	private LinkRegistry() { }
+
+	public static LinkRegistry instance()
+	{
+		return instance;
+	}
+
+	public void add(LinkData link)
+	{
+		if (link.registrySlot == 0)
+		{
+			allLinks.add(link);
+			link.registrySlot = allLinks.size();
+			addIncoming(link);
+		}
+		else
+		{
+			updateDestination(link);
+		}
+		if (!link.isLocPocket && link.nonPocketRegistrySlot == 0)
+		{
+			nonPocketLinks.add(link);
+			link.nonPocketRegistrySlot = nonPocketLinks.size();
+		}
+	}
+
+	public void remove(LinkData link)
+	{
+		if (link.registrySlot != 0)
+		{
+			removeIncoming(link);
+			LinkData last = allLinks.remove(allLinks.size() - 1);
+			if (last != link)
+			{
+				allLinks.set(link.registrySlot - 1, last);
+				last.registrySlot = link.registrySlot;
+			}
+			link.registrySlot = 0;
+		}
+		if (link.nonPocketRegistrySlot != 0)
+		{
+			LinkData last = nonPocketLinks.remove(nonPocketLinks.size() - 1);
+			if (last != link)
+			{
+				nonPocketLinks.set(link.nonPocketRegistrySlot - 1, last);
+				last.nonPocketRegistrySlot = link.nonPocketRegistrySlot;
+			}
+			link.nonPocketRegistrySlot = 0;
+		}
+	}
+
+	/**
+	 * Removes all the links of a dimension that is being taken out of dimHelper.dimList.
+	 */
+	public void removeDimension(DimData dimData)
+	{
+		for (LinkData link : dimData.getLinks())
+		{
+			remove(link);
+		}
+	}
+
+	/**
+	 * Replaces the contents of the registry with the links of the given dimensions. Used after dimHelper.dimList
+	 * has been replaced, such as when the save data is loaded.
+	 */
+	public void rebuild(Collection<DimData> dimensions)
+	{
+		clear();
+		for (DimData dimData : dimensions)
+		{
+			for (LinkData link : dimData.getLinks())
+			{
+				add(link);
+			}
+		}
+	}
+
+	public void clear()
+	{
+		for (LinkData link : allLinks)
+		{
+			link.registrySlot = 0;
+			link.nonPocketRegistrySlot = 0;
+		}
+		allLinks.clear();
+		nonPocketLinks.clear();
+		incomingLinks.clear();
+	}
+
+	/**
+	 * Moves a link to its current destination in the reverse index if its destination was changed in place.
+	 */
+	public void updateDestination(LinkData link)
+	{
+		if (link.registrySlot != 0 && (link.indexedDestDimID != link.destDimID ||
+			link.indexedDestKey != CoordinatePacker.pack(link.destXCoord, link.destYCoord, link.destZCoord)))
+		{
+			removeIncoming(link);
+			addIncoming(link);
+		}
+	}
+
+	/**
+	 * Returns the links whose destination is the given block. The result is a copy, so the links
+	 * may be moved or removed while iterating over it.
+	 */
+	public ArrayList<LinkData> getLinksTo(int dimID, int x, int y, int z)
+	{
+		ArrayList<LinkData> result = new ArrayList<LinkData>();
+		LongOpenHashMap<ArrayList<LinkData>> dimLinks = incomingLinks.get(dimID);
+		if (dimLinks != null)
+		{
+			ArrayList<LinkData> bucket = dimLinks.get(CoordinatePacker.pack(x, y, z));
+			if (bucket != null)
+			{
+				for (LinkData link : bucket)
+				{
+					if (link.destDimID == dimID && link.destXCoord == x && link.destYCoord == y &&
+						link.destZCoord == z && isLive(link))
+					{
+						result.add(link);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the links whose destination is in the given dimension. The result is a copy, so the links
+	 * may be moved or removed while iterating over it.
+	 */
+	public ArrayList<LinkData> getLinksToDimension(int dimID)
+	{
+		ArrayList<LinkData> result = new ArrayList<LinkData>();
+		LongOpenHashMap<ArrayList<LinkData>> dimLinks = incomingLinks.get(dimID);
+		if (dimLinks != null)
+		{
+			for (ArrayList<LinkData> bucket : dimLinks)
+			{
+				for (LinkData link : bucket)
+				{
+					if (link.destDimID == dimID && isLive(link))
+					{
+						result.add(link);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns whether any link points into the given dimension.
+	 */
+	public boolean hasLinksTo(int dimID)
+	{
+		LongOpenHashMap<ArrayList<LinkData>> dimLinks = incomingLinks.get(dimID);
+		if (dimLinks != null)
+		{
+			for (ArrayList<LinkData> bucket : dimLinks)
+			{
+				for (LinkData link : bucket)
+				{
+					if (link.destDimID == dimID && isLive(link))
+					{
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the link is currently held by a DimData. Links that are replaced or removed are
+	 * taken out of the registry, so this can be used to tell whether a cached reference is still current.
+	 */
+	public boolean contains(LinkData link)
+	{
+		return link.registrySlot != 0;
+	}
+
+	public int size()
+	{
+		return allLinks.size();
+	}
+
+	/**
+	 * Returns a link chosen uniformly at random from all the links in dimHelper.dimList, or null if there are none.
+	 * If allowInPocket is false, only links outside of pocket dimensions are considered.
+	 */
+	public LinkData getRandomLink(Random random, boolean allowInPocket)
+	{
+		ArrayList<LinkData> pool = allowInPocket ? allLinks : nonPocketLinks;
+		while (!pool.isEmpty())
+		{
+			LinkData link = pool.get(random.nextInt(pool.size()));
+			if (isLive(link))
+			{
+				return link;
+			}
+			remove(link);
+		}
+		return null;
+	}
+
+	private void addIncoming(LinkData link)
+	{
+		link.indexedDestDimID = link.destDimID;
+		link.indexedDestKey = CoordinatePacker.pack(link.destXCoord, link.destYCoord, link.destZCoord);
+
+		LongOpenHashMap<ArrayList<LinkData>> dimLinks = incomingLinks.get(link.indexedDestDimID);
+		if (dimLinks == null)
+		{
+			dimLinks = new LongOpenHashMap<ArrayList<LinkData>>();
+			incomingLinks.put(link.indexedDestDimID, dimLinks);
+		}
+		ArrayList<LinkData> bucket = dimLinks.get(link.indexedDestKey);
+		if (bucket == null)
+		{
+			bucket = new ArrayList<LinkData>(2);
+			dimLinks.put(link.indexedDestKey, bucket);
+		}
+		bucket.add(link);
+	}
+
+	private void removeIncoming(LinkData link)
+	{
+		LongOpenHashMap<ArrayList<LinkData>> dimLinks = incomingLinks.get(link.indexedDestDimID);
+		if (dimLinks != null)
+		{
+			ArrayList<LinkData> bucket = dimLinks.get(link.indexedDestKey);
+			if (bucket != null)
+			{
+				bucket.remove(link);
+				if (bucket.isEmpty())
+				{
+					dimLinks.remove(link.indexedDestKey);
+					if (dimLinks.isEmpty())
+					{
+						incomingLinks.remove(link.indexedDestDimID);
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean isLive(LinkData link)
+	{
+		DimData dimData = dimHelper.dimList.get(link.locDimID);
+		return dimData != null && dimData.findLinkAtCoords(link.locXCoord, link.locYCoord, link.locZCoord) == link;
+	}
+}
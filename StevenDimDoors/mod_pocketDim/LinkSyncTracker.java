@@ -0,0 +1,100 @@
+package StevenDimDoors.mod_pocketDim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.world.World;
+import net.minecraftforge.common.DimensionManager;
+import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
+import StevenDimDoors.mod_pocketDim.util.CoordinatePacker;
+
+/**
+ * Keeps track of which chunks each player's client has loaded, so that link data is only sent to the clients
+ * that can see it. Clients only look up links in the world they're in, so instead of sending every link in
+ * every dimension when a player joins, the links in a chunk are sent when the chunk is sent to the player.
+ * Changes to links are then only sent to the players watching the chunk that the link is in.
+ *
+ * Minecraft sends and drops chunks as players move and change dimensions, and EventHookContainer forwards
+ * those events here. Chunks are tracked by their coordinates alone, since the chunks of the previous world
+ * are always dropped before the chunks of the next world are sent.
+ */
+public class LinkSyncTracker
+{
+	private static final LinkSyncTracker instance = new LinkSyncTracker();
+
+	//Maps player names to the packed coordinates of the chunks they're watching
+	private final HashMap<String, HashSet<Long>> watchedChunks = new HashMap<String, HashSet<Long>>();
+
+	private LinkSyncTracker() { }
+
+	public static LinkSyncTracker instance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Records that a chunk has been sent to a player and sends the player the links in that chunk.
+	 */
+	public void watchChunk(EntityPlayer player, int chunkX, int chunkZ)
+	{
+		HashSet<Long> chunks = watchedChunks.get(player.username);
+		if (chunks == null)
+		{
+			chunks = new HashSet<Long>();
+			watchedChunks.put(player.username, chunks);
+		}
+		chunks.add(CoordinatePacker.pack(chunkX, 0, chunkZ));
+
+		int dimensionID = player.worldObj.provider.dimensionId;
+		DimData dimData = dimHelper.dimList.get(dimensionID);
+		if (dimData != null)
+		{
+			PacketHandler.sendChunkLinks(player, dimensionID, chunkX, chunkZ, dimData.getLinksInChunk(chunkX, chunkZ));
+		}
+	}
+
+	public void unwatchChunk(EntityPlayer player, int chunkX, int chunkZ)
+	{
+		HashSet<Long> chunks = watchedChunks.get(player.username);
+		if (chunks != null)
+		{
+			chunks.remove(CoordinatePacker.pack(chunkX, 0, chunkZ));
+		}
+	}
+
+	public void removePlayer(EntityPlayer player)
+	{
+		watchedChunks.remove(player.username);
+	}
+
+	public void clear()
+	{
+		watchedChunks.clear();
+	}
+
+	/**
+	 * Returns the players whose clients have loaded the chunk that contains the given link.
+	 */
+	public ArrayList<EntityPlayer> getWatchers(LinkData link)
+	{
+		ArrayList<EntityPlayer> watchers = new ArrayList<EntityPlayer>();
+		World world = DimensionManager.getWorld(link.locDimID);
+		if (world == null)
+		{
+			return watchers;
+		}
+		Long key = CoordinatePacker.pack(link.locXCoord >> 4, 0, link.locZCoord >> 4);
+		for (Object entity : world.playerEntities)
+		{
+			EntityPlayer player = (EntityPlayer) entity;
+			HashSet<Long> chunks = watchedChunks.get(player.username);
+			if (chunks != null && chunks.contains(key))
+			{
+				watchers.add(player);
+			}
+		}
+		return watchers;
+	}
+}
@@ -4,9 +4,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
 
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
@@ -154,99 +153,48 @@ public class PacketHandler implements IPacketHandler
 
 	}
 
-	public static void onClientJoinPacket(INetworkManager manager, HashMap<Integer, DimData> dimList)
+	/**
+	 * Sends a new client the dimensions it needs to know about. Only the dimensions are sent here, since the
+	 * client has to register pocket dimensions before it can be moved into them. Links are sent as the chunks
+	 * that contain them are sent to the player, see LinkSyncTracker.
+	 */
+	public static void onClientJoinPacket(INetworkManager manager, Collection<DimData> dimensions)
 	{
-
-		Collection<Integer> dimIDs= dimList.keySet();
-		Collection<DimData> dimDataSet= dimList.values();
-		Collection<Packet250CustomPayload> packetsToSend = new HashSet();
-
-
-
-		for(DimData data : dimDataSet)
+		ArrayList<SyncUpdate> updates = new ArrayList<SyncUpdate>(dimensions.size());
+		for (DimData data : dimensions)
 		{
-
-			manager.addToSendQueue(PacketHandler.onDimCreatedPacket(data));
-
-			Collection <HashMap<Integer, HashMap<Integer,  LinkData>>> linkList = data.linksInThisDim.values();
-
-			for(HashMap map :  linkList )
-			{
-
-				Collection <HashMap<Integer,  LinkData>> linkList2 = map.values();
-
-				for(HashMap map2 : linkList2)
-				{
-					Collection <LinkData> linkList3 = map2.values();
-
-					for(LinkData link : linkList3)
-					{
-
-						packetsToSend.add(( PacketHandler.onLinkCreatedPacket(link)));
-
-
-					}
-
-
-
-				}
-
-			}
-
-
-
-
-
+			updates.add(SyncUpdate.dimension(data));
 		}
-		for (Packet250CustomPayload packet : packetsToSend)
+		for (Packet250CustomPayload packet : SyncUpdateCodec.encode(updates))
 		{
 			manager.addToSendQueue(packet);
 		}
-
 	}
 
-
-	public static Packet250CustomPayload onLinkCreatedPacket(LinkData link)
+	/**
+	 * Notifies the players that can see a link that it has been created or changed. isNew indicates whether
+	 * there was no link at the same location before.
+	 */
+	public static void onLinkCreatedPacket(LinkData link, boolean isNew)
 	{
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		DataOutputStream  dataOut = new DataOutputStream(bos);
-
-		try
+		for (EntityPlayer player : LinkSyncTracker.instance().getWatchers(link))
 		{
-
-			dataOut.writeByte(PacketHandler.registerLinkPacketID);
-			dataOut.writeInt(link.locDimID);
-			dataOut.writeInt(link.destDimID);
-			dataOut.writeInt(link.locXCoord);
-			dataOut.writeInt(link.locYCoord);
-			dataOut.writeInt(link.locZCoord);
-			dataOut.writeInt(link.destXCoord);
-			dataOut.writeInt(link.destYCoord);
-			dataOut.writeInt(link.destZCoord);
-			dataOut.writeBoolean(link.isLocPocket);
-
-			dataOut.writeInt(link.linkOrientation);
-			dataOut.writeBoolean(link.hasGennedDoor);
-
-
+			mod_pocketDim.syncBatcher.enqueue(player, SyncUpdate.linkPut(link, isNew));
 		}
+	}
 
-
-
-		catch (IOException e) 
+	/**
+	 * Sends a player all the links in a chunk. The client drops any links it had in that chunk before.
+	 */
+	public static void sendChunkLinks(EntityPlayer player, int dimID, int chunkX, int chunkZ, Collection<LinkData> links)
+	{
+		mod_pocketDim.syncBatcher.enqueue(player, SyncUpdate.chunkCleared(dimID, chunkX, chunkZ));
+		for (LinkData link : links)
 		{
-			e.printStackTrace();
+			mod_pocketDim.syncBatcher.enqueue(player, SyncUpdate.linkPut(link, true));
 		}
-
-		Packet250CustomPayload packet= new Packet250CustomPayload();
-		packet.channel="DimDoorPackets";
-		packet.data = bos.toByteArray();
-		packet.length = bos.size();;
-		PacketDispatcher.sendPacketToAllPlayers(packet);
-		return packet;
 	}
 
-
 	public static Packet250CustomPayload linkKeyPacket(LinkData link, int key)
 	{
 		ByteArrayOutputStream bos = new ByteArrayOutputStream();
@@ -283,87 +231,29 @@ public class PacketHandler implements IPacketHandler
 	}
 
 
+	/**
+	 * Notifies the players that can see a link that it has been removed.
+	 */
 	public static void onLinkRemovedPacket(LinkData link)
 	{
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		DataOutputStream  dataOut = new DataOutputStream(bos);
-
-
-		try
+		for (EntityPlayer player : LinkSyncTracker.instance().getWatchers(link))
 		{
-
-			dataOut.writeByte(PacketHandler.removeLinkPacketID);
-			dataOut.writeInt(link.locDimID);
-			dataOut.writeInt(link.destDimID);
-			dataOut.writeInt(link.locXCoord);
-			dataOut.writeInt(link.locYCoord);
-			dataOut.writeInt(link.locZCoord);
-			dataOut.writeInt(link.destXCoord);
-			dataOut.writeInt(link.destYCoord);
-			dataOut.writeInt(link.destZCoord);
-			dataOut.writeBoolean(link.isLocPocket);
-
-
-
+			mod_pocketDim.syncBatcher.enqueue(player, SyncUpdate.linkRemoved(link));
 		}
-
-
-
-		catch (IOException e) 
-		{
-			e.printStackTrace();
-		}
-
-		Packet250CustomPayload packet= new Packet250CustomPayload();
-		packet.channel="DimDoorPackets";
-		packet.data = bos.toByteArray();
-		packet.length = bos.size();;
-		PacketDispatcher.sendPacketToAllPlayers(packet);
 	}
 
-
-	public static Packet250CustomPayload onDimCreatedPacket(DimData data)
+	/**
+	 * Notifies all players that a dimension has been created, so that their clients can register it. This is
+	 * sent right away rather than batched, since a player may be moved into the new dimension in the same tick.
+	 */
+	public static void onDimCreatedPacket(DimData data)
 	{
-
-
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		DataOutputStream dataOut = new DataOutputStream(bos);
-
-
-		try
-		{
-
-			dataOut.writeByte(PacketHandler.regsiterDimPacketID);
-			dataOut.writeInt(data.dimID);
-			dataOut.writeBoolean(data.isPocket);
-
-			dataOut.writeInt(data.depth);
-			dataOut.writeInt(data.exitDimLink.destDimID);
-			dataOut.writeInt(data.exitDimLink.destXCoord);
-			dataOut.writeInt(data.exitDimLink.destYCoord);
-			dataOut.writeInt(data.exitDimLink.destZCoord);
-
-
-
-
-		}
-
-
-
-		catch (IOException e) 
+		ArrayList<SyncUpdate> updates = new ArrayList<SyncUpdate>(1);
+		updates.add(SyncUpdate.dimension(data));
+		for (Packet250CustomPayload packet : SyncUpdateCodec.encode(updates))
 		{
-			e.printStackTrace();
+			PacketDispatcher.sendPacketToAllPlayers(packet);
 		}
-
-		Packet250CustomPayload packet= new Packet250CustomPayload();
-		packet.channel="DimDoorPackets";
-		packet.data = bos.toByteArray();
-		packet.length = bos.size();
-
-		PacketDispatcher.sendPacketToAllPlayers(packet);
-		return packet;
-
-
 	}
 	/**
 		 private void handleObjectPacket(Packet250CustomPayload packet, Player player) 
@@ -28,8 +28,8 @@ public class PlayerRespawnTracker implements IPlayerTracker
 
 	@Override
 	public void onPlayerLogout(EntityPlayer player) {
-		// TODO Auto-generated method stub
-		
+		LinkSyncTracker.instance().removePlayer(player);
+		mod_pocketDim.syncBatcher.removePlayer(player);
 	}
 
 	@Override
@@ -1,15 +1,13 @@
 package StevenDimDoors.mod_pocketDim;
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.util.HashMap;
 import java.util.Random;
 
 import net.minecraft.world.World;
 import StevenDimDoors.mod_pocketDim.dungeon.DungeonSchematic;
+import StevenDimDoors.mod_pocketDim.dungeon.DungeonSchematicCache;
 import StevenDimDoors.mod_pocketDim.dungeon.pack.DungeonPackConfig;
 import StevenDimDoors.mod_pocketDim.helpers.DungeonHelper;
 import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
-import StevenDimDoors.mod_pocketDim.schematic.InvalidSchematicException;
 
 public class SchematicLoader 
 {
@@ -17,11 +15,39 @@ public class SchematicLoader
 	
 	public static boolean generateDungeonPocket(LinkData link, DDProperties properties)
 	{
-		if (link == null || properties == null)
+		DungeonSchematic.Placement placement = prepareDungeonPocket(link, properties);
+		if (placement == null)
 		{
 			return false;
 		}
 		try
+		{
+			placement.placeBlocks(Long.MAX_VALUE);
+			placement.placeTileEntities();
+			placement.fillContainers(Long.MAX_VALUE);
+			placement.setUpLinks();
+			return true;
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	/**
+	 * Picks the dungeon for the pocket that a link leads to, loads it and adjusts the link's destination so that
+	 * the dungeon fits in the world. The blocks aren't placed yet. The returned Placement does that in stages,
+	 * which lets PocketGenerationScheduler spread the work over several ticks.
+	 * @return the placement of the dungeon, or null if the dungeon couldn't be prepared
+	 */
+	public static DungeonSchematic.Placement prepareDungeonPocket(LinkData link, DDProperties properties)
+	{
+		if (link == null || properties == null)
+		{
+			return null;
+		}
+		try
 		{
 			String schematicPath;
 			int originDimID = link.locDimID;
@@ -32,7 +58,7 @@ public class SchematicLoader
 			
 			if (dimList.containsKey(destDimID))
 			{
-				dimList.get(destDimID).hasBeenFilled = true;
+				//hasBeenFilled is set by the caller once the dungeon has actually been placed
 				if (dimHelper.getWorld(destDimID) == null)
 				{
 					dimHelper.initDimension(destDimID);
@@ -51,17 +77,16 @@ public class SchematicLoader
 			}
 			else
 			{
-				return false;
+				return null;
 			}
 			
-			DungeonSchematic dungeon = checkSourceAndLoad(schematicPath);
+			//The schematic comes from the cache with its import filters already applied. It's shared, so it must not be modified.
+			DungeonSchematic dungeon = DungeonSchematicCache.instance().get(schematicPath, properties);
 			boolean valid;
 			
 			//Validate the dungeon's dimensions
 			if (hasValidDimensions(dungeon))
 			{
-				dungeon.applyImportFilters(properties);
-				
 				//Check that the dungeon has an entrance or we'll have a crash
 				if (dungeon.getEntranceDoorLocation() != null)
 				{
@@ -85,9 +110,8 @@ public class SchematicLoader
 				//That will have to wait until our code is updated to support that more easily.
 				System.err.println("The dungeon will not be loaded.");
 				DungeonGenerator defaultError = dungeonHelper.getDefaultErrorDungeon();
-				dimList.get(destDimID).dungeonGenerator = defaultError;
-				dungeon = checkSourceAndLoad(defaultError.schematicPath);
-				dungeon.applyImportFilters(properties);
+				DungeonHelper.setDungeon(dimList.get(destDimID), defaultError);
+				dungeon = DungeonSchematicCache.instance().get(defaultError.schematicPath, properties);
 			}
 			
 			//Adjust the height at which the dungeon is placed to prevent vertical clipping
@@ -99,14 +123,13 @@ public class SchematicLoader
 			}
 			DungeonPackConfig packConfig = dungeonHelper.getDimDungeonPack(destDimID).getConfig();
 			
-			dungeon.copyToWorld(world, new Point3D(link.destXCoord, link.destYCoord, link.destZCoord),
+			return dungeon.createPlacement(world, new Point3D(link.destXCoord, link.destYCoord, link.destZCoord),
 					link.linkOrientation, originDimID, destDimID, packConfig.doDistortDoorCoordinates());
-			return true;
 		}
 		catch (Exception e)
 		{
 			e.printStackTrace();
-			return false;
+			return null;
 		}
 	}
 
@@ -140,21 +163,6 @@ public class SchematicLoader
 				dungeon.getLength() <= DungeonHelper.MAX_DUNGEON_LENGTH);
 	}
 	
-	private static DungeonSchematic checkSourceAndLoad(String schematicPath) throws FileNotFoundException, InvalidSchematicException
-	{
-		//FIXME: Change this code once we introduce an isInternal flag in dungeon data
-		DungeonSchematic dungeon;
-		if ((new File(schematicPath)).exists())
-		{
-			dungeon = DungeonSchematic.readFromFile(schematicPath);
-		}
-		else
-		{
-			dungeon = DungeonSchematic.readFromResource(schematicPath);
-		}
-		return dungeon;
-	}
-	
 	private static long calculateDestinationSeed(LinkData link)
 	{
 		//Time for some witchcraft.
@@ -0,0 +1,54 @@
+package StevenDimDoors.mod_pocketDim;
+
+/**
+ * A single change to the dimension or link data that a client knows about. Updates are queued for each player
+ * and sent in batches by SyncUpdateBatcher, encoded with SyncUpdateCodec.
+ */
+public class SyncUpdate
+{
+	public static final int DIMENSION = 1;
+	public static final int LINK_PUT = 2;
+	public static final int LINK_REMOVED = 3;
+	//Tells the client to drop the links it has in a chunk before the chunk's current links are sent
+	public static final int CHUNK_CLEARED = 4;
+
+	public final int type;
+	public final int dimID;
+	public final DimData dimension;
+	public final LinkData link;
+	public final int chunkX;
+	public final int chunkZ;
+	//For LINK_PUT, whether the client can't have had a link at the same location before this update
+	public final boolean isNew;
+
+	private SyncUpdate(int type, int dimID, DimData dimension, LinkData link, int chunkX, int chunkZ, boolean isNew)
+	{
+		this.type = type;
+		this.dimID = dimID;
+		this.dimension = dimension;
+		this.link = link;
+		this.chunkX = chunkX;
+		this.chunkZ = chunkZ;
+		this.isNew = isNew;
+	}
+
+	public static SyncUpdate dimension(DimData dimension)
+	{
+		return new SyncUpdate(DIMENSION, dimension.dimID, dimension, null, 0, 0, false);
+	}
+
+	public static SyncUpdate linkPut(LinkData link, boolean isNew)
+	{
+		return new SyncUpdate(LINK_PUT, link.locDimID, null, link, link.locXCoord >> 4, link.locZCoord >> 4, isNew);
+	}
+
+	public static SyncUpdate linkRemoved(LinkData link)
+	{
+		return new SyncUpdate(LINK_REMOVED, link.locDimID, null, link, link.locXCoord >> 4, link.locZCoord >> 4, false);
+	}
+
+	public static SyncUpdate chunkCleared(int dimID, int chunkX, int chunkZ)
+	{
+		return new SyncUpdate(CHUNK_CLEARED, dimID, null, null, chunkX, chunkZ, false);
+	}
+}
@@ -0,0 +1,370 @@
+package StevenDimDoors.mod_pocketDim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import net.minecraft.network.packet.Packet250CustomPayload;
+
+/**
+ * Encodes batches of SyncUpdates into as few Packet250CustomPayloads as possible and decodes them again on the client.
+ *
+ * Each packet holds one frame. A frame starts with a flags byte, followed by the records, which are read until
+ * the end of the frame. If the frame is compressed, the flags byte is followed by the uncompressed length and
+ * the deflated records. Integers are written as variable-length integers, so small values take a single byte,
+ * and signed values are zigzag-encoded first so that small negative values are also short. Link coordinates
+ * are written as the difference from the previous link in the same frame, which keeps them small since updates
+ * usually come from the same area. Frames never share state, so each packet can be decoded on its own.
+ *
+ * Records are never split across frames. A frame is closed once it can't fit another record of the largest
+ * size, which keeps every packet below the size limit of Packet250CustomPayload even if deflating doesn't help.
+ */
+public class SyncUpdateCodec
+{
+	public static final String CHANNEL = "pocketDim";
+
+	private static final int FLAG_DEFLATED = 1;
+	//Packet250CustomPayload can carry up to 32767 bytes. Leave room for the frame header and for deflate's overhead
+	//on data that doesn't compress.
+	private static final int MAX_FRAME_SIZE = 32000;
+	//The largest record is a link: a type byte, 8 integers of at most 5 bytes each, a flags byte and the orientation
+	private static final int MAX_RECORD_SIZE = 48;
+	//Frames smaller than this aren't worth compressing
+	private static final int COMPRESSION_THRESHOLD = 256;
+
+	private static final int LINK_IS_LOC_POCKET = 1;
+	private static final int LINK_HAS_GENNED_DOOR = 2;
+
+	private SyncUpdateCodec() { }
+
+	/**
+	 * Encodes the updates in order and returns the packets to send, or an empty list if there are no updates.
+	 */
+	public static ArrayList<Packet250CustomPayload> encode(List<SyncUpdate> updates)
+	{
+		ArrayList<Packet250CustomPayload> packets = new ArrayList<Packet250CustomPayload>();
+		FrameWriter writer = new FrameWriter();
+		for (SyncUpdate update : updates)
+		{
+			if (writer.size() > MAX_FRAME_SIZE - MAX_RECORD_SIZE)
+			{
+				packets.add(writer.finish());
+				writer = new FrameWriter();
+			}
+			writer.write(update);
+		}
+		if (writer.size() > 0)
+		{
+			packets.add(writer.finish());
+		}
+		return packets;
+	}
+
+	/**
+	 * Decodes the updates in a packet produced by encode().
+	 */
+	public static ArrayList<SyncUpdate> decode(byte[] data) throws IOException
+	{
+		if (data.length == 0)
+		{
+			throw new IOException("The sync packet is empty.");
+		}
+		byte[] records;
+		int offset;
+		if ((data[0] & FLAG_DEFLATED) != 0)
+		{
+			FrameReader header = new FrameReader(data, 1, data.length);
+			int length = header.readVarInt();
+			records = new byte[length];
+			Inflater inflater = new Inflater();
+			try
+			{
+				inflater.setInput(data, header.position, data.length - header.position);
+				int count = 0;
+				while (count < length && !inflater.finished())
+				{
+					int inflated = inflater.inflate(records, count, length - count);
+					if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					{
+						break;
+					}
+					count += inflated;
+				}
+				if (count != length)
+				{
+					throw new IOException("The sync packet is truncated.");
+				}
+			}
+			catch (DataFormatException e)
+			{
+				throw new IOException("The sync packet is corrupted.");
+			}
+			finally
+			{
+				inflater.end();
+			}
+			offset = 0;
+		}
+		else
+		{
+			records = data;
+			offset = 1;
+		}
+
+		ArrayList<SyncUpdate> updates = new ArrayList<SyncUpdate>();
+		FrameReader reader = new FrameReader(records, offset, records.length);
+		while (reader.hasMore())
+		{
+			updates.add(reader.read());
+		}
+		return updates;
+	}
+
+	private static class FrameWriter
+	{
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream(1024);
+		private int lastX, lastY, lastZ;
+		private int lastDestX, lastDestY, lastDestZ;
+
+		public int size()
+		{
+			return output.size();
+		}
+
+		public void write(SyncUpdate update)
+		{
+			output.write(update.type);
+			switch (update.type)
+			{
+				case SyncUpdate.DIMENSION:
+					DimData dimension = update.dimension;
+					writeSignedVarInt(dimension.dimID);
+					output.write(dimension.isPocket ? 1 : 0);
+					writeSignedVarInt(dimension.depth);
+					writeSignedVarInt(dimension.exitDimLink.destDimID);
+					writeSignedVarInt(dimension.exitDimLink.destXCoord);
+					writeSignedVarInt(dimension.exitDimLink.destYCoord);
+					writeSignedVarInt(dimension.exitDimLink.destZCoord);
+					break;
+				case SyncUpdate.LINK_PUT:
+					LinkData link = update.link;
+					writeSignedVarInt(link.locDimID);
+					writeLocation(link);
+					writeSignedVarInt(link.destDimID);
+					writeSignedVarInt(link.destXCoord - lastDestX);
+					writeSignedVarInt(link.destYCoord - lastDestY);
+					writeSignedVarInt(link.destZCoord - lastDestZ);
+					lastDestX = link.destXCoord;
+					lastDestY = link.destYCoord;
+					lastDestZ = link.destZCoord;
+					int flags = 0;
+					if (link.isLocPocket) flags |= LINK_IS_LOC_POCKET;
+					if (link.hasGennedDoor) flags |= LINK_HAS_GENNED_DOOR;
+					output.write(flags);
+					writeVarInt(link.linkOrientation);
+					break;
+				case SyncUpdate.LINK_REMOVED:
+					writeSignedVarInt(update.link.locDimID);
+					writeLocation(update.link);
+					break;
+				case SyncUpdate.CHUNK_CLEARED:
+					writeSignedVarInt(update.dimID);
+					writeSignedVarInt(update.chunkX);
+					writeSignedVarInt(update.chunkZ);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown sync update type: " + update.type);
+			}
+		}
+
+		public Packet250CustomPayload finish()
+		{
+			byte[] records = output.toByteArray();
+			byte[] data = null;
+			if (records.length >= COMPRESSION_THRESHOLD)
+			{
+				data = deflate(records);
+			}
+			if (data == null)
+			{
+				//Store the records as they are
+				data = new byte[records.length + 1];
+				data[0] = 0;
+				System.arraycopy(records, 0, data, 1, records.length);
+			}
+
+			Packet250CustomPayload packet = new Packet250CustomPayload();
+			packet.channel = CHANNEL;
+			packet.data = data;
+			packet.length = data.length;
+			return packet;
+		}
+
+		/**
+		 * Returns the deflated frame, or null if deflating doesn't make it any smaller.
+		 */
+		private static byte[] deflate(byte[] records)
+		{
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(records.length / 2);
+			compressed.write(FLAG_DEFLATED);
+			writeVarInt(compressed, records.length);
+
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			byte[] buffer = new byte[1024];
+			try
+			{
+				deflater.setInput(records);
+				deflater.finish();
+				while (!deflater.finished())
+				{
+					int count = deflater.deflate(buffer);
+					compressed.write(buffer, 0, count);
+					if (compressed.size() > records.length)
+					{
+						return null;
+					}
+				}
+			}
+			finally
+			{
+				deflater.end();
+			}
+			return compressed.toByteArray();
+		}
+
+		private void writeLocation(LinkData link)
+		{
+			writeSignedVarInt(link.locXCoord - lastX);
+			writeSignedVarInt(link.locYCoord - lastY);
+			writeSignedVarInt(link.locZCoord - lastZ);
+			lastX = link.locXCoord;
+			lastY = link.locYCoord;
+			lastZ = link.locZCoord;
+		}
+
+		private void writeSignedVarInt(int value)
+		{
+			writeVarInt(output, (value << 1) ^ (value >> 31));
+		}
+
+		private void writeVarInt(int value)
+		{
+			writeVarInt(output, value);
+		}
+
+		private static void writeVarInt(ByteArrayOutputStream output, int value)
+		{
+			while ((value & ~0x7F) != 0)
+			{
+				output.write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			output.write(value);
+		}
+	}
+
+	private static class FrameReader
+	{
+		private final byte[] data;
+		private final int end;
+		public int position;
+		private int lastX, lastY, lastZ;
+		private int lastDestX, lastDestY, lastDestZ;
+
+		public FrameReader(byte[] data, int start, int end)
+		{
+			this.data = data;
+			this.position = start;
+			this.end = end;
+		}
+
+		public boolean hasMore()
+		{
+			return position < end;
+		}
+
+		public SyncUpdate read() throws IOException
+		{
+			int type = readByte();
+			switch (type)
+			{
+				case SyncUpdate.DIMENSION:
+					int dimID = readSignedVarInt();
+					boolean isPocket = (readByte() != 0);
+					int depth = readSignedVarInt();
+					int exitDimID = readSignedVarInt();
+					int exitX = readSignedVarInt();
+					int exitY = readSignedVarInt();
+					int exitZ = readSignedVarInt();
+					return SyncUpdate.dimension(new DimData(dimID, isPocket, depth, exitDimID, exitX, exitY, exitZ));
+				case SyncUpdate.LINK_PUT:
+					LinkData link = new LinkData();
+					link.exists = true;
+					link.locDimID = readSignedVarInt();
+					readLocation(link);
+					link.destDimID = readSignedVarInt();
+					link.destXCoord = lastDestX += readSignedVarInt();
+					link.destYCoord = lastDestY += readSignedVarInt();
+					link.destZCoord = lastDestZ += readSignedVarInt();
+					int flags = readByte();
+					link.isLocPocket = (flags & LINK_IS_LOC_POCKET) != 0;
+					link.hasGennedDoor = (flags & LINK_HAS_GENNED_DOOR) != 0;
+					link.linkOrientation = readVarInt();
+					return SyncUpdate.linkPut(link, false);
+				case SyncUpdate.LINK_REMOVED:
+					LinkData removed = new LinkData();
+					removed.locDimID = readSignedVarInt();
+					readLocation(removed);
+					return SyncUpdate.linkRemoved(removed);
+				case SyncUpdate.CHUNK_CLEARED:
+					int chunkDimID = readSignedVarInt();
+					int chunkX = readSignedVarInt();
+					int chunkZ = readSignedVarInt();
+					return SyncUpdate.chunkCleared(chunkDimID, chunkX, chunkZ);
+				default:
+					throw new IOException("Unknown sync update type: " + type);
+			}
+		}
+
+		private void readLocation(LinkData link) throws IOException
+		{
+			link.locXCoord = lastX += readSignedVarInt();
+			link.locYCoord = lastY += readSignedVarInt();
+			link.locZCoord = lastZ += readSignedVarInt();
+		}
+
+		private int readByte() throws IOException
+		{
+			if (position >= end)
+			{
+				throw new IOException("The sync packet is truncated.");
+			}
+			return data[position++] & 0xFF;
+		}
+
+		public int readVarInt() throws IOException
+		{
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7)
+			{
+				int next = readByte();
+				value |= (next & 0x7F) << shift;
+				if ((next & 0x80) == 0)
+				{
+					return value;
+				}
+			}
+			throw new IOException("The sync packet contains a malformed integer.");
+		}
+
+		private int readSignedVarInt() throws IOException
+		{
+			int value = readVarInt();
+			return (value >>> 1) ^ -(value & 1);
+		}
+	}
+}
@@ -45,6 +45,8 @@ public class TileEntityRift extends TileEntity
 	public int spawnedEndermenID=0;
 	Random rand;
 	DataWatcher watcher = new DataWatcher();
+	private boolean isScheduled=false;
+	private LinkData currentLink;
 	
 	
 	
@@ -56,19 +58,32 @@ public class TileEntityRift extends TileEntity
 			  rand   = new Random();
 			  rand.setSeed(this.xCoord+this.yCoord+this.zCoord);
 		 }
-		 if(dimHelper.instance.getLinkDataFromCoords(xCoord, yCoord, zCoord, this.worldObj.provider.dimensionId)==null)//ensures that only rifts with TEs are active
+		 if(!this.worldObj.isRemote)
 		 {
-			 this.invalidate();
-			 if(this.worldObj.getBlockId(xCoord, yCoord, zCoord)==mod_pocketDim.blockRift.blockID)//deletes rift TE if its behind something thats not a rift block
+			 //On the server, the periodic work is done by the RiftScheduler. Only closing has to be animated every tick.
+			 //Rifts whose link was removed or whose block was replaced are still cleaned up right away. Checking that
+			 //the last link found is still registered is cheap, so the full lookup only runs once something changed.
+			 if(this.currentLink==null||!LinkRegistry.instance().contains(this.currentLink)||
+				 this.worldObj.getBlockId(xCoord, yCoord, zCoord)!=mod_pocketDim.blockRift.blockID)
 			 {
-				 this.worldObj.setBlockToAir(xCoord, yCoord, zCoord);
-				 this.invalidate();
-				 return;
+				 if(!this.validateRift())
+				 {
+					 return;
+				 }
 			 }
+			 if(!this.isScheduled)
+			 {
+				 mod_pocketDim.riftScheduler.register(this);
+				 this.isScheduled=true;
+			 }
+			 if(this.shouldClose)
+			 {
+				 closeRift();
+			 }
+			 return;
 		 }
-		 if(this.worldObj.getBlockId(xCoord, yCoord, zCoord)!=mod_pocketDim.blockRift.blockID)//deletes rift TE if its behind something thats not a rift block
+		 if(!this.validateRift())
 		 {
-			 this.invalidate();
 			 return;
 		 }
 		 
@@ -87,12 +102,7 @@ public class TileEntityRift extends TileEntity
 		 count++;
 		 if(count>200)
 		 {
-			 this.spawnEndermen();
-			 this.calculateOldParticleOffset(); //this also calculates the distance for the particle stuff.
-			 if(distance>1)//only grow if rifts are nearby
-			 {
-				 this.grow(distance);
-			 }
+			 this.doPeriodicWork();
 			 count=0;
 		 }
 		 
@@ -101,6 +111,88 @@ public class TileEntityRift extends TileEntity
 			 closeRift();
 		 }
 	 }
+	
+	/**
+	 * Called by the RiftScheduler about once every 200 ticks for rifts on the server.
+	 */
+	public void updateScheduled()
+	{
+		if(this.isInvalid())
+		{
+			this.unschedule();
+			return;
+		}
+		if(this.validateRift())
+		{
+			this.doPeriodicWork();
+		}
+	}
+	
+	private void doPeriodicWork()
+	{
+		 this.spawnEndermen();
+		 this.calculateOldParticleOffset(); //this also calculates the distance for the particle stuff.
+		 if(distance>1)//only grow if rifts are nearby
+		 {
+			 this.grow(distance);
+		 }
+	}
+	
+	/**
+	 * Checks that this rift still has a link and is still behind a rift block, and removes it otherwise.
+	 * The link found last time is reused as long as it's still registered at these coordinates,
+	 * so the lookup is skipped for rifts whose link hasn't changed.
+	 */
+	private boolean validateRift()
+	{
+		 LinkData link = this.currentLink;
+		 if(link==null||!LinkRegistry.instance().contains(link)||link.locDimID!=this.worldObj.provider.dimensionId||
+			 link.locXCoord!=this.xCoord||link.locYCoord!=this.yCoord||link.locZCoord!=this.zCoord)
+		 {
+			 link=dimHelper.instance.getLinkDataFromCoords(xCoord, yCoord, zCoord, this.worldObj.provider.dimensionId);
+			 this.currentLink=link;
+		 }
+		 if(link==null)//ensures that only rifts with TEs are active
+		 {
+			 this.invalidate();
+			 if(this.worldObj.getBlockId(xCoord, yCoord, zCoord)==mod_pocketDim.blockRift.blockID)//deletes rift TE if its behind something thats not a rift block
+			 {
+				 this.worldObj.setBlockToAir(xCoord, yCoord, zCoord);
+				 this.invalidate();
+				 return false;
+			 }
+		 }
+		 if(this.worldObj.getBlockId(xCoord, yCoord, zCoord)!=mod_pocketDim.blockRift.blockID)//deletes rift TE if its behind something thats not a rift block
+		 {
+			 this.invalidate();
+			 return false;
+		 }
+		 return true;
+	}
+	
+	private void unschedule()
+	{
+		if(this.isScheduled)
+		{
+			mod_pocketDim.riftScheduler.unregister(this);
+			this.isScheduled=false;
+		}
+	}
+	
+	@Override
+	public void invalidate()
+	{
+		super.invalidate();
+		this.unschedule();
+	}
+	
+	@Override
+	public void onChunkUnload()
+	{
+		super.onChunkUnload();
+		this.unschedule();
+	}
+	
 	 public boolean canUpdate()
 	 {
 		 return true;
@@ -250,6 +342,7 @@ public class TileEntityRift extends TileEntity
 					{
 						// System.out.println(link.numberofChildren);
 						link.numberofChildren++;
+						dimHelper.instance.markLinkDirty(link);
 						dimHelper.instance.createLink(this.worldObj.provider.dimensionId, link.destDimID, x, y, z, link.destXCoord, link.destYCoord, link.destZCoord).numberofChildren=link.numberofChildren+1;
 						this.hasGrownRifts=true;
 					}
@@ -87,7 +87,9 @@ public class ChaosDoor extends dimDoor
 			
 			if(dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World)!=null)
 			{
-				dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World).linkOrientation=par1World.getBlockMetadata(par2, par3-1, par4);
+				LinkData link = dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World);
+				link.linkOrientation=par1World.getBlockMetadata(par2, par3-1, par4);
+				dimHelper.instance.markLinkDirty(link);
 				
 
 			}
@@ -111,8 +111,10 @@ public class ExitDoor extends dimDoor
 			{
 				
 				//System.out.println("RiftPresent at "+String.valueOf(par1World.provider.dimensionId));
-				dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World).linkOrientation=par1World.getBlockMetadata(par2, par3-1, par4);
-				dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World).hasGennedDoor=false;
+				LinkData link = dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World);
+				link.linkOrientation=par1World.getBlockMetadata(par2, par3-1, par4);
+				link.hasGennedDoor=false;
+				dimHelper.instance.markLinkDirty(link);
 
 
 				
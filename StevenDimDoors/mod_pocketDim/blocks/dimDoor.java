@@ -157,7 +157,9 @@ public class dimDoor extends BlockContainer
 					
 					if(	dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World)!=null)
 					{
-						dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World).linkOrientation= par1World.getBlockMetadata(par2, par3-1, par4);
+						LinkData link = dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World);
+						link.linkOrientation= par1World.getBlockMetadata(par2, par3-1, par4);
+						dimHelper.instance.markLinkDirty(link);
 	    			
 					}
 				}
@@ -172,7 +174,9 @@ public class dimDoor extends BlockContainer
 					
 					if(	dimHelper.instance.getLinkDataFromCoords(par2, par3+1, par4, par1World)!=null)
 					{
-						dimHelper.instance.getLinkDataFromCoords(par2, par3+1, par4, par1World).linkOrientation= par1World.getBlockMetadata(par2, par3, par4);
+						LinkData link = dimHelper.instance.getLinkDataFromCoords(par2, par3+1, par4, par1World);
+						link.linkOrientation= par1World.getBlockMetadata(par2, par3, par4);
+						dimHelper.instance.markLinkDirty(link);
 					}
 					
 				}
@@ -276,8 +280,10 @@ public class dimDoor extends BlockContainer
 			
 			if(dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World)!=null)
 			{
-				dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World).linkOrientation=par1World.getBlockMetadata(par2, par3-1, par4);
-				dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World).hasGennedDoor=false;
+				LinkData link = dimHelper.instance.getLinkDataFromCoords(par2, par3, par4, par1World);
+				link.linkOrientation=par1World.getBlockMetadata(par2, par3-1, par4);
+				link.hasGennedDoor=false;
+				dimHelper.instance.markLinkDirty(link);
 
 			}
 		}
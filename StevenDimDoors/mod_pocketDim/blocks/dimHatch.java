@@ -57,6 +57,7 @@ public class dimHatch extends BlockTrapDoor
 	    			
 	    		LinkData exitLink=dimData.exitDimLink;
 	    		exitLink.locDimID=par1World.provider.dimensionId;
+	    		dimData.markDirty();
 	    		
 	    		 
 	    		dimHelper.instance.traverseDimDoor(par1World, exitLink, par5Entity);
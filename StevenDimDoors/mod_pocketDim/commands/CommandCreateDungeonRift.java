@@ -80,7 +80,7 @@ public class CommandCreateDungeonRift extends DDCommandBase
 				{
 					//Create a rift to our selected dungeon and notify the player
 					link = dimHelper.instance.createPocket(link, true, true);
-					dimHelper.instance.getDimData(link.destDimID).dungeonGenerator = result;
+					DungeonHelper.setDungeon(dimHelper.instance.getDimData(link.destDimID), result);
 					sender.sendChatToPlayer("Created a rift to \"" + getSchematicName(result) + "\" dungeon (Dimension ID = " + link.destDimID + ").");
 				}
 				else
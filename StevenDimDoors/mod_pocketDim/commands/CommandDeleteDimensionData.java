@@ -1,11 +1,8 @@
 package StevenDimDoors.mod_pocketDim.commands;
 
-import java.util.ArrayList;
-import java.util.Collection;
-
 import net.minecraft.entity.player.EntityPlayer;
-import StevenDimDoors.mod_pocketDim.DimData;
 import StevenDimDoors.mod_pocketDim.LinkData;
+import StevenDimDoors.mod_pocketDim.LinkRegistry;
 import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
 
 public class CommandDeleteDimensionData extends DDCommandBase
@@ -58,22 +55,13 @@ public class CommandDeleteDimensionData extends DDCommandBase
 			{
 				try
 				{
-					for(DimData dimData :dimHelper.dimList.values())
+					linksRemoved += dimHelper.instance.getDimData(targetDim).getLinkCount();
+					for(LinkData link : LinkRegistry.instance().getLinksToDimension(targetDim))
 					{
-						Collection<LinkData> links= new ArrayList<LinkData>();
-						links.addAll( dimData.getLinksInDim());
-					
-						for(LinkData link : links)
+						if(link.locDimID!=targetDim)
 						{
-							if(link.destDimID==targetDim)
-							{
-								dimHelper.instance.getDimData(link.locDimID).removeLinkAtCoords(link);
-								linksRemoved++;
-							}
-							if(dimData.dimID==targetDim)
-							{
-								linksRemoved++;
-							}
+							dimHelper.instance.getDimData(link.locDimID).removeLinkAtCoords(link);
+							linksRemoved++;
 						}
 					}
 				}
@@ -82,7 +70,7 @@ public class CommandDeleteDimensionData extends DDCommandBase
 					e.printStackTrace();
 				}
 				
-				dimHelper.dimList.remove(targetDim);
+				LinkRegistry.instance().removeDimension(dimHelper.dimList.remove(targetDim));
 				sender.sendChatToPlayer("Removed dimension " + targetDim + " from DimDoors and deleted " + linksRemoved + " links");
 			}
 			else
@@ -0,0 +1,46 @@
+package StevenDimDoors.mod_pocketDim.commands;
+
+import net.minecraft.entity.player.EntityPlayer;
+import StevenDimDoors.mod_pocketDim.DDMetrics;
+
+public class CommandMetrics extends DDCommandBase
+{
+	private static CommandMetrics instance = null;
+	
+	private CommandMetrics()
+	{
+		super("dd-metrics", "['reset']");
+	}
+	
+	public static CommandMetrics instance()
+	{
+		if (instance == null)
+			instance = new CommandMetrics();
+		
+		return instance;
+	}
+
+	@Override
+	protected DDCommandResult processCommand(EntityPlayer sender, String[] command)
+	{
+		if (command.length > 1)
+		{
+			return DDCommandResult.TOO_MANY_ARGUMENTS;
+		}
+		if (command.length == 1 && !command[0].equalsIgnoreCase("reset"))
+		{
+			return DDCommandResult.INVALID_ARGUMENTS;
+		}
+		
+		for (String line : DDMetrics.instance().getReport())
+		{
+			sender.sendChatToPlayer(line);
+		}
+		if (command.length == 1)
+		{
+			DDMetrics.instance().reset();
+			sender.sendChatToPlayer("Metrics have been reset.");
+		}
+		return DDCommandResult.SUCCESS;
+	}
+}
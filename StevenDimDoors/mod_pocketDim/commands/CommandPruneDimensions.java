@@ -8,6 +8,7 @@ import java.util.Set;
 import net.minecraft.entity.player.EntityPlayer;
 import StevenDimDoors.mod_pocketDim.DimData;
 import StevenDimDoors.mod_pocketDim.LinkData;
+import StevenDimDoors.mod_pocketDim.LinkRegistry;
 import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
 
 public class CommandPruneDimensions extends DDCommandBase
@@ -45,20 +46,13 @@ public class CommandPruneDimensions extends DDCommandBase
 		Collection<DimData> allDims = new ArrayList<DimData>(); 
 		allDims.addAll(dimHelper.dimList.values());
 		
-		for (DimData data : allDims)
-		{
-			for (LinkData link : data.getLinksInDim())
-			{
-				linkedDimensions.add(link.destDimID);
-			}
-		}
 		for (LinkData link : dimHelper.instance.interDimLinkList.values())
 		{
 			linkedDimensions.add(link.destDimID);
 		}
 		for (DimData data : allDims)
 		{
-			if (!linkedDimensions.contains(data.dimID))
+			if (!linkedDimensions.contains(data.dimID) && !LinkRegistry.instance().hasLinksTo(data.dimID))
 			{
 				if (dimHelper.instance.pruneDimension(data, deleteFolders))
 				{
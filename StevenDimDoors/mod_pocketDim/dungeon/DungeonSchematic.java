@@ -5,6 +5,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
@@ -13,6 +14,7 @@ import java.util.TreeMap;
 import net.minecraft.block.Block;
 import net.minecraft.entity.Entity;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.MathHelper;
 import net.minecraft.world.World;
@@ -22,10 +24,12 @@ import StevenDimDoors.mod_pocketDim.Point3D;
 import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
 import StevenDimDoors.mod_pocketDim.helpers.yCoordHelper;
 import StevenDimDoors.mod_pocketDim.schematic.BlockRotator;
+import StevenDimDoors.mod_pocketDim.schematic.ChunkBatchPlacer;
 import StevenDimDoors.mod_pocketDim.schematic.CompoundFilter;
 import StevenDimDoors.mod_pocketDim.schematic.InvalidSchematicException;
 import StevenDimDoors.mod_pocketDim.schematic.ReplacementFilter;
 import StevenDimDoors.mod_pocketDim.schematic.Schematic;
+import StevenDimDoors.mod_pocketDim.schematic.SchematicFilter;
 import StevenDimDoors.mod_pocketDim.ticking.MobMonolith;
 
 public class DungeonSchematic extends Schematic {
@@ -43,6 +47,22 @@ public class DungeonSchematic extends Schematic {
 	private ArrayList<Point3D> exitDoorLocations;
 	private ArrayList<Point3D> dimensionalDoorLocations;
 	private ArrayList<Point3D> monolithSpawnLocations;
+	//Rotated copies of this dungeon, indexed by turn angle. See getRotation().
+	private final Rotation[] rotations = new Rotation[4];
+	
+	private static class Rotation
+	{
+		public short width;
+		public short height;
+		public short length;
+		public short[] blocks;
+		public byte[] metadata;
+		public NBTTagList tileEntities;
+		public Point3D entranceDoorLocation;
+		public ArrayList<Point3D> exitDoorLocations;
+		public ArrayList<Point3D> dimensionalDoorLocations;
+		public ArrayList<Point3D> monolithSpawnLocations;
+	}
 	
 	private static final short[] MOD_BLOCK_FILTER_EXCEPTIONS = new short[] {
 		STANDARD_FABRIC_OF_REALITY_ID,
@@ -95,6 +115,17 @@ public class DungeonSchematic extends Schematic {
 		return new DungeonSchematic(Schematic.readFromStream(schematicStream));
 	}
 	
+	@Override
+	public boolean applyFilter(SchematicFilter filter)
+	{
+		//Any rotations built so far no longer match the filtered blocks
+		synchronized (this)
+		{
+			Arrays.fill(rotations, null);
+		}
+		return super.applyFilter(filter);
+	}
+	
 	public void applyImportFilters(DDProperties properties)
 	{
 		//Search for special blocks (warp doors, dim doors, and end portal frames that mark Monolith spawn points)
@@ -168,6 +199,19 @@ public class DungeonSchematic extends Schematic {
 	}
 
 	public void copyToWorld(World world, Point3D pocketCenter, int dungeonOrientation, int originDimID, int destDimID, boolean doDistortCoordinates)
+	{
+		Placement placement = createPlacement(world, pocketCenter, dungeonOrientation, originDimID, destDimID, doDistortCoordinates);
+		placement.placeBlocks(Long.MAX_VALUE);
+		placement.placeTileEntities();
+		placement.fillContainers(Long.MAX_VALUE);
+		placement.setUpLinks();
+	}
+	
+	/**
+	 * Prepares to copy this dungeon into the world in stages, so that the work can be spread over several ticks.
+	 * The stages of the returned Placement must be run in order. copyToWorld() runs them all at once.
+	 */
+	public Placement createPlacement(World world, Point3D pocketCenter, int dungeonOrientation, int originDimID, int destDimID, boolean doDistortCoordinates)
 	{
 		//TODO: This function is an improvised solution so we can get the release moving. In the future,
 		//we should generalize block tranformations and implement support for them at the level of Schematic,
@@ -175,16 +219,217 @@ public class DungeonSchematic extends Schematic {
 		//It might be easiest to support transformations using a WorldOperation
 		
 		final int turnAngle = dungeonOrientation - orientation;
+		return new Placement(world, pocketCenter.clone(), getRotation(turnAngle), originDimID, destDimID, doDistortCoordinates);
+	}
+	
+	public class Placement
+	{
+		//Number of layers of the dungeon that fillContainers() checks between looking at the clock
+		private static final int FILL_LAYERS_PER_STEP = 4;
+		
+		private final World world;
+		private final Point3D pocketCenter;
+		private final Rotation rotation;
+		private final int originDimID;
+		private final int destDimID;
+		private final boolean doDistortCoordinates;
+		private final ChunkBatchPlacer placer;
+		private final Random random;
+		private final Point3D minCorner;
+		private final Point3D maxCorner;
+		private int fillLayer;
+		
+		private Placement(World world, Point3D pocketCenter, Rotation rotation, int originDimID, int destDimID, boolean doDistortCoordinates)
+		{
+			this.world = world;
+			this.pocketCenter = pocketCenter;
+			this.rotation = rotation;
+			this.originDimID = originDimID;
+			this.destDimID = destDimID;
+			this.doDistortCoordinates = doDistortCoordinates;
+			
+			//The blocks have already been rotated, so placing them is a straight copy
+			this.placer = new ChunkBatchPlacer(world, rotation.width, rotation.height, rotation.length, rotation.blocks, rotation.metadata,
+					rotation.entranceDoorLocation, 0, pocketCenter, false);
+			
+			//The following Random initialization code is based on code from ChunkProviderGenerate.
+			//It makes our generation depend on the world seed.
+			random = new Random(world.getSeed());
+	        long factorA = random.nextLong() / 2L * 2L + 1L;
+	        long factorB = random.nextLong() / 2L * 2L + 1L;
+	        random.setSeed(pocketCenter.getX() * factorB + pocketCenter.getZ() * factorA ^ world.getSeed());
+	        
+	        //Transform dungeon corners. The rotation has already been applied, so only a translation is left.
+	        minCorner = new Point3D(0, 0, 0);
+	        maxCorner = new Point3D(rotation.width - 1, rotation.height - 1, rotation.length - 1);
+	        transformCorners(rotation.entranceDoorLocation, pocketCenter, 0, minCorner, maxCorner);
+	        fillLayer = minCorner.getY();
+		}
+		
+		/**
+		 * Copies blocks and metadata into the world one chunk at a time until all of them have been placed
+		 * or System.nanoTime() reaches the deadline. At least one chunk is placed per call.
+		 * @return true if all the blocks have been placed
+		 */
+		public boolean placeBlocks(long deadline)
+		{
+			while (!placer.isFinished())
+			{
+				placer.placeNextChunk();
+				if (System.nanoTime() >= deadline)
+				{
+					break;
+				}
+			}
+			return placer.isFinished();
+		}
+		
+		/**
+		 * Returns the fraction of the blocks that have been placed so far, from 0 to 1.
+		 */
+		public float getBlockProgress()
+		{
+			if (placer.getChunkCount() == 0)
+			{
+				return 1;
+			}
+			return (float) placer.getChunksPlaced() / placer.getChunkCount();
+		}
+		
+		public void placeTileEntities()
+		{
+			int index;
+			int count;
+			Point3D entrance = rotation.entranceDoorLocation;
+			
+			count = rotation.tileEntities.tagCount();
+			for (index = 0; index < count; index++)
+			{
+				//Copy the tag so that the schematic itself isn't modified. Schematics are shared through DungeonSchematicCache.
+				NBTTagCompound tileTag = (NBTTagCompound) rotation.tileEntities.tagAt(index).copy();
+				//Rewrite its location to be in world coordinates
+				int x = tileTag.getInteger("x") - entrance.getX() + pocketCenter.getX();
+				int y = tileTag.getInteger("y") - entrance.getY() + pocketCenter.getY();
+				int z = tileTag.getInteger("z") - entrance.getZ() + pocketCenter.getZ();
+				tileTag.setInteger("x", x);
+				tileTag.setInteger("y", y);
+				tileTag.setInteger("z", z);
+				//Load the tile entity and put it in the world
+				world.setBlockTileEntity(x, y, z, TileEntity.createAndLoadEntity(tileTag));
+			}
+		}
+		
+		/**
+		 * Fills empty chests and dispensers, a few layers at a time, until the whole dungeon has been covered
+		 * or System.nanoTime() reaches the deadline.
+		 * @return true if all the containers have been filled
+		 */
+		public boolean fillContainers(long deadline)
+		{
+			//Containers are visited in the same order as when the whole volume is done at once,
+			//so the random loot doesn't depend on how the work was split up.
+			FillContainersOperation filler = new FillContainersOperation(random);
+			while (fillLayer <= maxCorner.getY())
+			{
+				int layers = Math.min(FILL_LAYERS_PER_STEP, maxCorner.getY() - fillLayer + 1);
+				filler.apply(world, minCorner.getX(), fillLayer, minCorner.getZ(),
+						maxCorner.getX() - minCorner.getX() + 1, layers, maxCorner.getZ() - minCorner.getZ() + 1);
+				fillLayer += layers;
+				if (System.nanoTime() >= deadline)
+				{
+					break;
+				}
+			}
+			return fillLayer > maxCorner.getY();
+		}
+		
+		/**
+		 * Sets up the links of the entrance, dimensional doors and exit doors, and spawns Monoliths.
+		 */
+		public void setUpLinks()
+		{
+			final int turnAngle = 0;
+			Point3D entranceDoorLocation = rotation.entranceDoorLocation;
+			
+			//Set up entrance door rift
+			setUpEntranceDoorLink(world, entranceDoorLocation, turnAngle, pocketCenter);
+			
+			//Set up link data for dimensional doors
+			for (Point3D location : rotation.dimensionalDoorLocations)
+			{
+				setUpDimensionalDoorLink(world, location, entranceDoorLocation, turnAngle, pocketCenter, originDimID, destDimID, doDistortCoordinates, random);
+			}
+			
+			//Set up link data for exit door
+			for (Point3D location : rotation.exitDoorLocations)
+			{
+				setUpExitDoorLink(world, location, entranceDoorLocation, turnAngle, pocketCenter, originDimID, destDimID, random);
+			}
+			
+			//Remove end portal frames and spawn Monoliths
+			for (Point3D location : rotation.monolithSpawnLocations)
+			{
+				spawnMonolith(world, location, entranceDoorLocation, turnAngle, pocketCenter);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the blocks, tile entities and special locations of this dungeon turned by the given angle.
+	 * Rotations are built the first time they're needed and kept for later generations, since cached schematics
+	 * are reused many times and there are only four possible angles.
+	 */
+	private synchronized Rotation getRotation(int turnAngle)
+	{
+		//Adjust angle into the expected range
+		int angle = turnAngle % 4;
+		if (angle < 0)
+		{
+			angle += 4;
+		}
+		if (rotations[angle] == null)
+		{
+			rotations[angle] = createRotation(angle);
+		}
+		return rotations[angle];
+	}
+	
+	private Rotation createRotation(int angle)
+	{
+		Rotation rotation = new Rotation();
+		rotation.height = height;
+		if (angle == 0)
+		{
+			//Share the original data. Rotations are never modified, so there's no need to copy it.
+			rotation.width = width;
+			rotation.length = length;
+			rotation.blocks = blocks;
+			rotation.metadata = metadata;
+			rotation.tileEntities = tileEntities;
+			rotation.entranceDoorLocation = entranceDoorLocation;
+			rotation.exitDoorLocations = exitDoorLocations;
+			rotation.dimensionalDoorLocations = dimensionalDoorLocations;
+			rotation.monolithSpawnLocations = monolithSpawnLocations;
+			return rotation;
+		}
 		
+		//Turn the schematic around its origin, then shift it so that all of its coordinates are non-negative again
+		Point3D zero = new Point3D(0, 0, 0);
+		Point3D minCorner = new Point3D(0, 0, 0);
+		Point3D maxCorner = new Point3D(width - 1, height - 1, length - 1);
+		transformCorners(zero, zero, angle, minCorner, maxCorner);
+		Point3D offset = new Point3D(-minCorner.getX(), 0, -minCorner.getZ());
+		rotation.width = (short) (maxCorner.getX() - minCorner.getX() + 1);
+		rotation.length = (short) (maxCorner.getZ() - minCorner.getZ() + 1);
 		
 		int index;
 		int count;
-		int blockID;
-		int blockMeta;
 		int dx, dy, dz;
-		Point3D pocketPoint = new Point3D(0, 0, 0);
+		int volume = width * height * length;
+		Point3D point = new Point3D(0, 0, 0);
+		rotation.blocks = new short[volume];
+		rotation.metadata = new byte[volume];
 		
-		//Copy blocks and metadata into the world
 		index = 0;
 		for (dy = 0; dy < height; dy++)
 		{
@@ -192,77 +437,55 @@ public class DungeonSchematic extends Schematic {
 			{
 				for (dx = 0; dx < width; dx++)
 				{
-					pocketPoint.setX(dx);
-					pocketPoint.setY(dy);
-					pocketPoint.setZ(dz);
-					blockID = blocks[index];
-					BlockRotator.transformPoint(pocketPoint, entranceDoorLocation, turnAngle, pocketCenter);
-					blockMeta = BlockRotator.transformMetadata(metadata[index], turnAngle, blockID);
-
-					//In the future, we might want to make this more efficient by building whole chunks at a time
-					setBlockDirectly(world, pocketPoint.getX(), pocketPoint.getY(), pocketPoint.getZ(), blockID, blockMeta);
+					point.setX(dx);
+					point.setY(dy);
+					point.setZ(dz);
+					BlockRotator.transformPoint(point, zero, angle, offset);
+					int target = (dy * rotation.length + point.getZ()) * rotation.width + point.getX();
+					rotation.blocks[target] = blocks[index];
+					rotation.metadata[target] = (byte) BlockRotator.transformMetadata(metadata[index], angle, blocks[index]);
 					index++;
 				}
 			}
 		}
-		//Copy tile entities into the world
+		
+		rotation.tileEntities = new NBTTagList();
 		count = tileEntities.tagCount();
 		for (index = 0; index < count; index++)
 		{
-			NBTTagCompound tileTag = (NBTTagCompound) tileEntities.tagAt(index);
-			//Rewrite its location to be in world coordinates
-			pocketPoint.setX(tileTag.getInteger("x"));
-			pocketPoint.setY(tileTag.getInteger("y"));
-			pocketPoint.setZ(tileTag.getInteger("z"));
-			BlockRotator.transformPoint(pocketPoint, entranceDoorLocation, turnAngle, pocketCenter);
-			tileTag.setInteger("x", pocketPoint.getX());
-			tileTag.setInteger("y", pocketPoint.getY());
-			tileTag.setInteger("z", pocketPoint.getZ());
-			//Load the tile entity and put it in the world
-			world.setBlockTileEntity(pocketPoint.getX(), pocketPoint.getY(), pocketPoint.getZ(), TileEntity.createAndLoadEntity(tileTag));
+			NBTTagCompound tileTag = (NBTTagCompound) tileEntities.tagAt(index).copy();
+			point.setX(tileTag.getInteger("x"));
+			point.setY(tileTag.getInteger("y"));
+			point.setZ(tileTag.getInteger("z"));
+			BlockRotator.transformPoint(point, zero, angle, offset);
+			tileTag.setInteger("x", point.getX());
+			tileTag.setInteger("y", point.getY());
+			tileTag.setInteger("z", point.getZ());
+			rotation.tileEntities.appendTag(tileTag);
 		}
 		
-		setUpDungeon(world, pocketCenter, turnAngle, originDimID, destDimID, doDistortCoordinates);
+		rotation.entranceDoorLocation = rotatePoint(entranceDoorLocation, zero, angle, offset);
+		rotation.exitDoorLocations = rotatePoints(exitDoorLocations, zero, angle, offset);
+		rotation.dimensionalDoorLocations = rotatePoints(dimensionalDoorLocations, zero, angle, offset);
+		rotation.monolithSpawnLocations = rotatePoints(monolithSpawnLocations, zero, angle, offset);
+		return rotation;
 	}
 	
-	private void setUpDungeon(World world, Point3D pocketCenter, int turnAngle, int originDimID, int destDimID, boolean doDistortCoordinates)
+	private static Point3D rotatePoint(Point3D point, Point3D zero, int angle, Point3D offset)
 	{
-		//The following Random initialization code is based on code from ChunkProviderGenerate.
-		//It makes our generation depend on the world seed.
-		Random random = new Random(world.getSeed());
-        long factorA = random.nextLong() / 2L * 2L + 1L;
-        long factorB = random.nextLong() / 2L * 2L + 1L;
-        random.setSeed(pocketCenter.getX() * factorB + pocketCenter.getZ() * factorA ^ world.getSeed());
-		
-        //Transform dungeon corners
-        Point3D minCorner = new Point3D(0, 0, 0);
-        Point3D maxCorner = new Point3D(width - 1, height - 1, length - 1);
-        transformCorners(entranceDoorLocation, pocketCenter, turnAngle, minCorner, maxCorner);
-        
-		//Fill empty chests and dispensers
-		FillContainersOperation filler = new FillContainersOperation(random);
-		filler.apply(world, minCorner, maxCorner);
-		
-		//Set up entrance door rift
-		setUpEntranceDoorLink(world, entranceDoorLocation, turnAngle, pocketCenter);
-		
-		//Set up link data for dimensional doors
-		for (Point3D location : dimensionalDoorLocations)
-		{
-			setUpDimensionalDoorLink(world, location, entranceDoorLocation, turnAngle, pocketCenter, originDimID, destDimID, doDistortCoordinates, random);
-		}
-		
-		//Set up link data for exit door
-		for (Point3D location : exitDoorLocations)
-		{
-			setUpExitDoorLink(world, location, entranceDoorLocation, turnAngle, pocketCenter, originDimID, destDimID, random);
-		}
-		
-		//Remove end portal frames and spawn Monoliths
-		for (Point3D location : monolithSpawnLocations)
+		Point3D result = point.clone();
+		BlockRotator.transformPoint(result, zero, angle, offset);
+		return result;
+	}
+	
+	private static ArrayList<Point3D> rotatePoints(ArrayList<Point3D> points, Point3D zero, int angle, Point3D offset)
+	{
+		ArrayList<Point3D> result = new ArrayList<Point3D>(points.size());
+		for (Point3D point : points)
 		{
-			spawnMonolith(world, location, entranceDoorLocation, turnAngle, pocketCenter);
+			result.add(rotatePoint(point, zero, angle, offset));
 		}
+		return result;
 	}
 	
 	private static void transformCorners(Point3D schematicEntrance, Point3D pocketCenter, int turnAngle, Point3D minCorner, Point3D maxCorner)
@@ -304,6 +527,7 @@ public class DungeonSchematic extends Schematic {
 				entranceRiftLocation.getX(),
 				entranceRiftLocation.getY() - 1,
 				entranceRiftLocation.getZ());
+		dimHelper.instance.markLinkDirty(sideLink);
 	}
 	
 	private static void setUpExitDoorLink(World world, Point3D point, Point3D entrance, int rotation, Point3D pocketCenter, int originDimID, int destDimID, Random random)
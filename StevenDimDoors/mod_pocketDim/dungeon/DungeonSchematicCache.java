@@ -0,0 +1,156 @@
+package StevenDimDoors.mod_pocketDim.dungeon;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import StevenDimDoors.mod_pocketDim.DDProperties;
+import StevenDimDoors.mod_pocketDim.helpers.DungeonHelper;
+import StevenDimDoors.mod_pocketDim.schematic.InvalidSchematicException;
+
+/**
+ * Keeps recently used dungeon schematics in memory after they have been read and had their import filters
+ * applied, so that popular dungeons don't have to be decompressed and parsed every time a pocket is generated.
+ * Schematics are keyed by path and by the modification time of their file, so a schematic that is changed on
+ * disk is read again. The cache is bounded by the approximate size of the block data it holds, and the least
+ * recently used schematics are evicted first.
+ *
+ * The cached schematics are shared between pockets and must not be modified. DungeonSchematic.copyToWorld()
+ * only reads from them, apart from building the rotated copies that each schematic keeps for itself.
+ */
+public class DungeonSchematicCache
+{
+	private static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024; //32 MB
+	//Rough size of a tile entity tag, used when estimating the memory used by a schematic
+	private static final int TILE_ENTITY_SIZE_ESTIMATE = 256;
+
+	private static DungeonSchematicCache instance = null;
+
+	private static class CacheEntry
+	{
+		public final DungeonSchematic schematic;
+		public final long lastModified;
+		public final long size;
+
+		public CacheEntry(DungeonSchematic schematic, long lastModified, long size)
+		{
+			this.schematic = schematic;
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+	}
+
+	private final long maxBytes;
+	//Iterates from the least recently used entry to the most recently used one
+	private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+	private long totalBytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	private DungeonSchematicCache(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+	}
+
+	public static DungeonSchematicCache instance()
+	{
+		if (instance == null)
+			instance = new DungeonSchematicCache(DEFAULT_MAX_BYTES);
+
+		return instance;
+	}
+
+	/**
+	 * Returns the schematic at the given path with its import filters applied. If the schematic exceeds the maximum
+	 * dimensions for dungeons, the filters are not applied, as when the schematic is checked before generation.
+	 * The path may refer to a file or to a resource in the mod.
+	 */
+	public synchronized DungeonSchematic get(String schematicPath, DDProperties properties) throws FileNotFoundException, InvalidSchematicException
+	{
+		//FIXME: Change this code once we introduce an isInternal flag in dungeon data
+		File file = new File(schematicPath);
+		boolean isFile = file.exists();
+		long lastModified = isFile ? file.lastModified() : 0;
+
+		CacheEntry entry = entries.get(schematicPath);
+		if (entry != null)
+		{
+			if (entry.lastModified == lastModified)
+			{
+				hits++;
+				return entry.schematic;
+			}
+			//The file has changed since it was cached
+			remove(schematicPath);
+		}
+		misses++;
+
+		DungeonSchematic schematic;
+		if (isFile)
+		{
+			schematic = DungeonSchematic.readFromFile(file);
+		}
+		else
+		{
+			schematic = DungeonSchematic.readFromResource(schematicPath);
+		}
+		if (schematic.getWidth() <= DungeonHelper.MAX_DUNGEON_WIDTH &&
+			schematic.getHeight() <= DungeonHelper.MAX_DUNGEON_HEIGHT &&
+			schematic.getLength() <= DungeonHelper.MAX_DUNGEON_LENGTH)
+		{
+			schematic.applyImportFilters(properties);
+		}
+
+		long size = estimateSize(schematic);
+		if (size <= maxBytes)
+		{
+			entries.put(schematicPath, new CacheEntry(schematic, lastModified, size));
+			totalBytes += size;
+			evictOldest();
+		}
+		return schematic;
+	}
+
+	public synchronized void remove(String schematicPath)
+	{
+		CacheEntry entry = entries.remove(schematicPath);
+		if (entry != null)
+		{
+			totalBytes -= entry.size;
+		}
+	}
+
+	public synchronized void clear()
+	{
+		entries.clear();
+		totalBytes = 0;
+	}
+
+	public synchronized String getStatistics()
+	{
+		return "Schematic cache: " + entries.size() + " schematics, " + (totalBytes / 1024) + " of " + (maxBytes / 1024) +
+				" KB, " + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+	}
+
+	private void evictOldest()
+	{
+		Iterator<CacheEntry> iterator = entries.values().iterator();
+		while (totalBytes > maxBytes && iterator.hasNext())
+		{
+			CacheEntry entry = iterator.next();
+			iterator.remove();
+			totalBytes -= entry.size;
+			evictions++;
+		}
+	}
+
+	private static long estimateSize(DungeonSchematic schematic)
+	{
+		//Each block takes a short for its ID and a byte for its metadata. A schematic can also build up to
+		//three rotated copies of its blocks and tile entities, so count those as well.
+		long volume = (long) schematic.getWidth() * schematic.getHeight() * schematic.getLength();
+		return 4 * (3 * volume + (long) TILE_ENTITY_SIZE_ESTIMATE * schematic.getTileEntityCount());
+	}
+}
@@ -56,6 +56,15 @@ public class DungeonChainRule
 		return condition.length;
 	}
 
+	/**
+	 * Returns a copy of the IDs of the dungeon types in this rule's condition, in reverse order.
+	 * An ID of 0 stands for the wildcard type.
+	 */
+	public int[] getCondition()
+	{
+		return condition.clone();
+	}
+
 	public boolean evaluate(int[] typeHistory)
 	{
 		if (typeHistory.length >= condition.length)
@@ -0,0 +1,219 @@
+package StevenDimDoors.mod_pocketDim.dungeon.pack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Finds the rules of a dungeon pack that match a chain history without evaluating every rule in turn.
+ * The conditions of the rules are stored in a trie, most recent type first like the histories themselves.
+ * Wildcards are children of their own, so a history can follow several paths through the trie at once.
+ * Each set of trie nodes that a history can reach is turned into a state of a deterministic automaton the
+ * first time it's needed, along with the rules that end at those nodes. Matching then takes one step per
+ * type in the history, up to the length of the longest rule, no matter how many rules there are.
+ *
+ * Rules keep their precedence: the matcher returns the first matching rule in the order the rules were given.
+ */
+public class DungeonChainRuleMatcher
+{
+	private static final int[] NO_RULES = new int[0];
+
+	private static class Node
+	{
+		public final int id;
+		//Children indexed by dungeon type ID. Index 0 holds the wildcard child.
+		public final Node[] children;
+		//Indices of the rules whose conditions end at this node
+		public final ArrayList<Integer> rules = new ArrayList<Integer>();
+
+		public Node(int id, int symbolCount)
+		{
+			this.id = id;
+			this.children = new Node[symbolCount];
+		}
+	}
+
+	private static class State
+	{
+		public final Node[] nodes;
+		//Indices of the rules that end at any of this state's nodes, sorted
+		public final int[] rules;
+		//Transitions by dungeon type ID, filled in as they're needed
+		public final State[] transitions;
+		public final boolean[] hasTransition;
+
+		public State(Node[] nodes, int symbolCount)
+		{
+			this.nodes = nodes;
+			this.transitions = new State[symbolCount];
+			this.hasTransition = new boolean[symbolCount];
+
+			ArrayList<Integer> endingRules = new ArrayList<Integer>();
+			for (Node node : nodes)
+			{
+				endingRules.addAll(node.rules);
+			}
+			if (endingRules.isEmpty())
+			{
+				this.rules = NO_RULES;
+			}
+			else
+			{
+				this.rules = new int[endingRules.size()];
+				for (int index = 0; index < rules.length; index++)
+				{
+					rules[index] = endingRules.get(index);
+				}
+				Arrays.sort(rules);
+			}
+		}
+	}
+
+	private final int symbolCount;
+	private final int maxRuleLength;
+	private final State start;
+	//States indexed by the IDs of their nodes, so that each set of nodes gets a single state
+	private final HashMap<String, State> states = new HashMap<String, State>();
+	private int nodeCount = 0;
+
+	/**
+	 * Compiles the given rules. typeCount is the number of dungeon type IDs in the pack, counting the wildcard.
+	 */
+	public DungeonChainRuleMatcher(List<DungeonChainRule> rules, int typeCount)
+	{
+		this.symbolCount = typeCount;
+
+		int maxLength = 0;
+		Node root = createNode();
+		for (int index = 0; index < rules.size(); index++)
+		{
+			int[] condition = rules.get(index).getCondition();
+			Node current = root;
+			for (int typeID : condition)
+			{
+				Node child = current.children[typeID];
+				if (child == null)
+				{
+					child = createNode();
+					current.children[typeID] = child;
+				}
+				current = child;
+			}
+			current.rules.add(index);
+			maxLength = Math.max(maxLength, condition.length);
+		}
+		this.maxRuleLength = maxLength;
+		this.start = getState(new Node[] { root });
+	}
+
+	/**
+	 * Returns the index of the first rule after the given one that matches the history, or -1 if there are none.
+	 * Pass -1 as previous to find the first matching rule.
+	 */
+	public int nextMatch(int[] typeHistory, int previous)
+	{
+		State state = start;
+		int best = firstAfter(state.rules, previous, -1);
+		int length = Math.min(typeHistory.length, maxRuleLength);
+		for (int index = 0; index < length && state != null; index++)
+		{
+			state = getTransition(state, typeHistory[index]);
+			if (state != null)
+			{
+				best = firstAfter(state.rules, previous, best);
+			}
+		}
+		return best;
+	}
+
+	private static int firstAfter(int[] rules, int previous, int best)
+	{
+		int position = Arrays.binarySearch(rules, previous + 1);
+		if (position < 0)
+		{
+			position = -position - 1;
+		}
+		if (position < rules.length && (best < 0 || rules[position] < best))
+		{
+			return rules[position];
+		}
+		return best;
+	}
+
+	private State getTransition(State state, int typeID)
+	{
+		//Types from other packs or from older configs can only match wildcards
+		int symbol = (typeID > 0 && typeID < symbolCount) ? typeID : 0;
+		if (!state.hasTransition[symbol])
+		{
+			state.transitions[symbol] = createTransition(state, symbol);
+			state.hasTransition[symbol] = true;
+		}
+		return state.transitions[symbol];
+	}
+
+	private State createTransition(State state, int symbol)
+	{
+		ArrayList<Node> targets = new ArrayList<Node>();
+		for (Node node : state.nodes)
+		{
+			if (node.children[0] != null)
+			{
+				targets.add(node.children[0]);
+			}
+			if (symbol != 0 && node.children[symbol] != null)
+			{
+				targets.add(node.children[symbol]);
+			}
+		}
+		if (targets.isEmpty())
+		{
+			//No rule can match past this point
+			return null;
+		}
+		return getState(targets.toArray(new Node[targets.size()]));
+	}
+
+	private State getState(Node[] nodes)
+	{
+		//Sort the nodes by ID and drop duplicates so that equivalent sets share a key
+		int[] ids = new int[nodes.length];
+		for (int index = 0; index < nodes.length; index++)
+		{
+			ids[index] = nodes[index].id;
+		}
+		Arrays.sort(ids);
+		StringBuilder key = new StringBuilder();
+		int last = -1;
+		for (int id : ids)
+		{
+			if (id != last)
+			{
+				key.append(id).append(',');
+				last = id;
+			}
+		}
+
+		State state = states.get(key.toString());
+		if (state == null)
+		{
+			ArrayList<Node> distinct = new ArrayList<Node>(nodes.length);
+			for (Node node : nodes)
+			{
+				if (!distinct.contains(node))
+				{
+					distinct.add(node);
+				}
+			}
+			state = new State(distinct.toArray(new Node[distinct.size()]), symbolCount);
+			states.put(key.toString(), state);
+		}
+		return state;
+	}
+
+	private Node createNode()
+	{
+		return new Node(nodeCount++, symbolCount);
+	}
+}
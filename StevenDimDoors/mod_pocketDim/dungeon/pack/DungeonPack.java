@@ -1,16 +1,17 @@
 package StevenDimDoors.mod_pocketDim.dungeon.pack;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Random;
 
-import net.minecraft.util.WeightedRandom;
+import StevenDimDoors.mod_pocketDim.DimData;
 import StevenDimDoors.mod_pocketDim.DungeonGenerator;
 import StevenDimDoors.mod_pocketDim.LinkData;
 import StevenDimDoors.mod_pocketDim.helpers.DungeonHelper;
 import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
+import StevenDimDoors.mod_pocketDim.util.AliasTable;
 import StevenDimDoors.mod_pocketDim.util.WeightedContainer;
 
 public class DungeonPack
@@ -30,6 +31,11 @@ public class DungeonPack
 	private final DungeonPackConfig config;
 	private final int maxRuleLength;
 	private final ArrayList<DungeonChainRule> rules;
+	private final DungeonChainRuleMatcher ruleMatcher;
+	//Alias tables for picking dungeons, indexed like groupedDungeons and rules. They're rebuilt after dungeons are added.
+	private ArrayList<AliasTable<DungeonGenerator>> groupTables;
+	private ArrayList<AliasTable<DungeonType>> productTables;
+	private boolean tablesAreValid = false;
 	
 	public DungeonPack(DungeonPackConfig config)
 	{
@@ -69,6 +75,7 @@ public class DungeonPack
 			}
 		}
 		this.maxRuleLength = maxLength;
+		this.ruleMatcher = new DungeonChainRuleMatcher(rules, typeCount + 1);
 		
 		//Remove unnecessary references to save a little memory - we won't need them here
 		this.config.setRules(null);
@@ -116,6 +123,7 @@ public class DungeonPack
 		{
 			allDungeons.add(generator);
 			groupedDungeons.get(type.ID).add(generator);
+			tablesAreValid = false;
 		}
 		else
 		{
@@ -130,73 +138,59 @@ public class DungeonPack
 			return null;
 		}
 		
-		//Retrieve a list of the previous dungeons in this chain.
-		//If we're not going to check for duplicates in chains, restrict the length of the history to the length
-		//of the longest rule we have. Getting any more data would be useless. This optimization could be significant
-		//for dungeon packs that can extend arbitrarily deep. We should probably set a reasonable limit anyway.
-		
-		int maxSearchLength = config.allowDuplicatesInChain() ? maxRuleLength : MAX_HISTORY_LENGTH;
-		ArrayList<DungeonGenerator> history = DungeonHelper.getDungeonChainHistory(
-				dimHelper.instance.getDimData(inbound.locDimID), this, maxSearchLength);
-		return getNextDungeon(history, random);
+		//Retrieve the types of the previous dungeons in this chain. Dimensions keep a record of the most recent types,
+		//which is enough to evaluate our rules unless one of them is unusually long. Otherwise, follow the chain.
+		int[] typeHistory;
+		DimData dimData = dimHelper.instance.getDimData(inbound.locDimID);
+		if (maxRuleLength <= DimData.MAX_CHAIN_HISTORY)
+		{
+			typeHistory = DungeonHelper.getChainTypeHistory(dimData, this);
+		}
+		else
+		{
+			ArrayList<DungeonGenerator> history = DungeonHelper.getDungeonChainHistory(dimData, this, maxRuleLength);
+			typeHistory = new int[history.size()];
+			for (int index = 0; index < typeHistory.length; index++)
+			{
+				typeHistory[index] = history.get(index).getDungeonType().ID;
+			}
+		}
+		return getNextDungeon(dimData, typeHistory, random);
 	}
 	
-	private DungeonGenerator getNextDungeon(ArrayList<DungeonGenerator> history, Random random)
+	private DungeonGenerator getNextDungeon(DimData dimData, int[] typeHistory, Random random)
 	{
-		//Extract the dungeon types that have been used from history and convert them into an array of IDs
-		int index;
-		int[] typeHistory = new int[history.size()];
 		HashSet<DungeonGenerator> excludedDungeons = null;
-		for (index = 0; index < typeHistory.length; index++)
+		
+		if (!tablesAreValid)
 		{
-			typeHistory[index] = history.get(index).getDungeonType().ID;
+			buildSelectionTables();
 		}
-		
-		for (DungeonChainRule rule : rules)
+		//Go through the matching rules in order until one of them produces a dungeon
+		int index = -1;
+		while ((index = ruleMatcher.nextMatch(typeHistory, index)) >= 0)
 		{
-			if (rule.evaluate(typeHistory))
+			//Rules without any usable products have no table. Skip them as if they didn't match.
+			AliasTable<DungeonType> products = productTables.get(index);
+			if (products != null)
 			{
-				//Pick a random dungeon type to be generated next based on the rule's products				
-				ArrayList<WeightedContainer<DungeonType>> products = rule.products();
-				DungeonType nextType;
-				do
+				if (config.allowDuplicatesInChain())
+				{
+					//Pick a random dungeon type to be generated next based on the rule's products, then a dungeon of that type
+					return groupTables.get(products.sample(random).ID).sample(random);
+				}
+				
+				//Initialize the set of excluded dungeons if needed. Only this requires the whole chain.
+				if (excludedDungeons == null)
+				{
+					excludedDungeons = new HashSet<DungeonGenerator>(
+							DungeonHelper.getDungeonChainHistory(dimData, this, MAX_HISTORY_LENGTH));
+				}
+				DungeonGenerator selection = getRandomDungeon(random, products, excludedDungeons);
+				if (selection != null)
 				{
-					nextType = getRandomDungeonType(random, products, groupedDungeons);
-					if (nextType != null)
-					{
-						//Initialize the set of excluded dungeons if needed
-						if (excludedDungeons == null && !config.allowDuplicatesInChain())
-						{
-							excludedDungeons = new HashSet<DungeonGenerator>(history);
-						}
-						
-						//List which dungeons are allowed
-						ArrayList<DungeonGenerator> candidates;
-						ArrayList<DungeonGenerator> group = groupedDungeons.get(nextType.ID);
-						if (excludedDungeons != null && !excludedDungeons.isEmpty())
-						{
-							 candidates = new ArrayList<DungeonGenerator>(group.size());
-							 for (DungeonGenerator dungeon : group)
-							 {
-								 if (!excludedDungeons.contains(dungeon))
-								 {
-									 candidates.add(dungeon);
-								 }
-							 }
-						}
-						else
-						{
-							candidates = group;
-						}
-						if (!candidates.isEmpty())
-						{
-							return getRandomDungeon(random, candidates);
-						}
-						//If we've reached this point, then a dungeon was not selected. Discard the type and try again.
-						products.remove(nextType);
-					}
+					return selection;
 				}
-				while (nextType != null);
 			}
 		}
 		
@@ -206,60 +200,76 @@ public class DungeonPack
 
 	public DungeonGenerator getRandomDungeon(Random random)
 	{
-		if (!allDungeons.isEmpty())
+		if (!tablesAreValid)
 		{
-			return getRandomDungeon(random, allDungeons);
-		}
-		else
-		{
-			return null;
+			buildSelectionTables();
 		}
+		return groupTables.get(0).sample(random);
 	}
 	
-	private static DungeonType getRandomDungeonType(Random random, Collection<WeightedContainer<DungeonType>> types,
-			ArrayList<ArrayList<DungeonGenerator>> groupedDungeons)
+	private DungeonGenerator getRandomDungeon(Random random, AliasTable<DungeonType> products, HashSet<DungeonGenerator> excludedDungeons)
 	{
-		//TODO: Make this faster? This algorithm runs in quadratic time in the worst case because of the random-selection
-		//process and the removal search. Might be okay for normal use, though. ~SenseiKiwi
-		
-		//Pick a random dungeon type based on weights. Repeat this process until a non-empty group is found or all groups are checked.
-		while (!types.isEmpty())
+		//Pick a random dungeon type based on weights, then a dungeon of that type that isn't excluded.
+		//If all the dungeons of a type are excluded, rule the type out and pick again until we find a usable
+		//one or run out. AliasTable only rejects ruled-out types a few times before searching the remaining
+		//ones directly, so each pick stays cheap even if the heaviest types have been ruled out.
+		HashSet<DungeonType> exhaustedTypes = null;
+		for (int attempt = 0; attempt < products.size(); attempt++)
 		{
-			//Pick a random dungeon type
-			@SuppressWarnings("unchecked")
-			WeightedContainer<DungeonType> resultContainer = (WeightedContainer<DungeonType>) WeightedRandom.getRandomItem(random, types);
-			
-			//Check if there are any dungeons of that type
-			DungeonType selectedType = resultContainer.getData();
-			if (!groupedDungeons.get(selectedType.ID).isEmpty())
+			DungeonType type = products.sample(random, exhaustedTypes);
+			if (type == null)
+			{
+				break;
+			}
+			DungeonGenerator selection = groupTables.get(type.ID).sample(random, excludedDungeons);
+			if (selection != null)
 			{
-				//Choose this type
-				return selectedType;
+				return selection;
 			}
-			else
+			if (exhaustedTypes == null)
 			{
-				//We can't use this type because there are no dungeons of this type
-				//Remove it from the list of types and try again
-				types.remove(resultContainer);
+				exhaustedTypes = new HashSet<DungeonType>();
 			}
+			exhaustedTypes.add(type);
 		}
 		
 		//We have run out of types to try
 		return null;
 	}
 	
-	private static DungeonGenerator getRandomDungeon(Random random, Collection<DungeonGenerator> dungeons)
+	/**
+	 * Precomputes alias tables for picking dungeons from each group and dungeon types from each rule's products.
+	 * Types without any dungeons are left out of the product tables, so a type picked from them always has dungeons.
+	 */
+	private void buildSelectionTables()
 	{
-		//Use Minecraft's WeightedRandom to select our dungeon. =D
-		ArrayList<WeightedContainer<DungeonGenerator>> weights =
-				new ArrayList<WeightedContainer<DungeonGenerator>>(dungeons.size());
-		for (DungeonGenerator dungeon : dungeons)
+		groupTables = new ArrayList<AliasTable<DungeonGenerator>>(groupedDungeons.size());
+		for (ArrayList<DungeonGenerator> group : groupedDungeons)
 		{
-			weights.add(new WeightedContainer<DungeonGenerator>(dungeon, dungeon.weight));
+			ArrayList<WeightedContainer<DungeonGenerator>> weights =
+					new ArrayList<WeightedContainer<DungeonGenerator>>(group.size());
+			for (DungeonGenerator dungeon : group)
+			{
+				weights.add(new WeightedContainer<DungeonGenerator>(dungeon, dungeon.weight));
+			}
+			groupTables.add(new AliasTable<DungeonGenerator>(weights));
 		}
 		
-		@SuppressWarnings("unchecked")
-		WeightedContainer<DungeonGenerator> resultContainer = (WeightedContainer<DungeonGenerator>) WeightedRandom.getRandomItem(random, weights);
-		return 	(resultContainer != null) ? resultContainer.getData() : null;
+		productTables = new ArrayList<AliasTable<DungeonType>>(rules.size());
+		for (DungeonChainRule rule : rules)
+		{
+			ArrayList<WeightedContainer<DungeonType>> products = rule.products();
+			Iterator<WeightedContainer<DungeonType>> iterator = products.iterator();
+			while (iterator.hasNext())
+			{
+				if (groupTables.get(iterator.next().getData().ID).isEmpty())
+				{
+					iterator.remove();
+				}
+			}
+			AliasTable<DungeonType> table = new AliasTable<DungeonType>(products);
+			productTables.add(table.isEmpty() ? null : table);
+		}
+		tablesAreValid = true;
 	}
 }
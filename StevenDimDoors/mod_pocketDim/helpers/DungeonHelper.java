@@ -11,13 +11,17 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map.Entry;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
-import net.minecraft.util.WeightedRandom;
 import net.minecraft.world.World;
 import StevenDimDoors.mod_pocketDim.DDProperties;
 import StevenDimDoors.mod_pocketDim.DimData;
@@ -30,6 +34,9 @@ import StevenDimDoors.mod_pocketDim.dungeon.pack.DungeonPackConfig;
 import StevenDimDoors.mod_pocketDim.dungeon.pack.DungeonPackConfigReader;
 import StevenDimDoors.mod_pocketDim.dungeon.pack.DungeonType;
 import StevenDimDoors.mod_pocketDim.items.itemDimDoor;
+import StevenDimDoors.mod_pocketDim.schematic.InvalidSchematicException;
+import StevenDimDoors.mod_pocketDim.schematic.SchematicHeader;
+import StevenDimDoors.mod_pocketDim.util.AliasTable;
 import StevenDimDoors.mod_pocketDim.util.ConfigurationProcessingException;
 import StevenDimDoors.mod_pocketDim.util.WeightedContainer;
 
@@ -54,6 +61,65 @@ public class DungeonHelper
 		}
 	}
 	
+	/**
+	 * Checks a schematic on one of the threads that validate schematics at startup.
+	 * Returns the time the check took, in nanoseconds.
+	 */
+	private static class SchematicCheck implements Callable<Long>
+	{
+		private final String path;
+		private final boolean isInternal;
+
+		public SchematicCheck(String path, boolean isInternal)
+		{
+			this.path = path;
+			this.isInternal = isInternal;
+		}
+
+		@Override
+		public Long call() throws Exception
+		{
+			long startTime = System.nanoTime();
+			checkSchematic(path, isInternal);
+			return System.nanoTime() - startTime;
+		}
+	}
+
+	/**
+	 * A dungeon whose name has been validated but whose schematic is still being checked.
+	 */
+	private static class PendingDungeon
+	{
+		public final String name;
+		public final String path;
+		public final int weight;
+		public final boolean isOpen;
+		public final DungeonType type;
+		public final DungeonPack pack;
+		public final boolean verbose;
+		public final Future<Long> check;
+
+		public PendingDungeon(String name, String path, int weight, boolean isOpen, DungeonType type, DungeonPack pack, boolean verbose, Future<Long> check)
+		{
+			this.name = name;
+			this.path = path;
+			this.weight = weight;
+			this.isOpen = isOpen;
+			this.type = type;
+			this.pack = pack;
+			this.verbose = verbose;
+			this.check = check;
+		}
+	}
+
+	private static class PackLoadReport
+	{
+		public long configTime = 0;
+		public long checkTime = 0;
+		public int registered = 0;
+		public int rejected = 0;
+	}
+
 	private static DungeonHelper instance = null;
 	private static DDProperties properties = null;
 	
@@ -77,6 +143,8 @@ public class DungeonHelper
 	private static final int MAX_PACK_SWITCH_CHANCE = 500;
 	private static final int START_PACK_SWITCH_CHANCE = MAX_PACK_SWITCH_CHANCE / 9;
 	
+	private static final int MAX_VALIDATION_THREADS = 8;
+
 	private static final int DEFAULT_DUNGEON_WEIGHT = 100;
 	public static final int MIN_DUNGEON_WEIGHT = 1; //Prevents MC's random selection algorithm from throwing an exception
 	public static final int MAX_DUNGEON_WEIGHT = 10000; //Used to prevent overflows and math breaking down
@@ -92,10 +160,18 @@ public class DungeonHelper
 	private DungeonPack RuinsPack;
 	private HashMap<String, DungeonPack> dungeonPackMapping = new HashMap<String, DungeonPack>();
 	private ArrayList<DungeonPack> dungeonPackList = new ArrayList<DungeonPack>();
+	//Alias table for switching to a random pack. It's discarded whenever packs or dungeons are registered.
+	private AliasTable<DungeonPack> packSwitchTable = null;
 	
 	private DungeonGenerator defaultUp;
 	private DungeonGenerator defaultDown;
 	private DungeonGenerator defaultError;
+
+	//Used while dungeons are registered at startup. Schematics are checked on other threads while we keep
+	//reading the packs, then the dungeons are registered in their original order. These are null at other times.
+	private ExecutorService schematicValidator = null;
+	private ArrayList<PendingDungeon> pendingDungeons = null;
+	private LinkedHashMap<DungeonPack, PackLoadReport> packReports = null;
 	
 	private DungeonHelper()
 	{
@@ -139,9 +215,110 @@ public class DungeonHelper
 			copyfile.copyFile(DUNGEON_CREATION_GUIDE_SOURCE_PATH, file.getAbsolutePath() + "/How_to_add_dungeons.txt");
 		}
 		
-		DungeonPackConfigReader reader = new DungeonPackConfigReader();		
-		registerBundledDungeons(reader);
-		registerCustomDungeons(properties.CustomSchematicDirectory, reader);
+		long startTime = System.currentTimeMillis();
+		int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_VALIDATION_THREADS));
+		schematicValidator = Executors.newFixedThreadPool(threads);
+		pendingDungeons = new ArrayList<PendingDungeon>();
+		packReports = new LinkedHashMap<DungeonPack, PackLoadReport>();
+		try
+		{
+			DungeonPackConfigReader reader = new DungeonPackConfigReader();
+			registerBundledDungeons(reader);
+			registerCustomDungeons(properties.CustomSchematicDirectory, reader);
+			registerPendingDungeons();
+		}
+		finally
+		{
+			schematicValidator.shutdownNow();
+			schematicValidator = null;
+			pendingDungeons = null;
+		}
+
+		for (Entry<DungeonPack, PackLoadReport> entry : packReports.entrySet())
+		{
+			PackLoadReport report = entry.getValue();
+			System.out.println("Dungeon pack " + entry.getKey().getName() + ": " + report.registered + " dungeons registered, " +
+					report.rejected + " rejected, " + report.configTime + " ms reading its config, " +
+					(report.checkTime / 1000000) + " ms checking schematics");
+		}
+		packReports = null;
+		System.out.println("Finished registering dungeons in " + (System.currentTimeMillis() - startTime) +
+				" ms, checking schematics on " + threads + " threads");
+	}
+
+	private void registerPendingDungeons()
+	{
+		for (PendingDungeon pending : pendingDungeons)
+		{
+			PackLoadReport report = getPackReport(pending.pack);
+			try
+			{
+				report.checkTime += pending.check.get();
+				addDungeon(new DungeonGenerator(pending.weight, pending.path, pending.isOpen, pending.type),
+						pending.pack, pending.name, pending.verbose);
+				report.registered++;
+			}
+			catch (ExecutionException e)
+			{
+				report.rejected++;
+				reportInvalidSchematic(pending.name, e.getCause());
+			}
+			catch (InterruptedException e)
+			{
+				System.err.println("Interrupted while checking dungeon schematics. The remaining dungeons will not be registered.");
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private PackLoadReport getPackReport(DungeonPack pack)
+	{
+		PackLoadReport report = packReports.get(pack);
+		if (report == null)
+		{
+			report = new PackLoadReport();
+			packReports.put(pack, report);
+		}
+		return report;
+	}
+
+	/**
+	 * Checks that a schematic can be read and fits within the maximum dimensions for dungeons. Only the
+	 * schematic's header is read. Its blocks are loaded when the dungeon is first generated.
+	 */
+	private static void checkSchematic(String path, boolean isInternal) throws FileNotFoundException, InvalidSchematicException
+	{
+		SchematicHeader header;
+		if (isInternal)
+		{
+			header = SchematicHeader.readFromResource(path);
+		}
+		else
+		{
+			header = SchematicHeader.readFromFile(new File(path));
+		}
+		if (header.getWidth() > MAX_DUNGEON_WIDTH || header.getHeight() > MAX_DUNGEON_HEIGHT || header.getLength() > MAX_DUNGEON_LENGTH)
+		{
+			throw new InvalidSchematicException("The schematic has dimensions that exceed the maximum permitted dimensions for dungeons.");
+		}
+	}
+
+	private static void reportInvalidSchematic(String name, Throwable cause)
+	{
+		System.err.println("The following dungeon will not be registered because its schematic is invalid: " + name);
+		if (cause instanceof InvalidSchematicException)
+		{
+			System.err.println(cause.getMessage());
+		}
+		else if (cause instanceof FileNotFoundException)
+		{
+			System.err.println("The schematic file could not be found.");
+		}
+		else
+		{
+			cause.printStackTrace();
+		}
 	}
 	
 	private static DungeonPackConfig loadDungeonPackConfig(String configPath, String name, boolean isInternal, DungeonPackConfigReader reader)
@@ -200,6 +377,7 @@ public class DungeonHelper
 			{
 				configPath = directory + File.separator + STANDARD_CONFIG_FILE_NAME;
 			}
+			long startTime = System.currentTimeMillis();
 			DungeonPackConfig config = loadDungeonPackConfig(configPath, name, isInternal, reader);
 			if (config == null)
 			{
@@ -211,6 +389,11 @@ public class DungeonHelper
 			pack = new DungeonPack(config);
 			dungeonPackMapping.put(name, pack);
 			dungeonPackList.add(pack);
+			packSwitchTable = null;
+			if (packReports != null)
+			{
+				getPackReport(pack).configTime += System.currentTimeMillis() - startTime;
+			}
 		}
 		else
 		{
@@ -369,14 +552,25 @@ public class DungeonHelper
 				boolean isOpen = dungeonData[2].equalsIgnoreCase("open");
 				int weight = (dungeonData.length == 4) ? Integer.parseInt(dungeonData[3]) : DEFAULT_DUNGEON_WEIGHT;
 				
-				//Add this custom dungeon to the list corresponding to its type
-				DungeonGenerator generator = new DungeonGenerator(weight, path, isOpen, dungeonType);
-
-				pack.addDungeon(generator);
-				registeredDungeons.add(generator);
-				if (verbose)
+				if (schematicValidator != null)
+				{
+					//Check the schematic on another thread. The dungeon is registered once all the packs have been read.
+					Future<Long> check = schematicValidator.submit(new SchematicCheck(path, isInternal));
+					pendingDungeons.add(new PendingDungeon(name, path, weight, isOpen, dungeonType, pack, verbose, check));
+				}
+				else
 				{
-					System.out.println("Registered dungeon: " + name);
+					try
+					{
+						checkSchematic(path, isInternal);
+					}
+					catch (Exception e)
+					{
+						reportInvalidSchematic(name, e);
+						return;
+					}
+					//Add this custom dungeon to the list corresponding to its type
+					addDungeon(new DungeonGenerator(weight, path, isOpen, dungeonType), pack, name, verbose);
 				}
 			}
 			else
@@ -396,6 +590,17 @@ public class DungeonHelper
 		}
 	}
 
+	private void addDungeon(DungeonGenerator generator, DungeonPack pack, String name, boolean verbose)
+	{
+		pack.addDungeon(generator);
+		registeredDungeons.add(generator);
+		packSwitchTable = null;
+		if (verbose)
+		{
+			System.out.println("Registered dungeon: " + name);
+		}
+	}
+
 	private void registerCustomDungeons(String path, DungeonPackConfigReader reader)
 	{
 		File[] schematics;
@@ -580,30 +785,44 @@ public class DungeonHelper
 				selection = defaultError;
 			}
 		}
-		dimHelper.instance.getDimData(inbound.destDimID).dungeonGenerator = selection;
+		setDungeon(dimHelper.instance.getDimData(inbound.destDimID), selection);
 	}
 
-	@SuppressWarnings("unchecked")
 	private DungeonPack getRandomDungeonPack(DungeonPack current, Random random)
 	{
-		DungeonPack selection = current;
+		if (packSwitchTable == null)
+		{
+			buildPackSwitchTable();
+		}
+		
+		//The current pack can't be selected, so stay in it if it's the only usable pack
+		int count = packSwitchTable.size();
+		if (count == 0 || (count == 1 && packSwitchTable.get(0) == current))
+		{
+			return current;
+		}
+		DungeonPack selection;
+		do
+		{
+			selection = packSwitchTable.sample(random);
+		}
+		while (selection == current);
+		return selection;
+	}
+	
+	private void buildPackSwitchTable()
+	{
+		//Load up a list of weighted items with any usable dungeon packs
 		ArrayList<WeightedContainer<DungeonPack>> packs = new ArrayList<WeightedContainer<DungeonPack>>(dungeonPackList.size());
-
-		//Load up a list of weighted items with any usable dungeon packs that is not the current pack
 		for (DungeonPack pack : dungeonPackList)
 		{
 			DungeonPackConfig config = pack.getConfig();
-			if (pack != current && config.allowPackChangeIn() && !pack.isEmpty())
+			if (config.allowPackChangeIn() && !pack.isEmpty())
 			{
 				packs.add(new WeightedContainer<DungeonPack>(pack, config.getPackWeight()));
 			}
 		}
-		if (!packs.isEmpty())
-		{
-			//Pick a random dungeon pack
-			selection = ((WeightedContainer<DungeonPack>) WeightedRandom.getRandomItem(random, packs)).getData();
-		}
-		return selection;
+		packSwitchTable = new AliasTable<DungeonPack>(packs);
 	}
 
 	public Collection<String> getDungeonNames() {
@@ -638,110 +857,152 @@ public class DungeonHelper
 		return names;
 	}
 	
+	/**
+	 * Assigns a dungeon to a dimension and records the chain of dungeons that it extends. The dimension's
+	 * parentDimID must be set first. Use this instead of setting DimData.dungeonGenerator directly.
+	 */
+	public static void setDungeon(DimData dimData, DungeonGenerator dungeon)
+	{
+		dimData.dungeonGenerator = dungeon;
+		updateChainData(dimData);
+		dimData.markDirty();
+	}
+	
+	/**
+	 * Returns the type IDs of the dungeons in the chain that ends at the given dimension, most recent first.
+	 * At most DimData.MAX_CHAIN_HISTORY types are returned. The array belongs to the dimension and must not be modified.
+	 */
+	public static int[] getChainTypeHistory(DimData dimData, DungeonPack pack)
+	{
+		loadChainData(dimData);
+		if (dimData.dungeonGenerator == null || dimData.dungeonGenerator.getDungeonType().Owner != pack)
+		{
+			return DimData.EMPTY_CHAIN_HISTORY;
+		}
+		return dimData.chainHistory;
+	}
+	
 	public static ArrayList<DungeonGenerator> getDungeonChainHistory(DimData dimData, DungeonPack pack, int maxSize)
 	{
-		//TODO: I've improved this code for the time being. However, searching across links is a flawed approach. A player could
-		//manipulate the output of this function by setting up links to mislead our algorithm or by removing links.
-		//Dimensions MUST have built-in records of their parent dimensions in the future. ~SenseiKiwi
-		
 		ArrayList<DungeonGenerator> history = new ArrayList<DungeonGenerator>();
-		DimData tailDim = dimData;
-		boolean found = true;
 		
-		if (dimData.dungeonGenerator == null || dimData.dungeonGenerator.getDungeonType().Owner != pack || maxSize < 1)
+		loadChainData(dimData);
+		if (dimData.dungeonGenerator == null || dimData.dungeonGenerator.getDungeonType().Owner != pack)
 		{
 			//The initial dimension is already outside our pack. Return an empty list.
 			return history;
 		}
-		history.add(dimData.dungeonGenerator);
 		
-		for (int count = 1; count < maxSize && found; count++)
+		//All the dimensions in the chain belong to the same pack, so just follow the parents
+		int length = Math.min(dimData.packDepth, maxSize);
+		DimData current = dimData;
+		for (int count = 0; count < length && current != null; count++)
 		{
-			found = false;
-			for (LinkData link : tailDim.getLinksInDim())
-			{
-				DimData neighbor = dimHelper.instance.getDimData(link.destDimID);
-				if (neighbor.depth == tailDim.depth - 1 && neighbor.dungeonGenerator != null &&
-						neighbor.dungeonGenerator.getDungeonType().Owner == pack)
-				{
-					tailDim = neighbor;
-					history.add(tailDim.dungeonGenerator);
-					found = true;
-					break;
-				}
-			}
+			history.add(current.dungeonGenerator);
+			current = getParent(current);
 		}
 		return history;
 	}
 	
 	private static int getPackDepth(LinkData inbound, DungeonPack pack)
 	{
-		//TODO: I've improved this code for the time being. However, searching across links is a flawed approach. A player could
-		//manipulate the output of this function by setting up links to mislead our algorithm or by removing links.
-		//Dimensions MUST have built-in records of their parent dimensions in the future. ~SenseiKiwi
-		//Dimensions should also just keep track of pack depth internally.
+		//The new dungeon extends the chain of the dimension that the inbound link is in
+		DimData parent = dimHelper.dimList.get(inbound.locDimID);
+		if (parent == null)
+		{
+			return 1;
+		}
+		loadChainData(parent);
+		if (parent.dungeonGenerator != null && parent.dungeonGenerator.getDungeonType().Owner == pack)
+		{
+			return parent.packDepth + 1;
+		}
+		return 1;
+	}
+	
+	private static DimData getParent(DimData dimData)
+	{
+		if (dimData.parentDimID == DimData.NO_PARENT)
+		{
+			return null;
+		}
+		return dimHelper.dimList.get(dimData.parentDimID);
+	}
+	
+	private static void updateChainData(DimData dimData)
+	{
+		DungeonGenerator dungeon = dimData.dungeonGenerator;
+		if (dungeon == null)
+		{
+			dimData.packDepth = 0;
+			dimData.chainHistory = DimData.EMPTY_CHAIN_HISTORY;
+			return;
+		}
 		
-		int packDepth = 1;
-		DimData tailDim = dimHelper.dimList.get(inbound.destDimID);
-		boolean found;
+		//Extend the parent's chain if its dungeon is one level up and belongs to the same pack
+		DungeonType type = dungeon.getDungeonType();
+		DimData parent = getParent(dimData);
+		int[] parentHistory = DimData.EMPTY_CHAIN_HISTORY;
+		dimData.packDepth = 1;
+		if (parent != null && parent.depth == dimData.depth - 1 && parent.dungeonGenerator != null &&
+				parent.dungeonGenerator.getDungeonType().Owner == type.Owner)
+		{
+			loadChainData(parent);
+			dimData.packDepth = parent.packDepth + 1;
+			parentHistory = parent.chainHistory;
+		}
+		int[] history = new int[Math.min(parentHistory.length + 1, DimData.MAX_CHAIN_HISTORY)];
+		history[0] = type.ID;
+		System.arraycopy(parentHistory, 0, history, 1, history.length - 1);
+		dimData.chainHistory = history;
+	}
+	
+	/**
+	 * Works out the chain data of dimensions from saves that didn't record it. Their parents are found by searching
+	 * across links for a neighbor one level up, which is how chain queries used to work, but only once per dimension.
+	 */
+	private static void loadChainData(DimData dimData)
+	{
+		if (dimData.packDepth != DimData.UNKNOWN_PACK_DEPTH)
+		{
+			return;
+		}
 		
-		do
+		//Collect the ancestors that are missing their chain data and fill them in from the top down.
+		//Depth decreases with every step, so this can't loop forever.
+		ArrayList<DimData> pending = new ArrayList<DimData>();
+		DimData current = dimData;
+		while (current != null && current.packDepth == DimData.UNKNOWN_PACK_DEPTH)
 		{
-			found = false;
-			for (LinkData link : tailDim.getLinksInDim())
+			pending.add(current);
+			if (current.parentDimID == DimData.NO_PARENT)
 			{
-				DimData neighbor = dimHelper.instance.getDimData(link.destDimID);
-				if (neighbor.depth == tailDim.depth - 1 && neighbor.dungeonGenerator != null &&
-						neighbor.dungeonGenerator.getDungeonType().Owner == pack)
-				{
-					tailDim = neighbor;
-					found = true;
-					packDepth++;
-					break;
-				}
+				current.parentDimID = findParent(current);
 			}
+			current = getParent(current);
+		}
+		for (int index = pending.size() - 1; index >= 0; index--)
+		{
+			current = pending.get(index);
+			updateChainData(current);
+			current.markDirty();
 		}
-		while (found);
-		
-		return packDepth;
 	}
 	
-	public static ArrayList<DungeonGenerator> getFlatDungeonTree(DimData dimData, int maxSize)
+	private static int findParent(DimData dimData)
 	{
-		//TODO: I've improved this code for the time being. However, searching across links is a flawed approach. A player could
-		//manipulate the output of this function by setting up links to mislead our algorithm or by removing links.
-		//Dimensions MUST have built-in records of their parent dimensions in the future. ~SenseiKiwi
-		
-		dimHelper helper = dimHelper.instance;
-		ArrayList<DungeonGenerator> dungeons = new ArrayList<DungeonGenerator>();
-		DimData root = helper.getDimData(helper.getLinkDataFromCoords(dimData.exitDimLink.destXCoord, dimData.exitDimLink.destYCoord, dimData.exitDimLink.destZCoord, dimData.exitDimLink.destDimID).destDimID);
-		HashSet<DimData> checked = new HashSet<DimData>();
-		Queue<DimData> pendingDimensions = new LinkedList<DimData>();
-		
-		if (root.dungeonGenerator == null)
+		if (!dimData.isPocket)
 		{
-			return dungeons;
+			return DimData.NO_PARENT;
 		}
-		pendingDimensions.add(root);
-		checked.add(root);
-		
-		while (dungeons.size() < maxSize && !pendingDimensions.isEmpty())
+		for (LinkData link : dimData.getLinks())
 		{
-			DimData current = pendingDimensions.remove();
-			for (LinkData link : current.getLinksInDim())
+			DimData neighbor = dimHelper.dimList.get(link.destDimID);
+			if (neighbor != null && neighbor.depth == dimData.depth - 1)
 			{
-				DimData child = helper.getDimData(link.destDimID);
-				if (child.depth == current.depth + 1 && child.dungeonGenerator != null && checked.add(child))
-				{
-					dungeons.add(child.dungeonGenerator);
-					pendingDimensions.add(child);
-				}
-				if (dungeons.size() == maxSize)
-				{
-					break;
-				}
+				return neighbor.dimID;
 			}
 		}
-		return dungeons;
+		return DimData.NO_PARENT;
 	}
-}
\ No newline at end of file
+}
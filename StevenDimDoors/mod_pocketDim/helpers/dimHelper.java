@@ -6,9 +6,6 @@ package StevenDimDoors.mod_pocketDim.helpers;
  */
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -33,15 +30,17 @@ import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 import net.minecraftforge.common.DimensionManager;
+import StevenDimDoors.mod_pocketDim.DDMetrics;
 import StevenDimDoors.mod_pocketDim.DDProperties;
 import StevenDimDoors.mod_pocketDim.DimData;
 import StevenDimDoors.mod_pocketDim.LinkData;
-import StevenDimDoors.mod_pocketDim.ObjectSaveInputStream;
+import StevenDimDoors.mod_pocketDim.LinkRegistry;
 import StevenDimDoors.mod_pocketDim.PacketHandler;
 import StevenDimDoors.mod_pocketDim.Point3D;
 import StevenDimDoors.mod_pocketDim.SchematicLoader;
 import StevenDimDoors.mod_pocketDim.TileEntityRift;
 import StevenDimDoors.mod_pocketDim.mod_pocketDim;
+import StevenDimDoors.mod_pocketDim.saving.DimDataStore;
 import StevenDimDoors.mod_pocketDim.schematic.BlockRotator;
 import StevenDimDoors.mod_pocketDim.world.LimboProvider;
 import StevenDimDoors.mod_pocketDim.world.PocketProvider;
@@ -61,7 +60,6 @@ public class dimHelper extends DimensionManager
 	 * @Return
 	 */
 	public static HashMap<Integer, DimData> dimList=new HashMap<Integer, DimData>();
-	public static boolean isSaving=false;
 	
 	/**
 	 * ArrayList containing any blocks in limbo that have been placed by the player. Cycled through in the common tick manager
@@ -81,6 +79,11 @@ public class dimHelper extends DimensionManager
 	 */
 	public HashMap<Integer, LinkData> interDimLinkList= new HashMap<Integer,LinkData>();
 	
+	/**
+	 * Handles the DimDoors data files for the current world. Only the changes made since the last save are written, see DimDataStore.
+	 */
+	private DimDataStore store = null;
+	
 	/**
 	 * ArrayList containing all link data not sorted for easy random access, used for random doors and for recreating rifts if they have a block placed over them. 
 	 * See the common tick manager and the Chaos door for details on usage
@@ -92,6 +95,8 @@ public class dimHelper extends DimensionManager
 	public static final int DEFAULT_POCKET_SIZE = 39;
 	public static final int DEFAULT_POCKET_WALL_THICKNESS = 5;
 	public static final int MAX_WORLD_HEIGHT = 254;
+	//Half the size of a default pocket, including its walls
+	public static final int POCKET_SEARCH_RADIUS = 19;
 	
 	public int getDimDepth(int DimID)
 	{
@@ -105,6 +110,7 @@ public class dimHelper extends DimensionManager
 	// GreyMaria: My god, what a mess. Here, let me clean it up a bit.
 	public Entity teleportEntity(World world, Entity entity, LinkData link) //this beautiful teleport method is based off of xCompWiz's teleport function. 
 	{	
+		DDMetrics.instance().countTeleport();
 		WorldServer oldWorld = (WorldServer)world;
 		WorldServer newWorld;
 		EntityPlayerMP player = (entity instanceof EntityPlayerMP) ? (EntityPlayerMP)entity : null;
@@ -274,6 +280,15 @@ public class dimHelper extends DimensionManager
 			
 			if(dimHelper.dimList.containsKey(destinationID) && dimHelper.dimList.containsKey(world.provider.dimensionId))
 			{
+				if (mod_pocketDim.pocketGenerator != null &&
+					(this.needsGeneration(linkData) || mod_pocketDim.pocketGenerator.isGenerating(linkData.destDimID)))
+				{
+					//Build the pocket over the next few ticks, or wait for the job that's already building it.
+					//Players are held at the door and sent through once it's ready. Other entities will go
+					//through the next time they touch the door.
+					mod_pocketDim.pocketGenerator.enqueue(linkData, entity);
+					return;
+				}
 				this.generatePocket(linkData);
 				
 				if(mod_pocketDim.teleTimer==0||entity instanceof EntityPlayer)
@@ -403,6 +418,7 @@ public class dimHelper extends DimensionManager
 		}
 		DimData locationDimData=	dimHelper.instance.getDimData(link.locDimID);
 		link.isLocPocket=locationDimData.isPocket;
+		boolean isNew = (locationDimData.findLinkAtCoords(link.locXCoord, link.locYCoord, link.locZCoord) == null);
 		locationDimData.addLinkToDim(link);
 		
 		World world = dimHelper.getWorld(link.locDimID);
@@ -416,7 +432,7 @@ public class dimHelper extends DimensionManager
 		//Notifies other players that a link has been created. 
 		if(FMLCommonHandler.instance().getEffectiveSide()==Side.SERVER)
 		{		
-			PacketHandler.onLinkCreatedPacket(link);
+			PacketHandler.onLinkCreatedPacket(link, isNew);
 		}	
 		return link;
 	}
@@ -510,6 +526,7 @@ public class dimHelper extends DimensionManager
 				{
 					destOrientation = destLink.linkOrientation;
 					destLink.hasGennedDoor=true;
+					this.markLinkDirty(destLink);
 				}
 				int blockToReplace= DimensionManager.getWorld(destinationID).getBlockId(destX, destY, destZ);
 				if(blockToReplace!=properties.DimensionalDoorID&&blockToReplace!=properties.WarpDoorID&&blockToReplace != properties.TransientDoorID)
@@ -518,6 +535,7 @@ public class dimHelper extends DimensionManager
 					DimensionManager.getWorld(destinationID).setBlock(destX, destY, destZ, doorTypeToPlace,8,2);
 				}
 				incLink.hasGennedDoor=true;
+				this.markLinkDirty(incLink);
 			}
 		}
 	}
@@ -539,35 +557,85 @@ public class dimHelper extends DimensionManager
 	public void generatePocket(LinkData incomingLink)
 	{
 		DDProperties properties = DDProperties.instance();
+		if (!loadPocketWorld(incomingLink.destDimID))
+		{
+			return;
+		}
+	//	World world = this.getWorld(incomingLink.destDimID);
+		DimData data = dimHelper.instance.getDimData(incomingLink.destDimID);
+		
+		long start = System.nanoTime();
+		if(!data.hasBeenFilled&&data.isPocket&&!data.isDimRandomRift)
+		{
+			data.hasBeenFilled=true;
+			data.markDirty();
+			//System.out.println("genning  pocket");
+			World world = DimensionManager.getWorld(incomingLink.destDimID);
+			Point3D center = getPocketCenter(incomingLink);
+			 
+			 if(!world.isRemote)
+			 {
+				 for (int xCount = -POCKET_SEARCH_RADIUS; xCount <= POCKET_SEARCH_RADIUS; xCount++)
+				 {
+					 generatePocketSlice(world, center, xCount, properties);
+				 }
+			 }
+			 DDMetrics.instance().recordPocketGeneration(System.nanoTime() - start);
+		}
+		else if (!data.hasBeenFilled && data.isPocket && data.isDimRandomRift)
+		{
+			SchematicLoader.generateDungeonPocket(incomingLink, properties);
+			data.hasBeenFilled=true;
+			data.markDirty();
+			DDMetrics.instance().recordPocketGeneration(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Returns whether the pocket a link leads to still has to be generated.
+	 */
+	public boolean needsGeneration(LinkData incomingLink)
+	{
+		DimData data = getDimData(incomingLink.destDimID);
+		return data != null && data.isPocket && !data.hasBeenFilled;
+	}
+	
+	/**
+	 * Makes sure that the world of a dimension is loaded.
+	 * @return false if the world couldn't be loaded
+	 */
+	public boolean loadPocketWorld(int dimID)
+	{
 		try
 		{
-			if (DimensionManager.getWorld(incomingLink.destDimID) == null)
+			if (DimensionManager.getWorld(dimID) == null)
 			{
-				DimensionManager.initDimension(incomingLink.destDimID);
+				DimensionManager.initDimension(dimID);
 			}
-			if (DimensionManager.getWorld(incomingLink.destDimID).provider == null)
+			if (DimensionManager.getWorld(dimID).provider == null)
 			{
-				DimensionManager.initDimension(incomingLink.destDimID);
+				DimensionManager.initDimension(dimID);
 			}
+			return true;
 		}
 		catch(Exception E)
 		{
 			E.printStackTrace();
-			return;
+			return false;
 		}
-	//	World world = this.getWorld(incomingLink.destDimID);
-		DimData data = dimHelper.instance.getDimData(incomingLink.destDimID);
-		
-		if(!data.hasBeenFilled&&data.isPocket&&!data.isDimRandomRift)
-		{
-			data.hasBeenFilled=true;
-			//System.out.println("genning  pocket");
-			int x = incomingLink.destXCoord;
-			int y = incomingLink.destYCoord;
-			int z = incomingLink.destZCoord;
-			int orientation= (incomingLink.linkOrientation);
+	}
+	
+	/**
+	 * Returns the center of the default (non-dungeon) pocket that a link leads to.
+	 */
+	public Point3D getPocketCenter(LinkData incomingLink)
+	{
+		int x = incomingLink.destXCoord;
+		int y = incomingLink.destYCoord;
+		int z = incomingLink.destZCoord;
+		int orientation= (incomingLink.linkOrientation);
 		
-		int depth= this.getDimDepth(incomingLink.locDimID);
+		//int depth= this.getDimDepth(incomingLink.locDimID);
 		//x=x*depth;
 		//y=y*depth;
 		//z=z*depth;
@@ -598,52 +666,43 @@ public class dimHelper extends DimensionManager
 			//this.getWorld(incomingLink.destDimID).provider.setSpawnPoint(x, y, z+1);
 
 		}
-			int searchRadius=19;
-			 
-			 if(!DimensionManager.getWorld(incomingLink.destDimID).isRemote)
-			 {
-				 int xCount=-searchRadius;
-				 int yCount=-searchRadius;
-				 int zCount=-searchRadius;
-			 
-				 while (xCount<=searchRadius)
+		return new Point3D(x, y, z);
+	}
+	
+	/**
+	 * Builds the walls of a default pocket that lie at a given X offset from its center. Calling this for every
+	 * offset from -POCKET_SEARCH_RADIUS to POCKET_SEARCH_RADIUS builds the whole pocket, so the work can be
+	 * split into slices.
+	 */
+	public void generatePocketSlice(World world, Point3D center, int xCount, DDProperties properties)
+	{
+		int x = center.getX();
+		int y = center.getY();
+		int z = center.getZ();
+		
+		for (int yCount = -POCKET_SEARCH_RADIUS; yCount <= POCKET_SEARCH_RADIUS; yCount++)
+		{
+			for (int zCount = -POCKET_SEARCH_RADIUS; zCount <= POCKET_SEARCH_RADIUS; zCount++)
+			{
+				 if((Math.abs(xCount)>=15||Math.abs(yCount)>=15||Math.abs(zCount)>=15)&&world.isAirBlock( x+xCount,  y+yCount,  z+zCount)&&((yCount+y)>0))
 				 {
-					 while(yCount<=searchRadius)
-					 {
-						 while(zCount<=searchRadius)
+					 if(Math.abs(xCount)>=19||Math.abs(yCount)>=19||Math.abs(zCount)>=19)
 						 {
-							 if((Math.abs(xCount)>=15||Math.abs(yCount)>=15||Math.abs(zCount)>=15)&&DimensionManager.getWorld(incomingLink.destDimID).isAirBlock( x+xCount,  y+yCount,  z+zCount)&&((yCount+y)>0))
-							 {
-								 if(Math.abs(xCount)>=19||Math.abs(yCount)>=19||Math.abs(zCount)>=19)
-									 {
-									 	dimHelper.setBlockDirectly(DimensionManager.getWorld(incomingLink.destDimID), x+xCount,  y+yCount,  z+zCount,properties.PermaFabricBlockID,0);
-									 }
-								 else
-								 {
-									dimHelper.setBlockDirectly(DimensionManager.getWorld(incomingLink.destDimID), x+xCount,  y+yCount,  z+zCount,properties.FabricBlockID,0);
-								 	if(properties.TNFREAKINGT_Enabled)
-								 	{
-								 		if((Math.abs(xCount)>=16||Math.abs(yCount)>=16||Math.abs(zCount)>=16) && rand.nextInt(properties.NonTntWeight + 1) == 0)
-								 		{
-								 			DimensionManager.getWorld(incomingLink.destDimID).setBlock( x+xCount,  y+yCount,  z+zCount,Block.tnt.blockID);
-								 		}
-								 	}
-								 }
-							 }
-							 zCount++;
+						 	dimHelper.setBlockDirectly(world, x+xCount,  y+yCount,  z+zCount,properties.PermaFabricBlockID,0);
 						 }
-						 zCount=-searchRadius;
-						 yCount++;
+					 else
+					 {
+						dimHelper.setBlockDirectly(world, x+xCount,  y+yCount,  z+zCount,properties.FabricBlockID,0);
+					 	if(properties.TNFREAKINGT_Enabled)
+					 	{
+					 		if((Math.abs(xCount)>=16||Math.abs(yCount)>=16||Math.abs(zCount)>=16) && rand.nextInt(properties.NonTntWeight + 1) == 0)
+					 		{
+					 			world.setBlock( x+xCount,  y+yCount,  z+zCount,Block.tnt.blockID);
+					 		}
+					 	}
 					 }
-					 yCount=-searchRadius;
-					 xCount++;
 				 }
-			 }
-		}
-		else if (!data.hasBeenFilled && data.isPocket && data.isDimRandomRift)
-		{
-			SchematicLoader.generateDungeonPocket(incomingLink, properties);
-			data.hasBeenFilled=true;
+			}
 		}
 	}
 
@@ -697,13 +756,16 @@ public class dimHelper extends DimensionManager
 		DeleteFolder.deleteFolder(save);
 		dimData.hasBeenFilled = false;
 		dimData.hasDoor = false;
+		dimData.markDirty();
 		for(LinkData link : dimData.getLinksInDim())
 		{
 			link.hasGennedDoor = false;
+			dimData.markLinkDirty(link);
 			LinkData linkOut = this.getLinkDataFromCoords(link.destXCoord, link.destYCoord, link.destZCoord, link.destDimID);
 			if (linkOut != null)
 			{
 				linkOut.hasGennedDoor = false;
+				this.markLinkDirty(linkOut);
 			}
 		}
 		return true;
@@ -718,6 +780,7 @@ public class dimHelper extends DimensionManager
 			return false;
 		}
 		dimList.remove(dimData.dimID);
+		LinkRegistry.instance().removeDimension(dimData);
 		if (deleteFolder)
 		{
 			File save = new File(getCurrentSaveRootDirectory() + "/DimensionalDoors/pocketDimID" + dimData.dimID);
@@ -801,8 +864,16 @@ public class dimHelper extends DimensionManager
 		}
 		int dimensionID;
 		int depth = this.getDimDepth(link.locDimID);
-		dimensionID = getNextFreeDimId();
-		registerDimension(dimensionID, properties.PocketProviderID);
+		if (mod_pocketDim.pocketPool != null)
+		{
+			//Take a dimension that was registered ahead of time
+			dimensionID = mod_pocketDim.pocketPool.claim();
+		}
+		else
+		{
+			dimensionID = getNextFreeDimId();
+			registerDimension(dimensionID, properties.PocketProviderID);
+		}
 		DimData locationDimData;
 		DimData destDimData;
 		
@@ -847,6 +918,7 @@ public class dimHelper extends DimensionManager
 			destDimData= new DimData(dimensionID, true, 1, link.locDimID,link.locXCoord,link.locYCoord,link.locZCoord);
 		}
 		destDimData.isDimRandomRift=isRandomRift;
+		destDimData.parentDimID=link.locDimID;
 		dimHelper.dimList.put(DimensionManager.getWorld(link.locDimID).provider.dimensionId, locationDimData);
 		dimHelper.dimList.put(dimensionID, destDimData);
 		
@@ -875,249 +947,89 @@ public class dimHelper extends DimensionManager
 	
 	}
 	/**
-	 * function that saves all dim data in a hashMap. Calling too often can cause Concurrent modification exceptions, so be careful.
-	 * @return
+	 * Saves the changes made to the dim data since the last save. The changes are copied right away and written to disk
+	 * on a separate thread, so this is cheap enough to call whenever the data changes. See DimDataStore for the file format.
 	 */
-	//TODO change from saving serialized objects to just saving data for compatabilies sake. 
-	//TODO If saving is multithreaded as the concurrent modification exception implies, you should be synchronizing access. ~SenseiKiwi
 	public void save() 
 	{
-		if(dimHelper.isSaving) return;
 		World world = DimensionManager.getWorld(0);
 		if(world==null || world.isRemote) return;
-		if(DimensionManager.getCurrentSaveRootDirectory()!=null)
+		File saveRoot = DimensionManager.getCurrentSaveRootDirectory();
+		if(saveRoot!=null)
 		{
-			//System.out.println("saving");
-
-			dimHelper.isSaving=true;
-			HashMap comboSave=new HashMap();
-			comboSave.put("dimList", dimHelper.dimList);
-			comboSave.put("interDimLinkList", this.interDimLinkList);
-			comboSave.put("blocksToDecay", dimHelper.blocksToDecay);
-
-
-			
-			FileOutputStream saveFile = null;
 			try
 			{
-				//World world=FMLCommonHandler.instance().getMinecraftServerInstance().worldServers[0];
-				String saveFileName=DimensionManager.getCurrentSaveRootDirectory()+"/DimensionalDoorsDataTEMP";
-				saveFile = new FileOutputStream(saveFileName);
-		         
-		         ObjectOutputStream save = new ObjectOutputStream(saveFile);
-		         save.writeObject(comboSave);
-		         save.close();
-		         saveFile.close();
-		         
-		         if(new File(DimensionManager.getCurrentSaveRootDirectory()+"/DimensionalDoorsDataOLD").exists())
-		         {
-		        	 new File(DimensionManager.getCurrentSaveRootDirectory()+"/DimensionalDoorsDataOLD").delete(); 
-		         }
-		         new File(DimensionManager.getCurrentSaveRootDirectory()+"/DimensionalDoorsData").renameTo(new File(DimensionManager.getCurrentSaveRootDirectory()+"/DimensionalDoorsDataOLD"));
-		         
-		        new File(saveFileName).renameTo( new File(DimensionManager.getCurrentSaveRootDirectory()+"/DimensionalDoorsData"));
+				if(this.store==null || !saveRoot.equals(this.store.getSaveRoot()))
+				{
+					this.closeStore();
+					this.store = new DimDataStore(saveRoot);
+				}
+				long start = System.nanoTime();
+				//Nothing changes the link signatures or the decay list on the server after loading, so they're only written with full saves
+				this.store.save(dimHelper.dimList, this.interDimLinkList, dimHelper.blocksToDecay, false);
+				DDMetrics.instance().recordSave(System.nanoTime() - start);
 			}
 			catch(Exception e)
 			{
-				 e.printStackTrace();
+				e.printStackTrace();
 				System.out.println("Could not save data-- SEVERE");
 			}
-			
-		         
-			
-			
-			dimHelper.isSaving=false;
 		}
 	}
 	
 	/**
-	 * loads the dim data from the saved hashMap. Also handles compatabilty with old saves, see OldSaveHandler
-	 * @return
+	 * Waits for pending saves to be written and stops the save thread. Called when the server stops.
+	 */
+	public void closeStore()
+	{
+		if(this.store!=null)
+		{
+			this.store.close();
+			this.store=null;
+		}
+	}
+	
+	/**
+	 * Loads the dim data from the DimDoors data file. Saves written in the old serialized format are read as well
+	 * and converted on the next save, see DimDataStore.
 	 */
-	//TODO change to loading vars instead of objects
-	@SuppressWarnings("unchecked")
 	public void load()
 	{
-		boolean firstRun=false;
 		System.out.println("Loading DimDoors data");
-		FileInputStream saveFile = null;
-	
 		if(!DimensionManager.getWorld(0).isRemote&&DimensionManager.getCurrentSaveRootDirectory()!=null)
 		{
-	
-		try
-		{
-			File dataStore = new File( DimensionManager.getCurrentSaveRootDirectory()+"/DimensionalDoorsData");
-			
-			if(!dataStore.exists())
+			this.closeStore();
+			this.store = new DimDataStore(DimensionManager.getCurrentSaveRootDirectory());
+			DimDataStore.SaveData data = this.store.load();
+			if(data!=null)
 			{
-				
-				
-				if(!new File( DimensionManager.getCurrentSaveRootDirectory()+"/DimensionalDoorsDataOLD").exists())
-				{
-					firstRun=true;
-				}
+				dimHelper.dimList=data.dimensions;
+				LinkRegistry.instance().rebuild(dimList.values());
+				this.interDimLinkList=data.linkSignatures;
+				dimHelper.blocksToDecay=data.blocksToDecay;
 			}
-	      
-	        
-	      
-	         
-	         
-	         saveFile = new FileInputStream(dataStore);
-	         ObjectSaveInputStream save = new ObjectSaveInputStream(saveFile);
-	         HashMap comboSave =((HashMap) save.readObject());
-	         
-	         try
-	         {
-	        	 this.interDimLinkList = (HashMap<Integer, LinkData>) comboSave.get("interDimLinkList");
-	         }
-	         catch(Exception e)
-	         {
-	        	 System.out.println("Could not load Link Signature list. Link Sig items will loose restored locations.");
-	         }
-	         
-	         try
-	         {
-	        	 dimHelper.dimList = (HashMap<Integer, DimData>) comboSave.get("dimList");
-	         } 
-	         catch(Exception e)
-	         {
-	        	 System.out.println("Could not load pocket dim list. Saves probably lost, but repairable. Move the files from indivual pocket dim files to active ones. See MC thread for details.");
-	         }
-	         
-	        
-	         
-	         try
-	         {
-	        	 dimHelper.blocksToDecay= (ArrayList<Point3D>) comboSave.get("blocksToDecay");
-	         }
-	         catch(Exception e)
-	         {
-	        	 System.out.println("Could not load list of blocks to decay in Limbo. Probably because you updated versions, in which case this is normal. ");
-
-	         }
-	         save.close();
-	         saveFile.close();
-	        
-
-  
 		}
-		catch(Exception e4)
+	}
+	
+	/**
+	 * Records that a link was changed in place, for example by setting its orientation, so that the change is included in the next save.
+	 */
+	public void markLinkDirty(LinkData link)
+	{
+		DimData dimData = dimHelper.dimList.get(link.locDimID);
+		if(dimData!=null)
 		{
-			try
-			{
-				if(!firstRun)
-				{
-					System.out.println("Save data damaged, trying backup...");
-				}
-				World world=FMLCommonHandler.instance().getMinecraftServerInstance().worldServers[0];
-				File dataStore =new File( world.getSaveHandler().getMapFileFromName("idcounts").getParentFile().getParent()+"/DimensionalDoorsDataOLD");
-		      
-
-		         saveFile = new FileInputStream(dataStore);
-		         ObjectSaveInputStream save = new ObjectSaveInputStream(saveFile);
-		         HashMap comboSave =((HashMap)save.readObject());
-		         
-		         try
-		         {
-		        	 this.interDimLinkList=(HashMap<Integer, LinkData>) comboSave.get("interDimLinkList");
-		         }
-		         catch(Exception e)
-		         {
-		        	 System.out.println("Could not load Link Signature list. Link Sig items will loose restored locations.");
-		         }
-		         
-		         try
-		         {
-		        	 dimHelper.dimList=(HashMap<Integer, DimData>) comboSave.get("dimList");
-		         } 
-		         catch(Exception e)
-		         {
-		        	 System.out.println("Could not load pocket dim list. Saves probably lost, but repairable. Move the files from indivual pocket dim files to active ones. See MC thread for details.");
-		         }
-		         
-		        
-		         
-		         try
-		         {
-		        	 dimHelper.blocksToDecay=(ArrayList<Point3D>) comboSave.get("blocksToDecay");
-		         }
-		         catch(Exception e)
-		         {
-		        	 System.out.println("Could not load list of blocks to decay in Limbo. Probably because you updated versions, in which case this is normal. ");
-
-		         }
-		         save.close();
-		         saveFile.close();
-		      
-			}
-			catch(Exception e2)			
-			{
-				if(!firstRun)
-				{
-					e2.printStackTrace();
-					System.out.println("Could not read data-- SEVERE");
-				}
-				
-				
-				
-			
-			}
-			
-		
-			
+			dimData.markLinkDirty(link);
 		}
-		}
-		
 	}
 	
-	
-		
+	/**
+	 * Picks a link uniformly at random from all the links in all dimensions, see LinkRegistry. Returns null if there are no links.
+	 * @param allowInPocket whether links inside pocket dimensions may be picked
+	 */
 	public LinkData getRandomLinkData(boolean allowInPocket)
 	{
-		boolean foundRandomDest=false;
-		int i=0;
-		int size = dimHelper.dimList.size();
-  
-		while (!foundRandomDest&&size>0&&i<100)
-		{
-			i++;
-			DimData dimData;
-			ArrayList<LinkData> linksInDim = new ArrayList<LinkData>();
-			for(size--;size>0;)
-			{
-				dimData = dimHelper.instance.getDimData((Integer)dimList.keySet().toArray()[rand.nextInt(dimList.keySet().size())]);
-				if(dimData==null)
-				{
-					break;
-				}
-				linksInDim = dimData.getLinksInDim();
-				if(!linksInDim.isEmpty())
-				{
-					break;
-				}
-			}
-			
-			if(linksInDim.isEmpty())
-			{
-				break;
-			}
-			
-			LinkData link1 = (LinkData) linksInDim.get(rand.nextInt(linksInDim.size()));
-			
-			if(link1!=null)
-			{
-			
-				if(!link1.isLocPocket||allowInPocket)
-				{
-					foundRandomDest=true;
-					return link1;					 			
-				}
-			}
-		}
-		
-			return null;
-		
+		return LinkRegistry.instance().getRandomLink(rand, allowInPocket);
 	}
 	
 	/**
@@ -1156,16 +1068,9 @@ public class dimHelper extends DimensionManager
 			
 			if(updateLinksPointingHere)
 			{
-				ArrayList<LinkData> incomingLinks = new ArrayList<LinkData>();
-				for(DimData dimData : dimHelper.dimList.values())
+				for(LinkData incomingLink : LinkRegistry.instance().getLinksTo(oldDimID, oldX, oldY, oldZ))
 				{
-					for(LinkData allLink : dimData.getLinksInDim())
-					{
-						if(this.getLinkDataAtDestination(allLink)==linkToMove)
-						{
-							this.moveLinkDataDestination(allLink, x, y, z, dimID, false);							
-						}
-					}
+					this.moveLinkDataDestination(incomingLink, x, y, z, dimID, false);
 				}
 			}
 			this.createLink(new LinkData(dimID,linkToMove.destDimID,x,y,z,linkToMove.destXCoord,linkToMove.destYCoord,linkToMove.destZCoord,linkToMove.isLocPocket,linkToMove.linkOrientation));
@@ -1236,6 +1141,11 @@ public class dimHelper extends DimensionManager
 	 */
 	public LinkData getLinkDataFromCoords(int x, int y, int z, int worldID) 
 	{
+		//Lookups from the client thread are not counted, since DDMetrics is only used from the server thread
+		if(FMLCommonHandler.instance().getEffectiveSide()==Side.SERVER)
+		{
+			DDMetrics.instance().countLinkLookup();
+		}
 		if(dimHelper.dimList.containsKey(worldID))
 		{
 			DimData dimData=dimHelper.instance.getDimData(worldID);
@@ -1259,40 +1169,13 @@ public class dimHelper extends DimensionManager
 	 */
 	public static boolean removeRift(World world, int x, int y, int z, int range, EntityPlayer player, ItemStack item)
     {
-    	DDProperties properties = DDProperties.instance();
-    	
-    	LinkData nearest=null;
-		float distance=range+1;
-		int i=-range;
-		int j=-range;
-		int k=-range;
-		
-		while (i<range)
-		{
-			while (j<range)
-			{
-				while (k<range)
-				{
-					if(world.getBlockId(x+i, y+j, z+k)==properties.RiftBlockID&&MathHelper.abs(i)+MathHelper.abs(j)+MathHelper.abs(k)<distance)
-					{
-						if(MathHelper.abs(i)+MathHelper.abs(j)+MathHelper.abs(k)!=0||range==1)
-						{
-							nearest=dimHelper.instance.getLinkDataFromCoords(x+i, y+j, z+k,world.provider.dimensionId);
-							distance=MathHelper.abs(i)+MathHelper.abs(j)+MathHelper.abs(k);
-						}
-						
-					}
-					k++;
-				}
-				k=-range;
-				j++;
-				
-			}
-			j=-range;
-			i++;		
-			
-		}
-		
+    	//The rift being pointed at counts when the range is 1
+    	DimData dimData = dimHelper.dimList.get(world.provider.dimensionId);
+    	LinkData nearest = null;
+    	if(dimData!=null)
+    	{
+    		nearest = dimData.findNearestRift(world, range, x, y, z, range==1);
+    	}
 		
 		if(nearest!=null)
 		{
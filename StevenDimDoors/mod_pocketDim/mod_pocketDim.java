@@ -29,6 +29,7 @@ import StevenDimDoors.mod_pocketDim.commands.CommandDeleteAllLinks;
 import StevenDimDoors.mod_pocketDim.commands.CommandDeleteDimensionData;
 import StevenDimDoors.mod_pocketDim.commands.CommandDeleteRifts;
 import StevenDimDoors.mod_pocketDim.commands.CommandExportDungeon;
+import StevenDimDoors.mod_pocketDim.commands.CommandMetrics;
 import StevenDimDoors.mod_pocketDim.commands.CommandPrintDimensionData;
 import StevenDimDoors.mod_pocketDim.commands.CommandPruneDimensions;
 import StevenDimDoors.mod_pocketDim.commands.CommandResetDungeons;
@@ -46,8 +47,15 @@ import StevenDimDoors.mod_pocketDim.items.itemLinkSignature;
 import StevenDimDoors.mod_pocketDim.items.itemRiftRemover;
 import StevenDimDoors.mod_pocketDim.ticking.CommonTickHandler;
 import StevenDimDoors.mod_pocketDim.ticking.MobMonolith;
+import StevenDimDoors.mod_pocketDim.ticking.MetricsReporter;
 import StevenDimDoors.mod_pocketDim.ticking.MonolithSpawner;
+import StevenDimDoors.mod_pocketDim.ticking.PocketDimensionPool;
+import StevenDimDoors.mod_pocketDim.ticking.PocketGenerationScheduler;
+import StevenDimDoors.mod_pocketDim.ticking.PocketPregenerator;
+import StevenDimDoors.mod_pocketDim.ticking.PocketUnloader;
 import StevenDimDoors.mod_pocketDim.ticking.RiftRegenerator;
+import StevenDimDoors.mod_pocketDim.ticking.RiftScheduler;
+import StevenDimDoors.mod_pocketDim.ticking.SyncUpdateBatcher;
 import StevenDimDoors.mod_pocketDim.world.BiomeGenLimbo;
 import StevenDimDoors.mod_pocketDim.world.BiomeGenPocket;
 import StevenDimDoors.mod_pocketDim.world.LimboProvider;
@@ -132,6 +140,12 @@ public class mod_pocketDim
 	public static DDProperties properties;
 	public static MonolithSpawner spawner; //Added this field temporarily. Will be refactored out later.
 	public static RiftGenerator riftGen;
+	public static RiftScheduler riftScheduler;
+	public static PocketGenerationScheduler pocketGenerator;
+	public static PocketPregenerator pocketPregenerator;
+	public static PocketDimensionPool pocketPool;
+	public static PocketUnloader pocketUnloader;
+	public static SyncUpdateBatcher syncBatcher;
 
 	public static long genTime;
 	public static int teleTimer = 0;
@@ -181,6 +195,13 @@ public class mod_pocketDim
 		//Register the other regular tick receivers as well
 		spawner = new MonolithSpawner(commonTickHandler, properties);
 		new RiftRegenerator(commonTickHandler, properties); //No need to store the reference
+		riftScheduler = new RiftScheduler(commonTickHandler);
+		pocketGenerator = new PocketGenerationScheduler(commonTickHandler, properties);
+		pocketPregenerator = new PocketPregenerator(commonTickHandler, pocketGenerator, properties);
+		pocketPool = new PocketDimensionPool(commonTickHandler, properties);
+		pocketUnloader = new PocketUnloader(commonTickHandler, properties);
+		syncBatcher = new SyncUpdateBatcher(commonTickHandler, properties);
+		new MetricsReporter(commonTickHandler, properties);
 		LimboDecay decay = new LimboDecay(commonTickHandler, properties);
 
 		transientDoor = (new TransientDoor(properties.TransientDoorID, Material.iron)).setHardness(1.0F) .setUnlocalizedName("transientDoor");
@@ -396,8 +417,17 @@ public class mod_pocketDim
 		try
 		{
 			dimHelper.instance.save();
+			dimHelper.instance.closeStore();
 			dimHelper.instance.unregsisterDims();
+			pocketPool.clear();
+			pocketUnloader.clear();
 			dimHelper.dimList.clear();
+			LinkRegistry.instance().clear();
+			LinkSyncTracker.instance().clear();
+			syncBatcher.clear();
+			riftScheduler.clear();
+			pocketGenerator.clear();
+			pocketPregenerator.clear();
 			dimHelper.blocksToDecay.clear();
 			dimHelper.instance.interDimLinkList.clear();
 			mod_pocketDim.hasInitDims=false;
@@ -422,6 +452,7 @@ public class mod_pocketDim
 		CommandPruneDimensions.instance().register(event);
 		CommandCreatePocket.instance().register(event);
 		CommandTeleportPlayer.instance().register(event);
+		CommandMetrics.instance().register(event);
 		dimHelper.instance.load();
 		
 		if(!dimHelper.dimList.containsKey(properties.LimboDimensionID))
@@ -48,7 +48,9 @@ public class pocketTeleporter
            	{
            		if(recevingDoorID==mod_pocketDim.dimDoor.blockID||recevingDoorID==mod_pocketDim.ExitDoor.blockID)
            		{
-               		dimHelper.instance.getLinkDataFromCoords(link.destXCoord, link.destYCoord, link.destZCoord, world).linkOrientation=receivingDoorMeta;
+               		LinkData receivingLink = dimHelper.instance.getLinkDataFromCoords(link.destXCoord, link.destYCoord, link.destZCoord, world);
+               		receivingLink.linkOrientation=receivingDoorMeta;
+               		dimHelper.instance.markLinkDirty(receivingLink);
                		id=receivingDoorMeta;
 
            		}
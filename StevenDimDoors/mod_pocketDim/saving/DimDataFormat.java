@@ -0,0 +1,39 @@
+package StevenDimDoors.mod_pocketDim.saving;
+
+/**
+ * Constants shared by DimDataWriter and DimDataReader. Increment FORMAT_VERSION whenever the
+ * layout of a record changes and keep the reader able to handle older versions.
+ */
+public final class DimDataFormat
+{
+	//"DDSV" in ASCII. Java serialization streams start with 0xACED instead, which is how
+	//legacy save files are told apart from the current format.
+	public static final int MAGIC_NUMBER = 0x44445356;
+	//"DDJL" in ASCII, used for the journal of changes made since the data file was written
+	public static final int JOURNAL_MAGIC_NUMBER = 0x44444A4C;
+	public static final int FORMAT_VERSION = 3;
+	public static final int LEGACY_STREAM_MAGIC = 0xACED;
+
+	public static final int RECORD_END = 0;
+	public static final int RECORD_DIMENSION = 1;
+	public static final int RECORD_LINK_SIGNATURE = 2;
+	public static final int RECORD_DECAY_BLOCK = 3;
+	//The following records only appear in the journal
+	public static final int RECORD_DIMENSION_HEADER = 4;
+	public static final int RECORD_DIMENSION_REMOVED = 5;
+	public static final int RECORD_LINK_PUT = 6;
+	public static final int RECORD_LINK_REMOVED = 7;
+	public static final int RECORD_CLEAR_GLOBALS = 8;
+	public static final int RECORD_COMMIT = 9;
+
+	public static final int DIM_IS_POCKET = 1;
+	public static final int DIM_HAS_BEEN_FILLED = 2;
+	public static final int DIM_HAS_DOOR = 4;
+	public static final int DIM_IS_RANDOM_RIFT = 8;
+
+	public static final int LINK_IS_LOC_POCKET = 1;
+	public static final int LINK_EXISTS = 2;
+	public static final int LINK_HAS_GENNED_DOOR = 4;
+
+	private DimDataFormat() { }
+}
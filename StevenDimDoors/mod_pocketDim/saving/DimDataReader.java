@@ -0,0 +1,206 @@
+package StevenDimDoors.mod_pocketDim.saving;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import StevenDimDoors.mod_pocketDim.DimData;
+import StevenDimDoors.mod_pocketDim.DungeonGenerator;
+import StevenDimDoors.mod_pocketDim.LinkData;
+import StevenDimDoors.mod_pocketDim.Point3D;
+
+/**
+ * Reads the record stream produced by DimDataWriter. Callers read the header, then call
+ * readRecordType() repeatedly and dispatch to the matching read method until RECORD_END.
+ */
+public class DimDataReader
+{
+	private final DataInputStream input;
+	private int version;
+	private long generation;
+
+	public DimDataReader(InputStream stream)
+	{
+		this.input = new DataInputStream(new BufferedInputStream(stream));
+	}
+
+	public int readHeader() throws IOException
+	{
+		return readHeader(DimDataFormat.MAGIC_NUMBER);
+	}
+
+	public int readJournalHeader() throws IOException
+	{
+		return readHeader(DimDataFormat.JOURNAL_MAGIC_NUMBER);
+	}
+
+	private int readHeader(int expectedMagic) throws IOException
+	{
+		int magic = input.readInt();
+		if (magic != expectedMagic)
+		{
+			throw new IOException("The file is not a DimDoors data file.");
+		}
+		version = input.readInt();
+		if (version < 1 || version > DimDataFormat.FORMAT_VERSION)
+		{
+			throw new IOException("The DimDoors data file has an unsupported version: " + version);
+		}
+		//Version 1 files had no generation number
+		generation = (version >= 2) ? input.readLong() : 0;
+		return version;
+	}
+
+	public long getGeneration()
+	{
+		return generation;
+	}
+
+	public int readRecordType() throws IOException
+	{
+		return input.readUnsignedByte();
+	}
+
+	/**
+	 * Reads a dimension record and returns a DimData with all of its links already added.
+	 */
+	public DimData readDimension() throws IOException
+	{
+		DimData dimension = readDimensionHeader();
+		int linkCount = input.readInt();
+		for (int index = 0; index < linkCount; index++)
+		{
+			dimension.addLinkToDim(readLink());
+		}
+		return dimension;
+	}
+
+	/**
+	 * Reads the fields of a dimension record without any links.
+	 */
+	public DimData readDimensionHeader() throws IOException
+	{
+		int dimID = input.readInt();
+		int depth = input.readInt();
+		int orientation = input.readInt();
+		int flags = input.readUnsignedByte();
+		LinkData exitLink = readNullableLink();
+
+		DimData dimension = new DimData(dimID, (flags & DimDataFormat.DIM_IS_POCKET) != 0, depth, exitLink);
+		dimension.dimOrientation = orientation;
+		dimension.hasBeenFilled = (flags & DimDataFormat.DIM_HAS_BEEN_FILLED) != 0;
+		dimension.hasDoor = (flags & DimDataFormat.DIM_HAS_DOOR) != 0;
+		dimension.isDimRandomRift = (flags & DimDataFormat.DIM_IS_RANDOM_RIFT) != 0;
+		dimension.dungeonGenerator = readDungeon();
+
+		if (version >= 3)
+		{
+			dimension.parentDimID = input.readInt();
+			dimension.packDepth = input.readInt();
+			int historyLength = input.readUnsignedByte();
+			if (historyLength > 0)
+			{
+				dimension.chainHistory = new int[historyLength];
+				for (int index = 0; index < historyLength; index++)
+				{
+					dimension.chainHistory[index] = input.readInt();
+				}
+			}
+		}
+		else
+		{
+			//Older versions didn't record where dimensions came from. DungeonHelper will infer it.
+			dimension.packDepth = DimData.UNKNOWN_PACK_DEPTH;
+		}
+		return dimension;
+	}
+
+	public LinkData readLinkPut() throws IOException
+	{
+		return readLink();
+	}
+
+	/**
+	 * Reads a link removal record as the dimension ID followed by the X, Y, and Z coordinates of the link.
+	 */
+	public int[] readLinkRemoved() throws IOException
+	{
+		int[] location = new int[4];
+		for (int index = 0; index < location.length; index++)
+		{
+			location[index] = input.readInt();
+		}
+		return location;
+	}
+
+	/**
+	 * Reads the link of a link signature record. The key must be read first with readKey().
+	 */
+	public LinkData readLinkSignature() throws IOException
+	{
+		return readNullableLink();
+	}
+
+	public int readKey() throws IOException
+	{
+		return input.readInt();
+	}
+
+	public Point3D readDecayBlock() throws IOException
+	{
+		int x = input.readInt();
+		int y = input.readInt();
+		int z = input.readInt();
+		return new Point3D(x, y, z);
+	}
+
+	public void close() throws IOException
+	{
+		input.close();
+	}
+
+	private LinkData readNullableLink() throws IOException
+	{
+		return input.readBoolean() ? readLink() : null;
+	}
+
+	private LinkData readLink() throws IOException
+	{
+		LinkData link = new LinkData();
+		link.locDimID = input.readInt();
+		link.locXCoord = input.readInt();
+		link.locYCoord = input.readInt();
+		link.locZCoord = input.readInt();
+		link.destDimID = input.readInt();
+		link.destXCoord = input.readInt();
+		link.destYCoord = input.readInt();
+		link.destZCoord = input.readInt();
+		link.numberofChildren = input.readInt();
+		link.linkOrientation = input.readInt();
+
+		int flags = input.readUnsignedByte();
+		link.isLocPocket = (flags & DimDataFormat.LINK_IS_LOC_POCKET) != 0;
+		link.exists = (flags & DimDataFormat.LINK_EXISTS) != 0;
+		link.hasGennedDoor = (flags & DimDataFormat.LINK_HAS_GENNED_DOOR) != 0;
+		return link;
+	}
+
+	private DungeonGenerator readDungeon() throws IOException
+	{
+		if (!input.readBoolean())
+		{
+			return null;
+		}
+		int weight = input.readInt();
+		String schematicPath = input.readBoolean() ? input.readUTF() : null;
+		boolean isOpen = input.readBoolean();
+
+		DungeonGenerator dungeon = new DungeonGenerator(weight, schematicPath, isOpen);
+		dungeon.sideDoorsSoFar = input.readInt();
+		dungeon.exitDoorsSoFar = input.readInt();
+		dungeon.deadEndsSoFar = input.readInt();
+		dungeon.exitLink = readNullableLink();
+		return dungeon;
+	}
+}
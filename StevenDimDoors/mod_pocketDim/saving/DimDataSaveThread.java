@@ -0,0 +1,131 @@
+package StevenDimDoors.mod_pocketDim.saving;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes save snapshots to disk in the order they were submitted, so that encoding the data and
+ * waiting on the disk never holds up the server thread. If the thread falls behind, submitting
+ * another snapshot blocks until there is room in the queue rather than letting saves pile up.
+ */
+public class DimDataSaveThread extends Thread
+{
+	private static final int MAX_PENDING_SAVES = 2;
+	private static final long POLL_INTERVAL = 1000;
+
+	private final DimDataStore store;
+	private final ArrayBlockingQueue<SaveSnapshot> queue = new ArrayBlockingQueue<SaveSnapshot>(MAX_PENDING_SAVES);
+	private final Object lock = new Object();
+	private int pendingSaves = 0;
+	private volatile boolean isRunning = true;
+
+	public DimDataSaveThread(DimDataStore store)
+	{
+		super("DimDoors Save Thread");
+		this.store = store;
+		this.setDaemon(true);
+	}
+
+	public void submit(SaveSnapshot snapshot)
+	{
+		synchronized (lock)
+		{
+			pendingSaves++;
+		}
+		if (!queue.offer(snapshot))
+		{
+			System.out.println("DimDoors data is being saved faster than it can be written. Waiting for the previous save to finish...");
+			boolean interrupted = false;
+			while (true)
+			{
+				try
+				{
+					queue.put(snapshot);
+					break;
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Blocks until every snapshot submitted so far has been written.
+	 */
+	public void waitForSaves()
+	{
+		boolean interrupted = false;
+		synchronized (lock)
+		{
+			while (pendingSaves > 0)
+			{
+				try
+				{
+					lock.wait();
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes any remaining snapshots and stops the thread.
+	 */
+	public void shutdown()
+	{
+		waitForSaves();
+		isRunning = false;
+		this.interrupt();
+	}
+
+	@Override
+	public void run()
+	{
+		while (isRunning || !queue.isEmpty())
+		{
+			SaveSnapshot snapshot;
+			try
+			{
+				snapshot = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				continue;
+			}
+			if (snapshot == null)
+			{
+				continue;
+			}
+			try
+			{
+				store.writeSnapshot(snapshot);
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+				System.out.println("Could not save data-- SEVERE");
+			}
+			finally
+			{
+				synchronized (lock)
+				{
+					pendingSaves--;
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,768 @@
+package StevenDimDoors.mod_pocketDim.saving;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import StevenDimDoors.mod_pocketDim.DimData;
+import StevenDimDoors.mod_pocketDim.DungeonGenerator;
+import StevenDimDoors.mod_pocketDim.LinkData;
+import StevenDimDoors.mod_pocketDim.ObjectSaveInputStream;
+import StevenDimDoors.mod_pocketDim.Point3D;
+
+/**
+ * Handles the DimDoors data files in the root of a world save.
+ *
+ * Saving is split in two steps. A snapshot of the changes is taken on the server thread, which only
+ * copies the changed data, and the snapshot is then written by a DimDataSaveThread.
+ *
+ * The data file holds a full copy of the data. Changes made after that are appended to a journal
+ * file in batches, so a save only writes the dimensions and links that actually changed. Once the
+ * journal grows large enough, the data file is rewritten and the journal is discarded. The data file
+ * is written to a temporary file first and then swapped in, keeping the previous file as a backup.
+ *
+ * Files written with Java serialization by older versions are still read and are converted the next
+ * time the world is saved. The first time that happens, a copy of the legacy file is kept aside in
+ * case the player needs to downgrade.
+ */
+public class DimDataStore
+{
+	public static final String DATA_FILE_NAME = "DimensionalDoorsData";
+	public static final String TEMP_FILE_NAME = "DimensionalDoorsDataTEMP";
+	public static final String BACKUP_FILE_NAME = "DimensionalDoorsDataOLD";
+	public static final String LEGACY_FILE_NAME = "DimensionalDoorsDataLegacy";
+	public static final String JOURNAL_FILE_NAME = "DimensionalDoorsJournal";
+
+	//The journal is compacted once it's larger than this or half the size of the data file, whichever is larger
+	private static final long MIN_COMPACTION_SIZE = 256 * 1024;
+
+	public static class SaveData
+	{
+		public HashMap<Integer, DimData> dimensions = new HashMap<Integer, DimData>();
+		public HashMap<Integer, LinkData> linkSignatures = new HashMap<Integer, LinkData>();
+		public ArrayList<Point3D> blocksToDecay = new ArrayList<Point3D>();
+		public boolean isLegacy = false;
+		public long generation = 0;
+		public int formatVersion = DimDataFormat.FORMAT_VERSION;
+	}
+
+	private static class JournalEntry
+	{
+		public int type;
+		public DimData dimension;
+		public LinkData link;
+		public int[] location;
+		public int key;
+		public Point3D point;
+	}
+
+	private final File saveRoot;
+	private final Random random = new Random();
+	private final HashSet<Integer> savedDimensions = new HashSet<Integer>();
+	//The generation of the data file that the journal applies to. Zero means that there is no data
+	//file in the current format, so the next save must write one.
+	private long generation = 0;
+	//Set by the save thread if a write fails so that the next save rewrites everything
+	private volatile boolean forceCompaction = false;
+	private volatile boolean writeFailed = false;
+	private DimDataSaveThread saveThread = null;
+
+	public DimDataStore(File saveRoot)
+	{
+		this.saveRoot = saveRoot;
+	}
+
+	public File getSaveRoot()
+	{
+		return saveRoot;
+	}
+
+	/**
+	 * Takes a snapshot of all changes made since the last save or load and queues it to be written
+	 * on the save thread. Must be called on the server thread. The dirty state of all dimensions is
+	 * cleared afterwards. Set globalsChanged if the link signatures or decay blocks have changed.
+	 */
+	public void save(Map<Integer, DimData> dimensions, Map<Integer, LinkData> linkSignatures,
+			Collection<Point3D> blocksToDecay, boolean globalsChanged)
+	{
+		SaveSnapshot snapshot = createSnapshot(dimensions, linkSignatures, blocksToDecay, globalsChanged);
+		if (snapshot != null)
+		{
+			if (saveThread == null)
+			{
+				saveThread = new DimDataSaveThread(this);
+				saveThread.start();
+			}
+			saveThread.submit(snapshot);
+		}
+	}
+
+	/**
+	 * Blocks until all queued saves have been written.
+	 */
+	public void waitForSaves()
+	{
+		if (saveThread != null)
+		{
+			saveThread.waitForSaves();
+		}
+	}
+
+	/**
+	 * Writes all queued saves and stops the save thread. The store can still be used afterwards.
+	 */
+	public void close()
+	{
+		if (saveThread != null)
+		{
+			saveThread.shutdown();
+			saveThread = null;
+		}
+	}
+
+	private SaveSnapshot createSnapshot(Map<Integer, DimData> dimensions, Map<Integer, LinkData> linkSignatures,
+			Collection<Point3D> blocksToDecay, boolean globalsChanged)
+	{
+		SaveSnapshot snapshot = new SaveSnapshot();
+		if (needsCompaction())
+		{
+			snapshot.isFullSave = true;
+			generation = createGeneration();
+			forceCompaction = false;
+		}
+		snapshot.generation = generation;
+
+		for (Integer dimID : savedDimensions)
+		{
+			if (!dimensions.containsKey(dimID))
+			{
+				snapshot.removedDimensions.add(dimID);
+			}
+		}
+		boolean hasChanges = snapshot.isFullSave || globalsChanged || !snapshot.removedDimensions.isEmpty();
+		for (DimData dimension : dimensions.values())
+		{
+			SaveSnapshot.DimensionSnapshot copy = new SaveSnapshot.DimensionSnapshot();
+			if (snapshot.isFullSave || dimension.isDirty())
+			{
+				copy.links = new ArrayList<LinkData>();
+				for (LinkData link : dimension.getLinksInDim())
+				{
+					copy.links.add(link.clone());
+				}
+			}
+			else
+			{
+				copy.isHeaderChanged = dimension.isHeaderDirty();
+				if (dimension.hasLinkEdits())
+				{
+					copy.linkEdits = new ArrayList<LinkEdit>(dimension.getLinkEdits().size());
+					for (LinkEdit edit : dimension.getLinkEdits())
+					{
+						copy.linkEdits.add(edit.isRemoval() ? edit : LinkEdit.put(edit.link.clone()));
+					}
+				}
+				if (!copy.isHeaderChanged && copy.linkEdits == null)
+				{
+					continue;
+				}
+			}
+			copy.header = copyHeader(dimension);
+			snapshot.dimensions.add(copy);
+			dimension.clearDirty();
+			hasChanges = true;
+		}
+		if (snapshot.isFullSave || globalsChanged)
+		{
+			snapshot.linkSignatures = new HashMap<Integer, LinkData>();
+			for (Entry<Integer, LinkData> entry : linkSignatures.entrySet())
+			{
+				LinkData link = entry.getValue();
+				snapshot.linkSignatures.put(entry.getKey(), (link != null) ? link.clone() : null);
+			}
+			snapshot.blocksToDecay = new ArrayList<Point3D>();
+			for (Point3D point : blocksToDecay)
+			{
+				snapshot.blocksToDecay.add(point.clone());
+			}
+		}
+		savedDimensions.clear();
+		savedDimensions.addAll(dimensions.keySet());
+		return (hasChanges ? snapshot : null);
+	}
+
+	private boolean needsCompaction()
+	{
+		if (generation == 0 || forceCompaction)
+		{
+			return true;
+		}
+		File dataFile = new File(saveRoot, DATA_FILE_NAME);
+		File journalFile = new File(saveRoot, JOURNAL_FILE_NAME);
+		return (journalFile.length() > Math.max(MIN_COMPACTION_SIZE, dataFile.length() / 2));
+	}
+
+	/**
+	 * Writes a snapshot to disk. This is called on the save thread.
+	 */
+	void writeSnapshot(SaveSnapshot snapshot) throws IOException
+	{
+		if (!snapshot.isFullSave && writeFailed)
+		{
+			//An earlier write failed, so the files on disk can't be appended to safely. A full
+			//save has already been scheduled and will include the changes from this snapshot.
+			return;
+		}
+		try
+		{
+			if (snapshot.isFullSave)
+			{
+				writeDataFile(snapshot);
+			}
+			else
+			{
+				appendJournal(snapshot);
+			}
+			writeFailed = false;
+		}
+		catch (IOException e)
+		{
+			writeFailed = true;
+			forceCompaction = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * Rewrites the data file with all of the data and discards the journal.
+	 */
+	private void writeDataFile(SaveSnapshot snapshot) throws IOException
+	{
+		File tempFile = new File(saveRoot, TEMP_FILE_NAME);
+		FileOutputStream stream = new FileOutputStream(tempFile);
+		DimDataWriter writer = new DimDataWriter(stream);
+		try
+		{
+			writer.writeHeader(snapshot.generation);
+			for (SaveSnapshot.DimensionSnapshot dimension : snapshot.dimensions)
+			{
+				writer.writeDimension(dimension.header, dimension.links);
+			}
+			for (Entry<Integer, LinkData> entry : snapshot.linkSignatures.entrySet())
+			{
+				writer.writeLinkSignature(entry.getKey(), entry.getValue());
+			}
+			for (Point3D point : snapshot.blocksToDecay)
+			{
+				writer.writeDecayBlock(point);
+			}
+			writer.writeEnd();
+			writer.flush();
+			stream.getFD().sync();
+		}
+		finally
+		{
+			writer.close();
+		}
+		swapInTempFile();
+
+		//The old journal belongs to the previous generation, so it won't be replayed even if deleting it fails
+		new File(saveRoot, JOURNAL_FILE_NAME).delete();
+	}
+
+	private void appendJournal(SaveSnapshot snapshot) throws IOException
+	{
+		File journalFile = new File(saveRoot, JOURNAL_FILE_NAME);
+		boolean isNewJournal = !journalFile.exists();
+		FileOutputStream stream = new FileOutputStream(journalFile, true);
+		DimDataWriter writer = new DimDataWriter(stream);
+		try
+		{
+			if (isNewJournal)
+			{
+				writer.writeJournalHeader(snapshot.generation);
+			}
+			for (Integer dimID : snapshot.removedDimensions)
+			{
+				writer.writeDimensionRemoved(dimID);
+			}
+			for (SaveSnapshot.DimensionSnapshot dimension : snapshot.dimensions)
+			{
+				if (dimension.links != null)
+				{
+					writer.writeDimension(dimension.header, dimension.links);
+					continue;
+				}
+				if (dimension.isHeaderChanged)
+				{
+					writer.writeDimensionHeader(dimension.header);
+				}
+				if (dimension.linkEdits != null)
+				{
+					for (LinkEdit edit : dimension.linkEdits)
+					{
+						if (edit.isRemoval())
+						{
+							writer.writeLinkRemoved(dimension.header.dimID, edit.x, edit.y, edit.z);
+						}
+						else
+						{
+							writer.writeLinkPut(edit.link);
+						}
+					}
+				}
+			}
+			if (snapshot.linkSignatures != null)
+			{
+				writer.writeClearGlobals();
+				for (Entry<Integer, LinkData> entry : snapshot.linkSignatures.entrySet())
+				{
+					writer.writeLinkSignature(entry.getKey(), entry.getValue());
+				}
+				for (Point3D point : snapshot.blocksToDecay)
+				{
+					writer.writeDecayBlock(point);
+				}
+			}
+			writer.writeCommit();
+			writer.flush();
+			stream.getFD().sync();
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	private long createGeneration()
+	{
+		long value;
+		do
+		{
+			value = random.nextLong();
+		}
+		while (value == 0 || value == generation);
+		return value;
+	}
+
+	/**
+	 * Replaces the data file with the temporary file and keeps the replaced file as a backup.
+	 */
+	private void swapInTempFile()
+	{
+		File dataFile = new File(saveRoot, DATA_FILE_NAME);
+		File backupFile = new File(saveRoot, BACKUP_FILE_NAME);
+		File tempFile = new File(saveRoot, TEMP_FILE_NAME);
+
+		if (isLegacyFile(dataFile))
+		{
+			File legacyFile = new File(saveRoot, LEGACY_FILE_NAME);
+			if (!legacyFile.exists())
+			{
+				dataFile.renameTo(legacyFile);
+				System.out.println("Converted DimDoors data to the new save format. The old data was kept in " + LEGACY_FILE_NAME);
+			}
+		}
+		if (backupFile.exists())
+		{
+			backupFile.delete();
+		}
+		dataFile.renameTo(backupFile);
+		tempFile.renameTo(dataFile);
+	}
+
+	/**
+	 * Loads the DimDoors data from a world save and replays the journal on top of it. Falls back on
+	 * the backup file if the main file is damaged. Returns null if neither file exists, which is the
+	 * case for new worlds.
+	 */
+	public SaveData load()
+	{
+		waitForSaves();
+		File dataFile = new File(saveRoot, DATA_FILE_NAME);
+		File backupFile = new File(saveRoot, BACKUP_FILE_NAME);
+		SaveData data = null;
+
+		generation = 0;
+		savedDimensions.clear();
+		if (dataFile.exists())
+		{
+			try
+			{
+				data = readFile(dataFile);
+				if (data.formatVersion < DimDataFormat.FORMAT_VERSION)
+				{
+					//Journal records are appended in the current layout, so an older journal can't be
+					//extended. Rewrite both files in the current format on the next save.
+					forceCompaction = true;
+				}
+				if (data.generation != 0)
+				{
+					replayJournal(data);
+					generation = data.generation;
+				}
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+				System.out.println("Save data damaged, trying backup...");
+				data = null;
+			}
+		}
+		if (data == null && backupFile.exists())
+		{
+			//The journal doesn't apply to the backup, so the next save will rewrite the data file
+			try
+			{
+				data = readFile(backupFile);
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+				System.out.println("Could not read data-- SEVERE");
+			}
+		}
+		if (data != null)
+		{
+			savedDimensions.addAll(data.dimensions.keySet());
+			for (DimData dimension : data.dimensions.values())
+			{
+				dimension.clearDirty();
+			}
+		}
+		return data;
+	}
+
+	private static boolean isLegacyFile(File file)
+	{
+		if (!file.exists())
+		{
+			return false;
+		}
+		DataInputStream input = null;
+		try
+		{
+			input = new DataInputStream(new FileInputStream(file));
+			return (input.readUnsignedShort() == DimDataFormat.LEGACY_STREAM_MAGIC);
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+		finally
+		{
+			closeQuietly(input);
+		}
+	}
+
+	private static SaveData readFile(File file) throws Exception
+	{
+		if (isLegacyFile(file))
+		{
+			return readLegacyFile(file);
+		}
+
+		SaveData data = new SaveData();
+		DimDataReader reader = new DimDataReader(new FileInputStream(file));
+		try
+		{
+			data.formatVersion = reader.readHeader();
+			data.generation = reader.getGeneration();
+			int recordType;
+			while ((recordType = reader.readRecordType()) != DimDataFormat.RECORD_END)
+			{
+				applyEntry(readEntry(reader, recordType), data);
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		return data;
+	}
+
+	private void replayJournal(SaveData data)
+	{
+		File journalFile = new File(saveRoot, JOURNAL_FILE_NAME);
+		if (!journalFile.exists())
+		{
+			return;
+		}
+
+		DimDataReader reader = null;
+		try
+		{
+			reader = new DimDataReader(new FileInputStream(journalFile));
+			if (reader.readJournalHeader() < DimDataFormat.FORMAT_VERSION)
+			{
+				//Same as for the data file: new records can't be appended to an older journal
+				forceCompaction = true;
+			}
+			if (reader.getGeneration() != data.generation)
+			{
+				//The journal was written for a different data file. This happens if the game
+				//stopped after the data file was rewritten but before the journal was deleted.
+				forceCompaction = true;
+				return;
+			}
+
+			//Entries are only applied once the whole batch has been read, so a batch that
+			//was cut short by a crash is ignored instead of being applied halfway.
+			ArrayList<JournalEntry> batch = new ArrayList<JournalEntry>();
+			while (true)
+			{
+				int recordType;
+				try
+				{
+					recordType = reader.readRecordType();
+				}
+				catch (EOFException e)
+				{
+					break;
+				}
+				if (recordType == DimDataFormat.RECORD_COMMIT)
+				{
+					for (JournalEntry entry : batch)
+					{
+						applyEntry(entry, data);
+					}
+					batch.clear();
+				}
+				else
+				{
+					batch.add(readEntry(reader, recordType));
+				}
+			}
+			if (!batch.isEmpty())
+			{
+				System.out.println("The last changes to the DimDoors data were not saved completely and have been discarded.");
+				forceCompaction = true;
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			System.out.println("Could not read the DimDoors journal. Some recent changes may have been lost.");
+			forceCompaction = true;
+		}
+		finally
+		{
+			if (reader != null)
+			{
+				try
+				{
+					reader.close();
+				}
+				catch (IOException e) { }
+			}
+		}
+	}
+
+	private static JournalEntry readEntry(DimDataReader reader, int recordType) throws IOException
+	{
+		JournalEntry entry = new JournalEntry();
+		entry.type = recordType;
+		switch (recordType)
+		{
+			case DimDataFormat.RECORD_DIMENSION:
+				entry.dimension = reader.readDimension();
+				break;
+			case DimDataFormat.RECORD_DIMENSION_HEADER:
+				entry.dimension = reader.readDimensionHeader();
+				break;
+			case DimDataFormat.RECORD_DIMENSION_REMOVED:
+				entry.key = reader.readKey();
+				break;
+			case DimDataFormat.RECORD_LINK_PUT:
+				entry.link = reader.readLinkPut();
+				break;
+			case DimDataFormat.RECORD_LINK_REMOVED:
+				entry.location = reader.readLinkRemoved();
+				break;
+			case DimDataFormat.RECORD_LINK_SIGNATURE:
+				entry.key = reader.readKey();
+				entry.link = reader.readLinkSignature();
+				break;
+			case DimDataFormat.RECORD_DECAY_BLOCK:
+				entry.point = reader.readDecayBlock();
+				break;
+			case DimDataFormat.RECORD_CLEAR_GLOBALS:
+				break;
+			default:
+				throw new IOException("Unknown record type in DimDoors data: " + recordType);
+		}
+		return entry;
+	}
+
+	private static void applyEntry(JournalEntry entry, SaveData data)
+	{
+		DimData dimension;
+		switch (entry.type)
+		{
+			case DimDataFormat.RECORD_DIMENSION:
+				data.dimensions.put(entry.dimension.dimID, entry.dimension);
+				break;
+			case DimDataFormat.RECORD_DIMENSION_HEADER:
+				dimension = data.dimensions.get(entry.dimension.dimID);
+				if (dimension == null)
+				{
+					data.dimensions.put(entry.dimension.dimID, entry.dimension);
+				}
+				else
+				{
+					copyHeader(entry.dimension, dimension);
+				}
+				break;
+			case DimDataFormat.RECORD_DIMENSION_REMOVED:
+				data.dimensions.remove(entry.key);
+				break;
+			case DimDataFormat.RECORD_LINK_PUT:
+				dimension = data.dimensions.get(entry.link.locDimID);
+				if (dimension != null)
+				{
+					dimension.addLinkToDim(entry.link);
+				}
+				break;
+			case DimDataFormat.RECORD_LINK_REMOVED:
+				dimension = data.dimensions.get(entry.location[0]);
+				if (dimension != null)
+				{
+					dimension.removeLinkAtCoords(entry.location[0], entry.location[1], entry.location[2], entry.location[3]);
+				}
+				break;
+			case DimDataFormat.RECORD_LINK_SIGNATURE:
+				data.linkSignatures.put(entry.key, entry.link);
+				break;
+			case DimDataFormat.RECORD_DECAY_BLOCK:
+				data.blocksToDecay.add(entry.point);
+				break;
+			case DimDataFormat.RECORD_CLEAR_GLOBALS:
+				data.linkSignatures.clear();
+				data.blocksToDecay.clear();
+				break;
+		}
+	}
+
+	private static DimData copyHeader(DimData source)
+	{
+		LinkData exitLink = (source.exitDimLink != null) ? source.exitDimLink.clone() : null;
+		DimData copy = new DimData(source.dimID, source.isPocket, source.depth, exitLink);
+		copyHeader(source, copy);
+		copy.exitDimLink = exitLink;
+		copy.dungeonGenerator = copyDungeon(source.dungeonGenerator);
+		return copy;
+	}
+
+	private static DungeonGenerator copyDungeon(DungeonGenerator source)
+	{
+		if (source == null)
+		{
+			return null;
+		}
+		//The door counters and the exit link change as the dungeon's doors are generated
+		DungeonGenerator copy = new DungeonGenerator(source.weight, source.schematicPath, source.isOpen);
+		copy.sideDoorsSoFar = source.sideDoorsSoFar;
+		copy.exitDoorsSoFar = source.exitDoorsSoFar;
+		copy.deadEndsSoFar = source.deadEndsSoFar;
+		copy.exitLink = (source.exitLink != null) ? source.exitLink.clone() : null;
+		return copy;
+	}
+
+	private static void copyHeader(DimData source, DimData destination)
+	{
+		destination.depth = source.depth;
+		destination.dimOrientation = source.dimOrientation;
+		destination.isPocket = source.isPocket;
+		destination.hasBeenFilled = source.hasBeenFilled;
+		destination.hasDoor = source.hasDoor;
+		destination.isDimRandomRift = source.isDimRandomRift;
+		destination.exitDimLink = source.exitDimLink;
+		destination.dungeonGenerator = source.dungeonGenerator;
+		destination.parentDimID = source.parentDimID;
+		destination.packDepth = source.packDepth;
+		destination.chainHistory = source.chainHistory;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static SaveData readLegacyFile(File file) throws Exception
+	{
+		SaveData data = new SaveData();
+		data.isLegacy = true;
+		System.out.println("Reading DimDoors data saved in the legacy format");
+
+		InputStream fileStream = new FileInputStream(file);
+		ObjectSaveInputStream input = null;
+		try
+		{
+			input = new ObjectSaveInputStream(fileStream);
+			HashMap comboSave = (HashMap) input.readObject();
+
+			try
+			{
+				HashMap<Integer, LinkData> linkSignatures = (HashMap<Integer, LinkData>) comboSave.get("interDimLinkList");
+				if (linkSignatures != null)
+				{
+					data.linkSignatures = linkSignatures;
+				}
+			}
+			catch (Exception e)
+			{
+				System.out.println("Could not load Link Signature list. Link Sig items will loose restored locations.");
+			}
+
+			try
+			{
+				HashMap<Integer, DimData> dimensions = (HashMap<Integer, DimData>) comboSave.get("dimList");
+				if (dimensions != null)
+				{
+					data.dimensions = dimensions;
+				}
+			}
+			catch (Exception e)
+			{
+				System.out.println("Could not load pocket dim list. Saves probably lost, but repairable. Move the files from indivual pocket dim files to active ones. See MC thread for details.");
+			}
+
+			try
+			{
+				ArrayList<Point3D> blocksToDecay = (ArrayList<Point3D>) comboSave.get("blocksToDecay");
+				if (blocksToDecay != null)
+				{
+					data.blocksToDecay = blocksToDecay;
+				}
+			}
+			catch (Exception e)
+			{
+				System.out.println("Could not load list of blocks to decay in Limbo. Probably because you updated versions, in which case this is normal. ");
+			}
+		}
+		finally
+		{
+			closeQuietly(input != null ? input : fileStream);
+		}
+		return data;
+	}
+
+	private static void closeQuietly(InputStream stream)
+	{
+		if (stream != null)
+		{
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e) { }
+		}
+	}
+}
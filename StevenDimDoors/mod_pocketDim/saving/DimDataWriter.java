@@ -0,0 +1,206 @@
+package StevenDimDoors.mod_pocketDim.saving;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+import StevenDimDoors.mod_pocketDim.DimData;
+import StevenDimDoors.mod_pocketDim.DungeonGenerator;
+import StevenDimDoors.mod_pocketDim.LinkData;
+import StevenDimDoors.mod_pocketDim.Point3D;
+
+/**
+ * Writes DimDoors save data as a stream of tagged records containing only primitive fields.
+ * Unlike Java serialization, no class descriptors are written, so the format does not break
+ * when fields are added to DimData or LinkData. Records are written one at a time, so the
+ * data never has to be copied into a single object graph before it reaches the disk.
+ */
+public class DimDataWriter
+{
+	private final DataOutputStream output;
+
+	public DimDataWriter(OutputStream stream)
+	{
+		this.output = new DataOutputStream(new BufferedOutputStream(stream));
+	}
+
+	/**
+	 * Writes the header of a data file. The generation identifies this particular file so that
+	 * a journal is only ever replayed on top of the data file it was written for.
+	 */
+	public void writeHeader(long generation) throws IOException
+	{
+		output.writeInt(DimDataFormat.MAGIC_NUMBER);
+		output.writeInt(DimDataFormat.FORMAT_VERSION);
+		output.writeLong(generation);
+	}
+
+	public void writeJournalHeader(long generation) throws IOException
+	{
+		output.writeInt(DimDataFormat.JOURNAL_MAGIC_NUMBER);
+		output.writeInt(DimDataFormat.FORMAT_VERSION);
+		output.writeLong(generation);
+	}
+
+	/**
+	 * Writes a dimension record. The header fields are taken from dimension and the links are
+	 * written from the given collection, so callers can pass either a live DimData or a copy.
+	 */
+	public void writeDimension(DimData dimension, Collection<LinkData> links) throws IOException
+	{
+		output.writeByte(DimDataFormat.RECORD_DIMENSION);
+		writeDimensionFields(dimension);
+
+		output.writeInt(links.size());
+		for (LinkData link : links)
+		{
+			writeLink(link);
+		}
+	}
+
+	/**
+	 * Writes the fields of a dimension without touching its links.
+	 */
+	public void writeDimensionHeader(DimData dimension) throws IOException
+	{
+		output.writeByte(DimDataFormat.RECORD_DIMENSION_HEADER);
+		writeDimensionFields(dimension);
+	}
+
+	public void writeDimensionRemoved(int dimID) throws IOException
+	{
+		output.writeByte(DimDataFormat.RECORD_DIMENSION_REMOVED);
+		output.writeInt(dimID);
+	}
+
+	public void writeLinkPut(LinkData link) throws IOException
+	{
+		output.writeByte(DimDataFormat.RECORD_LINK_PUT);
+		writeLink(link);
+	}
+
+	public void writeLinkRemoved(int dimID, int x, int y, int z) throws IOException
+	{
+		output.writeByte(DimDataFormat.RECORD_LINK_REMOVED);
+		output.writeInt(dimID);
+		output.writeInt(x);
+		output.writeInt(y);
+		output.writeInt(z);
+	}
+
+	public void writeClearGlobals() throws IOException
+	{
+		output.writeByte(DimDataFormat.RECORD_CLEAR_GLOBALS);
+	}
+
+	public void writeCommit() throws IOException
+	{
+		output.writeByte(DimDataFormat.RECORD_COMMIT);
+	}
+
+	private void writeDimensionFields(DimData dimension) throws IOException
+	{
+		output.writeInt(dimension.dimID);
+		output.writeInt(dimension.depth);
+		output.writeInt(dimension.dimOrientation);
+
+		int flags = 0;
+		if (dimension.isPocket) flags |= DimDataFormat.DIM_IS_POCKET;
+		if (dimension.hasBeenFilled) flags |= DimDataFormat.DIM_HAS_BEEN_FILLED;
+		if (dimension.hasDoor) flags |= DimDataFormat.DIM_HAS_DOOR;
+		if (dimension.isDimRandomRift) flags |= DimDataFormat.DIM_IS_RANDOM_RIFT;
+		output.writeByte(flags);
+
+		writeNullableLink(dimension.exitDimLink);
+		writeDungeon(dimension.dungeonGenerator);
+
+		//Added in version 3
+		output.writeInt(dimension.parentDimID);
+		output.writeInt(dimension.packDepth);
+		output.writeByte(dimension.chainHistory.length);
+		for (int typeID : dimension.chainHistory)
+		{
+			output.writeInt(typeID);
+		}
+	}
+
+	public void writeLinkSignature(int key, LinkData link) throws IOException
+	{
+		output.writeByte(DimDataFormat.RECORD_LINK_SIGNATURE);
+		output.writeInt(key);
+		writeNullableLink(link);
+	}
+
+	public void writeDecayBlock(Point3D point) throws IOException
+	{
+		output.writeByte(DimDataFormat.RECORD_DECAY_BLOCK);
+		output.writeInt(point.getX());
+		output.writeInt(point.getY());
+		output.writeInt(point.getZ());
+	}
+
+	public void writeEnd() throws IOException
+	{
+		output.writeByte(DimDataFormat.RECORD_END);
+	}
+
+	public void flush() throws IOException
+	{
+		output.flush();
+	}
+
+	public void close() throws IOException
+	{
+		output.close();
+	}
+
+	private void writeNullableLink(LinkData link) throws IOException
+	{
+		output.writeBoolean(link != null);
+		if (link != null)
+		{
+			writeLink(link);
+		}
+	}
+
+	private void writeLink(LinkData link) throws IOException
+	{
+		output.writeInt(link.locDimID);
+		output.writeInt(link.locXCoord);
+		output.writeInt(link.locYCoord);
+		output.writeInt(link.locZCoord);
+		output.writeInt(link.destDimID);
+		output.writeInt(link.destXCoord);
+		output.writeInt(link.destYCoord);
+		output.writeInt(link.destZCoord);
+		output.writeInt(link.numberofChildren);
+		output.writeInt(link.linkOrientation);
+
+		int flags = 0;
+		if (link.isLocPocket) flags |= DimDataFormat.LINK_IS_LOC_POCKET;
+		if (link.exists) flags |= DimDataFormat.LINK_EXISTS;
+		if (link.hasGennedDoor) flags |= DimDataFormat.LINK_HAS_GENNED_DOOR;
+		output.writeByte(flags);
+	}
+
+	private void writeDungeon(DungeonGenerator dungeon) throws IOException
+	{
+		output.writeBoolean(dungeon != null);
+		if (dungeon != null)
+		{
+			output.writeInt(dungeon.weight);
+			output.writeBoolean(dungeon.schematicPath != null);
+			if (dungeon.schematicPath != null)
+			{
+				output.writeUTF(dungeon.schematicPath);
+			}
+			output.writeBoolean(dungeon.isOpen);
+			output.writeInt(dungeon.sideDoorsSoFar);
+			output.writeInt(dungeon.exitDoorsSoFar);
+			output.writeInt(dungeon.deadEndsSoFar);
+			writeNullableLink(dungeon.exitLink);
+		}
+	}
+}
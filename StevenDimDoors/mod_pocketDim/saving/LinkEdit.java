@@ -0,0 +1,39 @@
+package StevenDimDoors.mod_pocketDim.saving;
+
+import StevenDimDoors.mod_pocketDim.LinkData;
+
+/**
+ * A change to a single link that hasn't been written to the save journal yet. Additions refer
+ * to the live LinkData so that later changes to the link are picked up when the edit is written.
+ * Removals only keep the coordinates of the link that was removed.
+ */
+public class LinkEdit
+{
+	public final LinkData link;
+	public final int x;
+	public final int y;
+	public final int z;
+
+	private LinkEdit(LinkData link, int x, int y, int z)
+	{
+		this.link = link;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	public static LinkEdit put(LinkData link)
+	{
+		return new LinkEdit(link, link.locXCoord, link.locYCoord, link.locZCoord);
+	}
+
+	public static LinkEdit remove(int x, int y, int z)
+	{
+		return new LinkEdit(null, x, y, z);
+	}
+
+	public boolean isRemoval()
+	{
+		return (link == null);
+	}
+}
@@ -0,0 +1,34 @@
+package StevenDimDoors.mod_pocketDim.saving;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import StevenDimDoors.mod_pocketDim.DimData;
+import StevenDimDoors.mod_pocketDim.LinkData;
+import StevenDimDoors.mod_pocketDim.Point3D;
+
+/**
+ * A copy of the data that a single save needs to write. Snapshots are taken on the server thread
+ * and written on the save thread, so they must not share any mutable LinkData, DimData or
+ * DungeonGenerator with the live data.
+ */
+public class SaveSnapshot
+{
+	public static class DimensionSnapshot
+	{
+		//A copy of the dimension's fields. Its own links are not used.
+		public DimData header;
+		//All of the dimension's links if it must be rewritten completely, otherwise null
+		public ArrayList<LinkData> links;
+		public boolean isHeaderChanged;
+		public ArrayList<LinkEdit> linkEdits;
+	}
+
+	public boolean isFullSave;
+	public long generation;
+	public ArrayList<DimensionSnapshot> dimensions = new ArrayList<DimensionSnapshot>();
+	public ArrayList<Integer> removedDimensions = new ArrayList<Integer>();
+	//Null if the link signatures and decay blocks don't need to be written
+	public HashMap<Integer, LinkData> linkSignatures;
+	public ArrayList<Point3D> blocksToDecay;
+}
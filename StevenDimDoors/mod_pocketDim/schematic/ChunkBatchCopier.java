@@ -0,0 +1,207 @@
+package StevenDimDoors.mod_pocketDim.schematic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import net.minecraft.block.Block;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import StevenDimDoors.mod_pocketDim.Point3D;
+
+/**
+ * Reads blocks out of the world one chunk section (16x16x16 blocks) at a time, the counterpart of
+ * ChunkBatchPlacer. Rather than calling World.getBlockId(), getBlockMetadata() and getBlockTileEntity() for every
+ * position, which looks up the chunk and its block storage each time, each ExtendedBlockStorage is resolved once
+ * and read in a tight loop. Sections that have never held a block have no storage at all, and sections whose
+ * blocks have all been removed report themselves as empty, so neither needs to be read block by block.
+ *
+ * Tile entities are taken from each chunk's tile entity map instead of being looked up at every position.
+ */
+public class ChunkBatchCopier
+{
+	private static final int MAX_WORLD_HEIGHT = 256;
+	private static final int SECTION_COUNT = MAX_WORLD_HEIGHT >> 4;
+
+	private ChunkBatchCopier() { }
+
+	/**
+	 * Finds the smallest box within the given volume that contains all of its non-air blocks. Returns the
+	 * minimum and maximum corners of the box, in that order. If the volume is empty, both corners are set to
+	 * (x, y, z), like CompactBoundsOperation does. The volume must already be clipped to the world's height.
+	 */
+	public static Point3D[] findCompactBounds(World world, int x, int y, int z, int width, int height, int length)
+	{
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int minZ = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		int maxZ = Integer.MIN_VALUE;
+		int limitX = x + width - 1;
+		int limitY = Math.min(y + height - 1, MAX_WORLD_HEIGHT - 1);
+		int limitZ = z + length - 1;
+
+		for (int chunkX = x >> 4; chunkX <= limitX >> 4; chunkX++)
+		{
+			for (int chunkZ = z >> 4; chunkZ <= limitZ >> 4; chunkZ++)
+			{
+				int startX = Math.max(x, chunkX << 4);
+				int endX = Math.min(limitX, (chunkX << 4) + 15);
+				int startZ = Math.max(z, chunkZ << 4);
+				int endZ = Math.min(limitZ, (chunkZ << 4) + 15);
+				ExtendedBlockStorage[] storageArray = world.getChunkFromChunkCoords(chunkX, chunkZ).getBlockStorageArray();
+
+				for (int sectionY = Math.max(y, 0) >> 4; sectionY <= limitY >> 4 && sectionY < SECTION_COUNT; sectionY++)
+				{
+					ExtendedBlockStorage storage = storageArray[sectionY];
+					if (storage == null || storage.isEmpty())
+					{
+						continue;
+					}
+					int startY = Math.max(y, sectionY << 4);
+					int endY = Math.min(limitY, (sectionY << 4) + 15);
+					if (startX >= minX && endX <= maxX && startY >= minY && endY <= maxY && startZ >= minZ && endZ <= maxZ)
+					{
+						//The box already covers this part of the section, so it can't grow any further here
+						continue;
+					}
+
+					for (int cy = startY; cy <= endY; cy++)
+					{
+						for (int cz = startZ; cz <= endZ; cz++)
+						{
+							for (int cx = startX; cx <= endX; cx++)
+							{
+								int blockID = storage.getExtBlockID(cx & 15, cy & 15, cz & 15);
+								if (blockID != 0 && !isAirBlock(world, blockID, cx, cy, cz))
+								{
+									minX = cx < minX ? cx : minX;
+									minY = cy < minY ? cy : minY;
+									minZ = cz < minZ ? cz : minZ;
+									maxX = cx > maxX ? cx : maxX;
+									maxY = cy > maxY ? cy : maxY;
+									maxZ = cz > maxZ ? cz : maxZ;
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+
+		if (minX == Integer.MAX_VALUE)
+		{
+			//The whole search space was empty! Compact the space to a single block.
+			return new Point3D[] { new Point3D(x, y, z), new Point3D(x, y, z) };
+		}
+		return new Point3D[] { new Point3D(minX, minY, minZ), new Point3D(maxX, maxY, maxZ) };
+	}
+
+	private static boolean isAirBlock(World world, int blockID, int x, int y, int z)
+	{
+		//Matches World.isAirBlock(), which lets blocks from other mods declare themselves as air
+		Block block = Block.blocksList[blockID];
+		return (block == null || block.isAirBlock(world, x, y, z));
+	}
+
+	/**
+	 * Copies the blocks, metadata and tile entities in the given volume into a new schematic. Positions
+	 * outside the world's height limits are copied as air.
+	 */
+	public static Schematic copy(World world, int x, int y, int z, short width, short height, short length)
+	{
+		short[] blocks = new short[width * height * length];
+		byte[] metadata = new byte[width * height * length];
+		int limitX = x + width - 1;
+		int limitY = y + height - 1;
+		int limitZ = z + length - 1;
+		int layerSize = width * length;
+		ArrayList<TileEntity> tileEntities = new ArrayList<TileEntity>();
+
+		for (int chunkX = x >> 4; chunkX <= limitX >> 4; chunkX++)
+		{
+			for (int chunkZ = z >> 4; chunkZ <= limitZ >> 4; chunkZ++)
+			{
+				int startX = Math.max(x, chunkX << 4);
+				int endX = Math.min(limitX, (chunkX << 4) + 15);
+				int startZ = Math.max(z, chunkZ << 4);
+				int endZ = Math.min(limitZ, (chunkZ << 4) + 15);
+				Chunk chunk = world.getChunkFromChunkCoords(chunkX, chunkZ);
+				ExtendedBlockStorage[] storageArray = chunk.getBlockStorageArray();
+
+				for (int sectionY = Math.max(y, 0) >> 4; sectionY <= limitY >> 4 && sectionY < SECTION_COUNT; sectionY++)
+				{
+					ExtendedBlockStorage storage = storageArray[sectionY];
+					if (storage == null || storage.isEmpty())
+					{
+						//The schematic's arrays already hold air with no metadata
+						continue;
+					}
+					int startY = Math.max(y, sectionY << 4);
+					int endY = Math.min(limitY, (sectionY << 4) + 15);
+
+					for (int cy = startY; cy <= endY; cy++)
+					{
+						for (int cz = startZ; cz <= endZ; cz++)
+						{
+							int index = (cy - y) * layerSize + (cz - z) * width + (startX - x);
+							for (int cx = startX; cx <= endX; cx++, index++)
+							{
+								blocks[index] = (short) storage.getExtBlockID(cx & 15, cy & 15, cz & 15);
+								metadata[index] = (byte) storage.getExtBlockMetadata(cx & 15, cy & 15, cz & 15);
+							}
+						}
+					}
+				}
+
+				for (Object value : chunk.chunkTileEntityMap.values())
+				{
+					TileEntity tileEntity = (TileEntity) value;
+					if (!tileEntity.isInvalid() &&
+						tileEntity.xCoord >= x && tileEntity.xCoord <= limitX &&
+						tileEntity.yCoord >= y && tileEntity.yCoord <= limitY &&
+						tileEntity.zCoord >= z && tileEntity.zCoord <= limitZ)
+					{
+						tileEntities.add(tileEntity);
+					}
+				}
+			}
+		}
+
+		//Keep the tile entities in YZX order, the same order in which WorldCopyOperation finds them
+		Collections.sort(tileEntities, new Comparator<TileEntity>()
+		{
+			@Override
+			public int compare(TileEntity a, TileEntity b)
+			{
+				if (a.yCoord != b.yCoord)
+					return (a.yCoord < b.yCoord) ? -1 : 1;
+				if (a.zCoord != b.zCoord)
+					return (a.zCoord < b.zCoord) ? -1 : 1;
+				if (a.xCoord != b.xCoord)
+					return (a.xCoord < b.xCoord) ? -1 : 1;
+				return 0;
+			}
+		});
+
+		NBTTagList tileTags = new NBTTagList();
+		for (TileEntity tileEntity : tileEntities)
+		{
+			//Extract tile entity data
+			NBTTagCompound tileTag = new NBTTagCompound();
+			tileEntity.writeToNBT(tileTag);
+			//Translate the tile entity's position from the world's coordinate system
+			//to the schematic's coordinate system.
+			tileTag.setInteger("x", tileEntity.xCoord - x);
+			tileTag.setInteger("y", tileEntity.yCoord - y);
+			tileTag.setInteger("z", tileEntity.zCoord - z);
+			tileTags.appendTag(tileTag);
+		}
+		return new Schematic(width, height, length, blocks, metadata, tileTags);
+	}
+}
@@ -0,0 +1,251 @@
+package StevenDimDoors.mod_pocketDim.schematic;
+
+import net.minecraft.block.Block;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import StevenDimDoors.mod_pocketDim.Point3D;
+
+/**
+ * Writes the blocks of a schematic into the world one chunk section (16x16x16 blocks) at a time. Rather than
+ * looking up the chunk and its block storage for every block, the target volume is split by chunk and by section,
+ * each ExtendedBlockStorage is resolved once, and the block IDs and metadata of the section are written in a tight
+ * loop. Once all the sections of a chunk have been written, its height map and sky light are recalculated in a
+ * single pass and the chunk is marked as modified so that it gets saved.
+ *
+ * The schematic may be rotated while it's placed. Positions are transformed in the same way as
+ * BlockRotator.transformPoint(): a point is taken relative to srcOrigin, turned around the Y axis and then
+ * translated to destOrigin. Since the placement walks over the target volume, each target block is mapped back
+ * to its position in the schematic instead.
+ *
+ * Chunks can be placed one at a time with placeNextChunk(), which lets callers spread a large placement
+ * over several ticks.
+ */
+public class ChunkBatchPlacer
+{
+	private static final int MAX_WORLD_HEIGHT = 256;
+	private static final int SECTION_COUNT = MAX_WORLD_HEIGHT >> 4;
+
+	private final World world;
+	private final int width;
+	private final int length;
+	private final short[] blocks;
+	private final byte[] metadata;
+	private final Point3D srcOrigin;
+	private final Point3D destOrigin;
+	private final boolean transformMetadata;
+	private final boolean hasSky;
+	private final int angle;
+	private final int indexStep;
+	private final int minX, maxX;
+	private final int minY, maxY;
+	private final int minZ, maxZ;
+	private final int chunkCount;
+	private int chunkX;
+	private int chunkZ;
+	private int chunksPlaced;
+
+	/**
+	 * Prepares to copy blocks into the world without triggering block updates or notifying clients, just like
+	 * Schematic.setBlockDirectly(). Blocks with IDs that don't exist are skipped. Parts of the schematic
+	 * that fall outside of the world's height limits are clipped. Nothing is written until placeNextChunk()
+	 * is called, so the work can be spread over several ticks.
+	 */
+	public ChunkBatchPlacer(World world, int width, int height, int length, short[] blocks, byte[] metadata,
+			Point3D srcOrigin, int turnAngle, Point3D destOrigin, boolean transformMetadata)
+	{
+		this.world = world;
+		this.width = width;
+		this.length = length;
+		this.blocks = blocks;
+		this.metadata = metadata;
+		this.srcOrigin = srcOrigin.clone();
+		this.destOrigin = destOrigin.clone();
+		this.transformMetadata = transformMetadata;
+		this.hasSky = !world.provider.hasNoSky;
+
+		//Adjust angle into the expected range
+		int angle = turnAngle % 4;
+		if (angle < 0)
+		{
+			angle += 4;
+		}
+		this.angle = angle;
+
+		//Find the bounds of the schematic in world coordinates
+		Point3D minCorner = new Point3D(0, 0, 0);
+		Point3D maxCorner = new Point3D(width - 1, height - 1, length - 1);
+		BlockRotator.transformPoint(minCorner, srcOrigin, angle, destOrigin);
+		BlockRotator.transformPoint(maxCorner, srcOrigin, angle, destOrigin);
+		this.minX = Math.min(minCorner.getX(), maxCorner.getX());
+		this.maxX = Math.max(minCorner.getX(), maxCorner.getX());
+		this.minZ = Math.min(minCorner.getZ(), maxCorner.getZ());
+		this.maxZ = Math.max(minCorner.getZ(), maxCorner.getZ());
+		this.minY = Math.max(minCorner.getY(), 0);
+		this.maxY = Math.min(maxCorner.getY(), MAX_WORLD_HEIGHT - 1);
+
+		//Moving one block along X in the world moves the schematic position by (stepX, stepZ)
+		int stepX;
+		int stepZ;
+		switch (angle)
+		{
+			case 0:
+				stepX = 1;
+				stepZ = 0;
+				break;
+			case 1:
+				stepX = 0;
+				stepZ = -1;
+				break;
+			case 2:
+				stepX = -1;
+				stepZ = 0;
+				break;
+			default:
+				stepX = 0;
+				stepZ = 1;
+				break;
+		}
+		this.indexStep = stepX + stepZ * width;
+
+		if (width <= 0 || height <= 0 || length <= 0 || minY > maxY)
+		{
+			this.chunkCount = 0;
+		}
+		else
+		{
+			this.chunkCount = ((maxX >> 4) - (minX >> 4) + 1) * ((maxZ >> 4) - (minZ >> 4) + 1);
+		}
+		this.chunkX = minX >> 4;
+		this.chunkZ = minZ >> 4;
+		this.chunksPlaced = 0;
+	}
+
+	/**
+	 * Copies all the blocks into the world at once.
+	 */
+	public static void place(World world, int width, int height, int length, short[] blocks, byte[] metadata,
+			Point3D srcOrigin, int turnAngle, Point3D destOrigin, boolean transformMetadata)
+	{
+		ChunkBatchPlacer placer = new ChunkBatchPlacer(world, width, height, length, blocks, metadata,
+				srcOrigin, turnAngle, destOrigin, transformMetadata);
+		while (!placer.isFinished())
+		{
+			placer.placeNextChunk();
+		}
+	}
+
+	public boolean isFinished()
+	{
+		return chunksPlaced >= chunkCount;
+	}
+
+	public int getChunkCount()
+	{
+		return chunkCount;
+	}
+
+	public int getChunksPlaced()
+	{
+		return chunksPlaced;
+	}
+
+	/**
+	 * Writes the part of the schematic that falls in the next chunk.
+	 */
+	public void placeNextChunk()
+	{
+		if (isFinished())
+		{
+			return;
+		}
+
+		int startX = Math.max(minX, chunkX << 4);
+		int endX = Math.min(maxX, (chunkX << 4) + 15);
+		int startZ = Math.max(minZ, chunkZ << 4);
+		int endZ = Math.min(maxZ, (chunkZ << 4) + 15);
+		Chunk chunk = world.getChunkFromChunkCoords(chunkX, chunkZ);
+		ExtendedBlockStorage[] storageArray = chunk.getBlockStorageArray();
+
+		for (int sectionY = minY >> 4; sectionY <= maxY >> 4 && sectionY < SECTION_COUNT; sectionY++)
+		{
+			int startY = Math.max(minY, sectionY << 4);
+			int endY = Math.min(maxY, (sectionY << 4) + 15);
+			ExtendedBlockStorage storage = storageArray[sectionY];
+			if (storage == null)
+			{
+				storage = new ExtendedBlockStorage(sectionY << 4, hasSky);
+				storageArray[sectionY] = storage;
+			}
+
+			for (int y = startY; y <= endY; y++)
+			{
+				int sy = y - destOrigin.getY() + srcOrigin.getY();
+				for (int z = startZ; z <= endZ; z++)
+				{
+					//Map the first block of the row back to its position in the schematic
+					int index = getSourceIndex(startX, sy, z);
+					for (int x = startX; x <= endX; x++, index += indexStep)
+					{
+						int blockID = blocks[index];
+						if (blockID != 0 && Block.blocksList[blockID] == null)
+						{
+							continue;
+						}
+						int blockMeta = metadata[index];
+						if (transformMetadata && angle != 0)
+						{
+							blockMeta = BlockRotator.transformMetadata(blockMeta, angle, blockID);
+						}
+						storage.setExtBlockID(x & 15, y & 15, z & 15, blockID);
+						storage.setExtBlockMetadata(x & 15, y & 15, z & 15, blockMeta);
+					}
+				}
+			}
+		}
+
+		//Recalculate the height map and sky light once for the whole chunk
+		chunk.generateSkylightMap();
+		chunk.isModified = true;
+
+		//Move on to the next chunk, in ZX order
+		chunksPlaced++;
+		chunkZ++;
+		if (chunkZ > maxZ >> 4)
+		{
+			chunkZ = minZ >> 4;
+			chunkX++;
+		}
+	}
+
+	private int getSourceIndex(int x, int sy, int z)
+	{
+		//Undo the rotation performed by BlockRotator.transformPoint()
+		int rx = x - destOrigin.getX();
+		int rz = z - destOrigin.getZ();
+		int tx;
+		int tz;
+		switch (angle)
+		{
+			case 0:
+				tx = rx;
+				tz = rz;
+				break;
+			case 1:
+				tx = rz;
+				tz = -rx;
+				break;
+			case 2:
+				tx = -rx;
+				tz = -rz;
+				break;
+			default:
+				tx = -rz;
+				tz = rx;
+				break;
+		}
+		int sx = tx + srcOrigin.getX();
+		int sz = tz + srcOrigin.getZ();
+		return (sy * length + sz) * width + sx;
+	}
+}
@@ -1,14 +1,19 @@
 package StevenDimDoors.mod_pocketDim.schematic;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
 
 import net.minecraft.block.Block;
 import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.tileentity.TileEntity;
@@ -23,6 +28,15 @@ import StevenDimDoors.mod_pocketDim.Point3D;
  */
 public class Schematic {
 
+	//NBT tag types used by writeToStream()
+	private static final int NBT_END = 0;
+	private static final int NBT_SHORT = 2;
+	private static final int NBT_BYTE_ARRAY = 7;
+	private static final int NBT_STRING = 8;
+	private static final int NBT_COMPOUND = 10;
+	//Number of bytes of block IDs that writeToStream() prepares at a time
+	private static final int STREAM_BUFFER_SIZE = 4096;
+
 	protected short width;
 	protected short height;
 	protected short length;
@@ -110,6 +124,11 @@ public class Schematic {
 	{
 		return (NBTTagList) tileEntities.copy();
 	}
+	
+	public int getTileEntityCount()
+	{
+		return tileEntities.tagCount();
+	}
 
 	public static Schematic readFromFile(String schematicPath) throws FileNotFoundException, InvalidSchematicException
 	{
@@ -240,10 +259,9 @@ public class Schematic {
 			}
 
 			//Compact the area to be copied to remove empty borders
-			CompactBoundsOperation compactor = new CompactBoundsOperation();
-			compactor.apply(world, x, fixedY, z, width, fixedHeight, length);
-			Point3D minCorner = compactor.getMinCorner();
-			Point3D maxCorner = compactor.getMaxCorner();
+			Point3D[] bounds = ChunkBatchCopier.findCompactBounds(world, x, fixedY, z, width, fixedHeight, length);
+			Point3D minCorner = bounds[0];
+			Point3D maxCorner = bounds[1];
 
 			short compactWidth = (short) (maxCorner.getX() - minCorner.getX() + 1);
 			short compactHeight = (short) (maxCorner.getY() - minCorner.getY() + 1);
@@ -260,10 +278,7 @@ public class Schematic {
 
 	private static Schematic copyFromWorld(World world, int x, int y, int z, short width, short height, short length)
 	{
-		//Short and sweet ^_^
-		WorldCopyOperation copier = new WorldCopyOperation();
-		copier.apply(world, x, y, z, width, height, length);
-		return new Schematic(width, height, length, copier.getBlockIDs(), copier.getMetadata(), copier.getTileEntities());
+		return ChunkBatchCopier.copy(world, x, y, z, width, height, length);
 	}
 
 	private static boolean encodeBlockIDs(short[] blocks, byte[] lowBits, byte[] highBits)
@@ -347,11 +362,99 @@ public class Schematic {
 
 	public void writeToFile(File schematicFile) throws IOException
 	{
-		FileOutputStream outputStream = new FileOutputStream(schematicFile);
-		CompressedStreamTools.writeCompressed(writeToNBT(false), outputStream);
-		//writeCompressed() probably closes the stream on its own - call close again just in case.
-		//Closing twice will not throw an exception.
-		outputStream.close();
+		DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+				new GZIPOutputStream(new FileOutputStream(schematicFile))));
+		try
+		{
+			writeToStream(outputStream);
+		}
+		finally
+		{
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * Writes the same NBT data as writeToNBT(), uncompressed, straight to a stream. The block IDs are split
+	 * and written a piece at a time, so unlike writeToNBT(), this doesn't build copies of the block arrays
+	 * or a tree of tags for them. CompressedStreamTools.readCompressed() can read the result after
+	 * compressing it with GZIP, as writeToFile() does.
+	 */
+	protected void writeToStream(DataOutput output) throws IOException
+	{
+		output.writeByte(NBT_COMPOUND);
+		output.writeUTF("Schematic");
+
+		writeShortTag(output, "Width", width);
+		writeShortTag(output, "Length", length);
+		writeShortTag(output, "Height", height);
+		NBTBase.writeNamedTag(new NBTTagList("Entities"), output);
+		output.writeByte(NBT_STRING);
+		output.writeUTF("Materials");
+		output.writeUTF("Alpha");
+
+		//Write the low 8 bits of the block IDs
+		byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+		boolean hasExtendedIDs = false;
+		writeByteArrayHeader(output, "Blocks", blocks.length);
+		for (int start = 0; start < blocks.length; start += buffer.length)
+		{
+			int end = Math.min(start + buffer.length, blocks.length);
+			for (int index = start; index < end; index++)
+			{
+				buffer[index - start] = (byte) (blocks[index] & 0xFF);
+				hasExtendedIDs |= ((blocks[index] & 0x0F00) != 0);
+			}
+			output.write(buffer, 0, end - start);
+		}
+
+		writeByteArrayHeader(output, "Data", metadata.length);
+		output.write(metadata);
+
+		if (hasExtendedIDs)
+		{
+			//Write the additional 4 bits of the block IDs, packed two to a byte, as in encodeBlockIDs()
+			int pairs = (blocks.length >> 1) + (blocks.length & 1);
+			writeByteArrayHeader(output, "AddBlocks", pairs);
+			for (int start = 0; start < pairs; start += buffer.length)
+			{
+				int end = Math.min(start + buffer.length, pairs);
+				for (int pair = start; pair < end; pair++)
+				{
+					int index = pair << 1;
+					int value = (blocks[index] >> 8) & 0x0F;
+					if (index + 1 < blocks.length)
+					{
+						value += (blocks[index + 1] >> 4) & 0xF0;
+					}
+					buffer[pair - start] = (byte) value;
+				}
+				output.write(buffer, 0, end - start);
+			}
+		}
+
+		NBTTagList tileTags = tileEntities;
+		if (!"TileEntities".equals(tileTags.getName()))
+		{
+			tileTags = (NBTTagList) tileTags.copy();
+			tileTags.setName("TileEntities");
+		}
+		NBTBase.writeNamedTag(tileTags, output);
+		output.writeByte(NBT_END);
+	}
+
+	private static void writeShortTag(DataOutput output, String name, short value) throws IOException
+	{
+		output.writeByte(NBT_SHORT);
+		output.writeUTF(name);
+		output.writeShort(value);
+	}
+
+	private static void writeByteArrayHeader(DataOutput output, String name, int length) throws IOException
+	{
+		output.writeByte(NBT_BYTE_ARRAY);
+		output.writeUTF(name);
+		output.writeInt(length);
 	}
 	
 	public boolean applyFilter(SchematicFilter filter)
@@ -368,24 +471,14 @@ public class Schematic {
 		int dx, dy, dz;
 		
 		//Copy blocks and metadata into the world
-		index = 0;
-		for (dy = 0; dy < height; dy++)
-		{
-			for (dz = 0; dz < length; dz++)
-			{
-				for (dx = 0; dx < width; dx++)
-				{
-					//In the future, we might want to make this more efficient by building whole chunks at a time
-					setBlockDirectly(world, x + dx, y + dy, z + dz, blocks[index], metadata[index]);
-					index++;
-				}
-			}
-		}
+		ChunkBatchPlacer.place(world, width, height, length, blocks, metadata, new Point3D(0, 0, 0), 0, new Point3D(x, y, z), false);
+
 		//Copy tile entities into the world
 		count = tileEntities.tagCount();
 		for (index = 0; index < count; index++)
 		{
-			NBTTagCompound tileTag = (NBTTagCompound) tileEntities.tagAt(index);
+			//Copy the tag so that the schematic itself isn't modified
+			NBTTagCompound tileTag = (NBTTagCompound) tileEntities.tagAt(index).copy();
 			//Rewrite its location to be in world coordinates
 			dx = tileTag.getInteger("x") + x;
 			dy = tileTag.getInteger("y") + y;
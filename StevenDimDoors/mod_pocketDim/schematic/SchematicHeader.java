@@ -0,0 +1,245 @@
+package StevenDimDoors.mod_pocketDim.schematic;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the dimensions of a schematic and checks that its block data is consistent with them, without loading
+ * the block data itself. The schematic is still decompressed, but its byte arrays are skipped rather than read
+ * into memory, so checking many schematics is much cheaper than loading them with Schematic.readFromStream().
+ * The checks are the same as those in readFromStream(). Instances are immutable, so schematics can be checked
+ * on several threads at once.
+ */
+public class SchematicHeader
+{
+	private static final int NBT_END = 0;
+	private static final int NBT_BYTE = 1;
+	private static final int NBT_SHORT = 2;
+	private static final int NBT_INT = 3;
+	private static final int NBT_LONG = 4;
+	private static final int NBT_FLOAT = 5;
+	private static final int NBT_DOUBLE = 6;
+	private static final int NBT_BYTE_ARRAY = 7;
+	private static final int NBT_STRING = 8;
+	private static final int NBT_LIST = 9;
+	private static final int NBT_COMPOUND = 10;
+	private static final int NBT_INT_ARRAY = 11;
+
+	private final short width;
+	private final short height;
+	private final short length;
+	private final int tileEntityCount;
+
+	private SchematicHeader(short width, short height, short length, int tileEntityCount)
+	{
+		this.width = width;
+		this.height = height;
+		this.length = length;
+		this.tileEntityCount = tileEntityCount;
+	}
+
+	public short getWidth()
+	{
+		return width;
+	}
+
+	public short getHeight()
+	{
+		return height;
+	}
+
+	public short getLength()
+	{
+		return length;
+	}
+
+	public int getTileEntityCount()
+	{
+		return tileEntityCount;
+	}
+
+	public static SchematicHeader readFromFile(File schematicFile) throws FileNotFoundException, InvalidSchematicException
+	{
+		return readFromStream(new FileInputStream(schematicFile));
+	}
+
+	public static SchematicHeader readFromResource(String resourcePath) throws InvalidSchematicException
+	{
+		InputStream schematicStream = SchematicHeader.class.getResourceAsStream(resourcePath);
+		if (schematicStream == null)
+		{
+			throw new InvalidSchematicException("The schematic could not be found.");
+		}
+		return readFromStream(schematicStream);
+	}
+
+	public static SchematicHeader readFromStream(InputStream schematicStream) throws InvalidSchematicException
+	{
+		short width = 0;
+		short height = 0;
+		short length = 0;
+		int blocksLength = 0;
+		int addBlocksLength = 0;
+		int metadataLength = 0;
+		int tileEntityCount = 0;
+		DataInputStream input = null;
+
+		try
+		{
+			try
+			{
+				input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(schematicStream)));
+				if (input.readByte() != NBT_COMPOUND)
+				{
+					throw new InvalidSchematicException("The schematic could not be decoded.");
+				}
+				input.readUTF();
+
+				int type = input.readByte();
+				while (type != NBT_END)
+				{
+					String name = input.readUTF();
+					if (type == NBT_SHORT && name.equals("Width"))
+						width = input.readShort();
+					else if (type == NBT_SHORT && name.equals("Height"))
+						height = input.readShort();
+					else if (type == NBT_SHORT && name.equals("Length"))
+						length = input.readShort();
+					else if (type == NBT_BYTE_ARRAY && name.equals("Blocks"))
+						blocksLength = skipArray(input, 1);
+					else if (type == NBT_BYTE_ARRAY && name.equals("AddBlocks"))
+						addBlocksLength = skipArray(input, 1);
+					else if (type == NBT_BYTE_ARRAY && name.equals("Data"))
+						metadataLength = skipArray(input, 1);
+					else if (type == NBT_LIST && name.equals("TileEntities"))
+						tileEntityCount = skipList(input);
+					else
+						skipPayload(input, type);
+
+					type = input.readByte();
+				}
+			}
+			finally
+			{
+				if (input != null)
+				{
+					input.close();
+				}
+				else
+				{
+					schematicStream.close();
+				}
+			}
+		}
+		catch (InvalidSchematicException ex)
+		{
+			throw ex;
+		}
+		catch (IOException ex)
+		{
+			throw new InvalidSchematicException("The schematic could not be decoded.", ex);
+		}
+
+		int volume = width * length * height;
+		if (width < 0)
+			throw new InvalidSchematicException("The schematic cannot have a negative width.");
+		if (height < 0)
+			throw new InvalidSchematicException("The schematic cannot have a negative height.");
+		if (length < 0)
+			throw new InvalidSchematicException("The schematic cannot have a negative length.");
+		if (volume != blocksLength)
+			throw new InvalidSchematicException("The schematic has data for fewer blocks than its dimensions indicate.");
+		if (volume != metadataLength)
+			throw new InvalidSchematicException("The schematic has metadata for fewer blocks than its dimensions indicate.");
+		if (volume > 2 * addBlocksLength && addBlocksLength != 0)
+			throw new InvalidSchematicException("The schematic has extended block IDs for fewer blocks than its dimensions indicate.");
+
+		return new SchematicHeader(width, height, length, tileEntityCount);
+	}
+
+	private static int skipArray(DataInputStream input, int elementSize) throws IOException
+	{
+		int count = input.readInt();
+		if (count < 0)
+		{
+			throw new IOException("Negative array length");
+		}
+		skipFully(input, (long) count * elementSize);
+		return count;
+	}
+
+	private static int skipList(DataInputStream input) throws IOException
+	{
+		int elementType = input.readByte();
+		int count = input.readInt();
+		for (int index = 0; index < count; index++)
+		{
+			skipPayload(input, elementType);
+		}
+		return Math.max(count, 0);
+	}
+
+	private static void skipPayload(DataInputStream input, int type) throws IOException
+	{
+		switch (type)
+		{
+			case NBT_BYTE:
+				skipFully(input, 1);
+				break;
+			case NBT_SHORT:
+				skipFully(input, 2);
+				break;
+			case NBT_INT:
+			case NBT_FLOAT:
+				skipFully(input, 4);
+				break;
+			case NBT_LONG:
+			case NBT_DOUBLE:
+				skipFully(input, 8);
+				break;
+			case NBT_BYTE_ARRAY:
+				skipArray(input, 1);
+				break;
+			case NBT_INT_ARRAY:
+				skipArray(input, 4);
+				break;
+			case NBT_STRING:
+				skipFully(input, input.readUnsignedShort());
+				break;
+			case NBT_LIST:
+				skipList(input);
+				break;
+			case NBT_COMPOUND:
+				int childType = input.readByte();
+				while (childType != NBT_END)
+				{
+					input.readUTF();
+					skipPayload(input, childType);
+					childType = input.readByte();
+				}
+				break;
+			default:
+				throw new IOException("Unknown NBT tag type: " + type);
+		}
+	}
+
+	private static void skipFully(DataInputStream input, long count) throws IOException
+	{
+		while (count > 0)
+		{
+			int skipped = input.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+			if (skipped <= 0)
+			{
+				throw new EOFException();
+			}
+			count -= skipped;
+		}
+	}
+}
@@ -10,8 +10,17 @@ import cpw.mods.fml.common.TickType;
 public class CommonTickHandler implements ITickHandler, IRegularTickSender
 {
 	private static final String PROFILING_LABEL = "Dimensional Doors: Common Tick";
-	
-	private int tickCount = 0;
+
+	//If the server tick has already taken this long, or our receivers have used up their share of it,
+	//receivers that aren't high priority are deferred to a later tick.
+	private static final long SERVER_TICK_BUDGET_NANOS = 40000000L; //40 ms
+	private static final long RECEIVER_TICK_BUDGET_NANOS = 10000000L; //10 ms
+	//Receivers are never deferred for longer than this, so that they can't be starved by a lagging server.
+	private static final int MAX_DEFERRED_TICKS = 20;
+
+	private long tickCount = 0;
+	private long serverTickStart = 0;
+	private long lastServerTickNanos = 0;
 	private ArrayList<RegularTickReceiverInfo> receivers;
 
 
@@ -23,24 +32,74 @@ public class CommonTickHandler implements ITickHandler, IRegularTickSender
 	@Override
 	public void registerForTicking(IRegularTickReceiver receiver, int interval, boolean onTickStart)
 	{
-		RegularTickReceiverInfo info = new RegularTickReceiverInfo(receiver, interval, onTickStart);
-		receivers.add(info);
+		registerForTicking(receiver, interval, onTickStart, PRIORITY_NORMAL, DEFAULT_BUDGET_MILLIS);
 	}
 
 	@Override
-	public void tickStart(EnumSet<TickType> type, Object... tickData) 
+	public void registerForTicking(IRegularTickReceiver receiver, int interval, boolean onTickStart, int priority, int budgetMillis)
 	{
-		if (type.equals(EnumSet.of(TickType.SERVER)))
+		RegularTickReceiverInfo info = new RegularTickReceiverInfo(receiver, interval, onTickStart,
+				choosePhase(interval), priority, budgetMillis);
+
+		//Keep the receivers sorted by priority. Receivers with equal priority run in the order they were registered.
+		int index = 0;
+		while (index < receivers.size() && receivers.get(index).Priority >= priority)
 		{
+			index++;
+		}
+		receivers.add(index, info);
+	}
+
+	/**
+	 * Picks the phase offset for a new receiver that makes it fall on the same tick as the fewest existing receivers.
+	 * Two receivers with intervals a and b and phases p and q meet on some tick if and only if gcd(a, b) divides (p - q).
+	 */
+	private int choosePhase(int interval)
+	{
+		int bestPhase = 0;
+		int bestCollisions = Integer.MAX_VALUE;
+
+		for (int phase = 0; phase < interval; phase++)
+		{
+			int collisions = 0;
 			for (RegularTickReceiverInfo info : receivers)
 			{
-				if (info.OnTickStart && tickCount % info.Interval == 0)
+				//Receivers that run every tick meet everything, so they don't affect the choice
+				if (info.Interval > 1 && (phase - info.Phase) % gcd(interval, info.Interval) == 0)
 				{
-					info.RegularTickReceiver.notifyTick();
+					collisions++;
 				}
 			}
+			if (collisions < bestCollisions)
+			{
+				bestPhase = phase;
+				bestCollisions = collisions;
+			}
+		}
+		return bestPhase;
+	}
+
+	private static int gcd(int a, int b)
+	{
+		while (b != 0)
+		{
+			int remainder = a % b;
+			a = b;
+			b = remainder;
 		}
-		
+		return a;
+	}
+
+	@Override
+	public void tickStart(EnumSet<TickType> type, Object... tickData)
+	{
+		if (type.equals(EnumSet.of(TickType.SERVER)))
+		{
+			serverTickStart = System.nanoTime();
+			//Nothing else has run yet in this tick, so judge whether the server is behind from the previous tick
+			runReceivers(true, lastServerTickNanos);
+		}
+
 		//TODO: Stuck this in here because it's already rather hackish.
 		//We should standardize this as an IRegularTickReceiver in the future. ~SenseiKiwi
 		if (mod_pocketDim.teleTimer > 0)
@@ -52,14 +111,59 @@ public class CommonTickHandler implements ITickHandler, IRegularTickSender
 	@Override
 	public void tickEnd(EnumSet<TickType> type, Object... tickData)
 	{
+		long serverTickNanos = System.nanoTime() - serverTickStart;
+		runReceivers(false, serverTickNanos);
+		lastServerTickNanos = System.nanoTime() - serverTickStart;
+		tickCount++;
+	}
+
+	private void runReceivers(boolean onTickStart, long serverTickNanos)
+	{
+		long receiverNanos = 0;
+
 		for (RegularTickReceiverInfo info : receivers)
 		{
-			if (!info.OnTickStart && tickCount % info.Interval == 0)
+			if (info.OnTickStart != onTickStart)
+			{
+				continue;
+			}
+			if (tickCount % info.Interval == info.Phase)
+			{
+				info.IsDue = true;
+			}
+			if (!info.IsDue && !info.IsResuming)
 			{
+				continue;
+			}
+
+			boolean isOverBudget = (serverTickNanos + receiverNanos > SERVER_TICK_BUDGET_NANOS ||
+					receiverNanos > RECEIVER_TICK_BUDGET_NANOS);
+			if (isOverBudget && info.Priority < PRIORITY_HIGH && info.DeferredTicks < MAX_DEFERRED_TICKS)
+			{
+				info.DeferredTicks++;
+				continue;
+			}
+			info.DeferredTicks = 0;
+
+			long start = System.nanoTime();
+			if (info.IsResuming)
+			{
+				//Finish the previous round before starting a new one, even if the receiver is due again
+				info.IsResuming = !((IResumableTickReceiver) info.RegularTickReceiver).resumeTick(start + info.BudgetNanos);
+			}
+			else
+			{
+				info.IsDue = false;
 				info.RegularTickReceiver.notifyTick();
+				if (info.RegularTickReceiver instanceof IResumableTickReceiver)
+				{
+					info.IsResuming = !((IResumableTickReceiver) info.RegularTickReceiver).resumeTick(start + info.BudgetNanos);
+				}
 			}
+			long elapsed = System.nanoTime() - start;
+			info.Timings.record(elapsed);
+			receiverNanos += elapsed;
 		}
-		tickCount++; //There is no need to reset the counter. Let it overflow.
 	}
 
 	@Override
@@ -3,6 +3,19 @@ package StevenDimDoors.mod_pocketDim.ticking;
 
 public interface IRegularTickSender {
 
+	//Receivers with high priority run first and are never deferred when the server is running behind.
+	public static final int PRIORITY_LOW = 0;
+	public static final int PRIORITY_NORMAL = 1;
+	public static final int PRIORITY_HIGH = 2;
+	
+	public static final int DEFAULT_BUDGET_MILLIS = 5;
+	
 	public void registerForTicking(IRegularTickReceiver receiver, int interval, boolean onTickStart);
 	
+	/**
+	 * Registers a receiver with a priority and a time budget. The budget limits how long an IResumableTickReceiver
+	 * may work per tick. Receivers are given phase offsets so that ones with different intervals rarely fall on the same tick.
+	 */
+	public void registerForTicking(IRegularTickReceiver receiver, int interval, boolean onTickStart, int priority, int budgetMillis);
+	
 }
@@ -0,0 +1,14 @@
+package StevenDimDoors.mod_pocketDim.ticking;
+
+/**
+ * A tick receiver whose work can be split across several ticks. When the receiver is due, notifyTick() is called
+ * to start a new round of work and resumeTick() is then called on every tick until it reports that it's finished.
+ */
+public interface IResumableTickReceiver extends IRegularTickReceiver
+{
+	/**
+	 * Continues the current round of work until it's finished or System.nanoTime() reaches the deadline.
+	 * @return true if the round of work is finished, false if it should be resumed on the next tick
+	 */
+	public boolean resumeTick(long deadline);
+}
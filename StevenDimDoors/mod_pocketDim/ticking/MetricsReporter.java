@@ -0,0 +1,54 @@
+package StevenDimDoors.mod_pocketDim.ticking;
+
+import java.io.File;
+
+import net.minecraftforge.common.DimensionManager;
+import StevenDimDoors.mod_pocketDim.DDMetrics;
+import StevenDimDoors.mod_pocketDim.DDProperties;
+
+/**
+ * Periodically appends the DimDoors metrics to a CSV file in the world folder, and optionally writes them to the console.
+ */
+public class MetricsReporter implements IRegularTickReceiver
+{
+	private static final int TICKS_PER_MINUTE = 1200;
+	private static final String METRICS_FILE_PATH = "/DimensionalDoors/metrics.csv";
+
+	private final DDProperties properties;
+
+	public MetricsReporter(IRegularTickSender sender, DDProperties properties)
+	{
+		this.properties = properties;
+		if (properties.MetricsLogInterval > 0)
+		{
+			sender.registerForTicking(this, properties.MetricsLogInterval * TICKS_PER_MINUTE, false,
+					IRegularTickSender.PRIORITY_LOW, IRegularTickSender.DEFAULT_BUDGET_MILLIS);
+		}
+	}
+
+	@Override
+	public void notifyTick()
+	{
+		if (properties.MetricsConsoleOutputEnabled)
+		{
+			for (String line : DDMetrics.instance().getReport())
+			{
+				System.out.println(line);
+			}
+		}
+
+		File saveRoot = DimensionManager.getCurrentSaveRootDirectory();
+		if (saveRoot != null)
+		{
+			try
+			{
+				DDMetrics.instance().writeCsv(new File(saveRoot + METRICS_FILE_PATH));
+			}
+			catch (Exception e)
+			{
+				System.err.println("Could not write the DimDoors metrics file:");
+				e.printStackTrace();
+			}
+		}
+	}
+}
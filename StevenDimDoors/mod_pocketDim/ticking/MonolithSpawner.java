@@ -7,6 +7,7 @@ import net.minecraft.entity.Entity;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.GameRules;
 import net.minecraft.world.World;
+import StevenDimDoors.mod_pocketDim.DDMetrics;
 import StevenDimDoors.mod_pocketDim.DDProperties;
 import StevenDimDoors.mod_pocketDim.DimData;
 import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
@@ -42,6 +43,7 @@ public class MonolithSpawner implements IRegularTickReceiver {
 			{
 				//Loop over the locations and call the appropriate function depending
 				//on whether the request is for Limbo or for a pocket dimension.
+				DDMetrics.instance().recordWorkItems(this, locations.size());
 				for (ChunkLocation location : locations)
 				{
 					if (location.DimensionID == properties.LimboDimensionID)
@@ -0,0 +1,110 @@
+package StevenDimDoors.mod_pocketDim.ticking;
+
+import java.util.ArrayList;
+
+import net.minecraftforge.common.DimensionManager;
+import StevenDimDoors.mod_pocketDim.DDMetrics;
+import StevenDimDoors.mod_pocketDim.DDProperties;
+import StevenDimDoors.mod_pocketDim.mod_pocketDim;
+
+/**
+ * Keeps a few pocket dimension IDs registered with PocketProvider ahead of time, so that dimHelper.createPocket()
+ * can claim one instead of registering a new dimension while a player is waiting. Only the IDs are pooled. The
+ * worlds aren't loaded ahead of time, since Forge unloads a world with no loaded chunks soon after it's created.
+ *
+ * The pool is refilled from the tick handler at low priority, one dimension per tick, and only after the saved
+ * pockets have been registered so that the pool can't take one of their IDs. IDs that are never claimed are
+ * unregistered when the server stops.
+ */
+public class PocketDimensionPool implements IRegularTickReceiver
+{
+	private static final int POOL_REFILL_INTERVAL = 20; //Refill once per second
+
+	private final DDProperties properties;
+	private final ArrayList<Integer> dimensionIDs = new ArrayList<Integer>();
+	private long claims = 0;
+	private long misses = 0;
+
+	public PocketDimensionPool(IRegularTickSender sender, DDProperties properties)
+	{
+		this.properties = properties;
+		if (properties.PocketPoolSize > 0)
+		{
+			sender.registerForTicking(this, POOL_REFILL_INTERVAL, false,
+					IRegularTickSender.PRIORITY_LOW, IRegularTickSender.DEFAULT_BUDGET_MILLIS);
+		}
+	}
+
+	/**
+	 * Returns the ID of a pocket dimension that is registered with PocketProvider and not used by any pocket.
+	 * A pooled ID is used if there is one. Otherwise, a new dimension is registered on the spot.
+	 */
+	public int claim()
+	{
+		if (!dimensionIDs.isEmpty())
+		{
+			claims++;
+			return dimensionIDs.remove(dimensionIDs.size() - 1);
+		}
+		misses++;
+		return registerNewDimension();
+	}
+
+	/**
+	 * Unregisters the dimensions that are still in the pool. Called when the server stops or the pockets
+	 * are reloaded.
+	 */
+	public void clear()
+	{
+		for (int dimensionID : dimensionIDs)
+		{
+			try
+			{
+				DimensionManager.unregisterDimension(dimensionID);
+			}
+			catch (Exception e)
+			{
+				//The dimension was already unregistered, so there's nothing to do
+			}
+		}
+		dimensionIDs.clear();
+	}
+
+	public boolean contains(int dimensionID)
+	{
+		return dimensionIDs.contains(dimensionID);
+	}
+
+	public int size()
+	{
+		return dimensionIDs.size();
+	}
+
+	public String getStatistics()
+	{
+		return "Pocket dimension pool: " + dimensionIDs.size() + " of " + properties.PocketPoolSize + " ready, " +
+				claims + " claimed from the pool, " + misses + " registered on demand";
+	}
+
+	@Override
+	public void notifyTick()
+	{
+		//Wait until the saved pockets have been registered and the overworld exists
+		if (!mod_pocketDim.hasInitDims || DimensionManager.getWorld(0) == null)
+		{
+			return;
+		}
+		if (dimensionIDs.size() < properties.PocketPoolSize)
+		{
+			dimensionIDs.add(registerNewDimension());
+			DDMetrics.instance().recordWorkItems(this, 1);
+		}
+	}
+
+	private int registerNewDimension()
+	{
+		int dimensionID = DimensionManager.getNextFreeDimId();
+		DimensionManager.registerDimension(dimensionID, properties.PocketProviderID);
+		return dimensionID;
+	}
+}
@@ -0,0 +1,386 @@
+package StevenDimDoors.mod_pocketDim.ticking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.world.World;
+import net.minecraftforge.common.DimensionManager;
+import StevenDimDoors.mod_pocketDim.DDMetrics;
+import StevenDimDoors.mod_pocketDim.DDProperties;
+import StevenDimDoors.mod_pocketDim.DimData;
+import StevenDimDoors.mod_pocketDim.LinkData;
+import StevenDimDoors.mod_pocketDim.Point3D;
+import StevenDimDoors.mod_pocketDim.SchematicLoader;
+import StevenDimDoors.mod_pocketDim.dungeon.DungeonSchematic;
+import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
+
+/**
+ * Generates pockets over several ticks instead of all at once when a player walks through a door. Each pocket is
+ * built by a job that goes through a series of stages (loading the dungeon, placing blocks, placing tile entities,
+ * filling containers and linking doors), and the jobs are advanced in order under a per-tick time budget. Default
+ * pockets only have a block placement stage, which builds their walls one slice at a time.
+ *
+ * Players who walk through a door while its pocket is being generated are held at the entrance. When the job is
+ * finished, they're sent through the door as usual.
+ *
+ * Pockets can also be generated speculatively, before anyone asks for them (see PocketPregenerator). Those jobs
+ * wait behind the ones that players are waiting for and only get a small share of each tick. If a player walks
+ * into a pocket that is being pregenerated, its job is moved ahead and continues at full speed.
+ */
+public class PocketGenerationScheduler implements IResumableTickReceiver
+{
+	private static final int SCHEDULER_INTERVAL = 1;
+	private static final int SCHEDULER_BUDGET = 5; //Milliseconds of generation per tick
+	private static final long SPECULATIVE_BUDGET_NANOS = 1000000L; //1 ms per tick for pregeneration
+	//Held players are only moved back if they've drifted further than this from where they were stopped
+	private static final double MAX_HOLD_DISTANCE_SQUARED = 0.25;
+
+	private static final int STAGE_LOAD = 0;
+	private static final int STAGE_PLACE_BLOCKS = 1;
+	private static final int STAGE_PLACE_TILE_ENTITIES = 2;
+	private static final int STAGE_FILL_CONTAINERS = 3;
+	private static final int STAGE_LINK_DOORS = 4;
+	private static final int STAGE_DONE = 5;
+	private static final String[] STAGE_NAMES = new String[] {
+		"loading", "placing blocks", "placing tile entities", "filling containers", "linking doors", "done"
+	};
+
+	private static class HeldPlayer
+	{
+		public final EntityPlayerMP player;
+		//The link the player used. Other players may reach the same pocket through other links.
+		public final LinkData link;
+		public final World world;
+		public final double x, y, z;
+
+		public HeldPlayer(EntityPlayerMP player, LinkData link)
+		{
+			this.player = player;
+			this.link = link;
+			this.world = player.worldObj;
+			this.x = player.posX;
+			this.y = player.posY;
+			this.z = player.posZ;
+		}
+	}
+
+	private static class GenerationJob
+	{
+		public final LinkData link;
+		public final boolean isDungeon;
+		public boolean isSpeculative;
+		public final long startTime;
+		public final ArrayList<HeldPlayer> heldPlayers = new ArrayList<HeldPlayer>(1);
+		public int stage = STAGE_LOAD;
+		public long workNanos = 0;
+		//Used for default pockets
+		public World world;
+		public Point3D center;
+		public int sliceX;
+		//Used for dungeon pockets
+		public DungeonSchematic.Placement placement;
+
+		public GenerationJob(LinkData link, boolean isDungeon, boolean isSpeculative)
+		{
+			this.link = link;
+			this.isDungeon = isDungeon;
+			this.isSpeculative = isSpeculative;
+			this.startTime = System.nanoTime();
+		}
+	}
+
+	private final DDProperties properties;
+	//Jobs are advanced in the order in which they were requested
+	private final ArrayList<GenerationJob> jobs = new ArrayList<GenerationJob>();
+	private final HashMap<Integer, GenerationJob> jobsByDimension = new HashMap<Integer, GenerationJob>();
+	private long completedJobs = 0;
+
+	public PocketGenerationScheduler(IRegularTickSender sender, DDProperties properties)
+	{
+		this.properties = properties;
+		sender.registerForTicking(this, SCHEDULER_INTERVAL, false, IRegularTickSender.PRIORITY_HIGH, SCHEDULER_BUDGET);
+	}
+
+	/**
+	 * Starts generating the pocket that a link leads to, unless it's already being generated. If the entity is a
+	 * player, it's held in place until the pocket is ready and then sent through the link.
+	 */
+	public void enqueue(LinkData link, Entity entity)
+	{
+		GenerationJob job = jobsByDimension.get(link.destDimID);
+		if (job == null)
+		{
+			DimData data = dimHelper.instance.getDimData(link.destDimID);
+			job = new GenerationJob(link, data.isDimRandomRift, false);
+			jobs.add(getFirstSpeculativeIndex(), job);
+			jobsByDimension.put(link.destDimID, job);
+		}
+		else if (job.isSpeculative)
+		{
+			//Someone needs this pocket now, so stop treating it as pregeneration
+			jobs.remove(job);
+			job.isSpeculative = false;
+			jobs.add(getFirstSpeculativeIndex(), job);
+		}
+		if (entity instanceof EntityPlayerMP && !isHeld(job, entity))
+		{
+			job.heldPlayers.add(new HeldPlayer((EntityPlayerMP) entity, link));
+		}
+	}
+
+	/**
+	 * Starts generating the pocket that a link leads to ahead of time, behind any pockets that players are
+	 * waiting for. Does nothing if the pocket is already being generated.
+	 * @return true if a new job was started
+	 */
+	public boolean pregenerate(LinkData link)
+	{
+		if (jobsByDimension.containsKey(link.destDimID))
+		{
+			return false;
+		}
+		DimData data = dimHelper.instance.getDimData(link.destDimID);
+		GenerationJob job = new GenerationJob(link, data.isDimRandomRift, true);
+		jobs.add(job);
+		jobsByDimension.put(link.destDimID, job);
+		return true;
+	}
+
+	private int getFirstSpeculativeIndex()
+	{
+		int index = 0;
+		while (index < jobs.size() && !jobs.get(index).isSpeculative)
+		{
+			index++;
+		}
+		return index;
+	}
+
+	public boolean isGenerating(int dimensionID)
+	{
+		return jobsByDimension.containsKey(dimensionID);
+	}
+
+	public int getPendingJobCount()
+	{
+		return jobs.size();
+	}
+
+	public void clear()
+	{
+		jobs.clear();
+		jobsByDimension.clear();
+	}
+
+	/**
+	 * Returns a human-readable summary of the pending jobs, including the progress of the current one.
+	 */
+	public String getStatistics()
+	{
+		String line = "Pocket generation: " + jobs.size() + " pending (" + (jobs.size() - getFirstSpeculativeIndex()) +
+				" speculative), " + completedJobs + " completed";
+		if (!jobs.isEmpty())
+		{
+			GenerationJob job = jobs.get(0);
+			line += ", current: dimension " + job.link.destDimID + " " + STAGE_NAMES[job.stage] + " (" +
+					Math.round(getBlockProgress(job) * 100) + "% of blocks, " + job.heldPlayers.size() + " waiting)";
+		}
+		return line;
+	}
+
+	/**
+	 * Keeps held players at the entrance for another tick.
+	 */
+	@Override
+	public void notifyTick()
+	{
+		for (GenerationJob job : jobs)
+		{
+			for (int index = job.heldPlayers.size() - 1; index >= 0; index--)
+			{
+				HeldPlayer held = job.heldPlayers.get(index);
+				EntityPlayerMP player = held.player;
+				if (player.isDead || player.worldObj != held.world)
+				{
+					//The player died, logged out or left by some other means
+					job.heldPlayers.remove(index);
+				}
+				else
+				{
+					double dx = player.posX - held.x;
+					double dy = player.posY - held.y;
+					double dz = player.posZ - held.z;
+					if (dx * dx + dy * dy + dz * dz > MAX_HOLD_DISTANCE_SQUARED)
+					{
+						player.playerNetServerHandler.setPlayerLocation(held.x, held.y, held.z, player.rotationYaw, player.rotationPitch);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Advances the pending jobs until they're all done or the deadline is reached. Unfinished jobs are
+	 * picked up again on the next tick.
+	 */
+	@Override
+	public boolean resumeTick(long deadline)
+	{
+		int steps = 0;
+		while (!jobs.isEmpty() && System.nanoTime() < deadline)
+		{
+			GenerationJob job = jobs.get(0);
+			long start = System.nanoTime();
+			long jobDeadline = deadline;
+			if (job.isSpeculative)
+			{
+				jobDeadline = Math.min(deadline, start + SPECULATIVE_BUDGET_NANOS);
+			}
+			try
+			{
+				advance(job, jobDeadline);
+			}
+			catch (Exception e)
+			{
+				System.err.println("An exception occurred while generating the pocket for dimension " + job.link.destDimID + ":");
+				e.printStackTrace();
+				job.stage = STAGE_DONE;
+			}
+			job.workNanos += System.nanoTime() - start;
+			steps++;
+
+			if (job.stage == STAGE_DONE)
+			{
+				finish(job);
+			}
+			if (job.isSpeculative)
+			{
+				//Pregeneration only gets one step per tick
+				break;
+			}
+		}
+		DDMetrics.instance().recordWorkItems(this, steps);
+		return true;
+	}
+
+	private void advance(GenerationJob job, long deadline)
+	{
+		switch (job.stage)
+		{
+			case STAGE_LOAD:
+				if (!dimHelper.instance.loadPocketWorld(job.link.destDimID))
+				{
+					job.stage = STAGE_DONE;
+				}
+				else if (job.isDungeon)
+				{
+					job.placement = SchematicLoader.prepareDungeonPocket(job.link, properties);
+					job.stage = (job.placement != null) ? STAGE_PLACE_BLOCKS : STAGE_DONE;
+				}
+				else
+				{
+					job.world = DimensionManager.getWorld(job.link.destDimID);
+					job.center = dimHelper.instance.getPocketCenter(job.link);
+					job.sliceX = -dimHelper.POCKET_SEARCH_RADIUS;
+					job.stage = STAGE_PLACE_BLOCKS;
+				}
+				break;
+
+			case STAGE_PLACE_BLOCKS:
+				if (job.isDungeon)
+				{
+					if (job.placement.placeBlocks(deadline))
+					{
+						job.stage = STAGE_PLACE_TILE_ENTITIES;
+					}
+				}
+				else
+				{
+					while (job.sliceX <= dimHelper.POCKET_SEARCH_RADIUS && System.nanoTime() < deadline)
+					{
+						dimHelper.instance.generatePocketSlice(job.world, job.center, job.sliceX, properties);
+						job.sliceX++;
+					}
+					if (job.sliceX > dimHelper.POCKET_SEARCH_RADIUS)
+					{
+						//Default pockets have no tile entities, containers or doors of their own
+						job.stage = STAGE_DONE;
+					}
+				}
+				break;
+
+			case STAGE_PLACE_TILE_ENTITIES:
+				job.placement.placeTileEntities();
+				job.stage = STAGE_FILL_CONTAINERS;
+				break;
+
+			case STAGE_FILL_CONTAINERS:
+				if (job.placement.fillContainers(deadline))
+				{
+					job.stage = STAGE_LINK_DOORS;
+				}
+				break;
+
+			case STAGE_LINK_DOORS:
+				job.placement.setUpLinks();
+				job.stage = STAGE_DONE;
+				break;
+		}
+	}
+
+	private void finish(GenerationJob job)
+	{
+		jobs.remove(0);
+		jobsByDimension.remove(job.link.destDimID);
+		completedJobs++;
+
+		DimData data = dimHelper.instance.getDimData(job.link.destDimID);
+		if (data != null)
+		{
+			data.hasBeenFilled = true;
+			data.markDirty();
+		}
+		DDMetrics.instance().recordPocketGeneration(job.workNanos);
+		DDMetrics.instance().recordPocketGenerationLatency(System.nanoTime() - job.startTime);
+
+		//Send the players who were waiting through the door
+		for (HeldPlayer held : job.heldPlayers)
+		{
+			if (!held.player.isDead && held.player.worldObj == held.world)
+			{
+				dimHelper.instance.traverseDimDoor(held.world, held.link, held.player);
+			}
+		}
+	}
+
+	private static float getBlockProgress(GenerationJob job)
+	{
+		if (job.stage == STAGE_LOAD)
+		{
+			return 0;
+		}
+		if (job.stage > STAGE_PLACE_BLOCKS)
+		{
+			return 1;
+		}
+		if (job.isDungeon)
+		{
+			return job.placement.getBlockProgress();
+		}
+		return (float) (job.sliceX + dimHelper.POCKET_SEARCH_RADIUS) / (2 * dimHelper.POCKET_SEARCH_RADIUS + 1);
+	}
+
+	private static boolean isHeld(GenerationJob job, Entity entity)
+	{
+		for (HeldPlayer held : job.heldPlayers)
+		{
+			if (held.player == entity)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
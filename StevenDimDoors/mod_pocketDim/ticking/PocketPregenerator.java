@@ -0,0 +1,171 @@
+package StevenDimDoors.mod_pocketDim.ticking;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.world.World;
+import net.minecraftforge.common.DimensionManager;
+import StevenDimDoors.mod_pocketDim.DDMetrics;
+import StevenDimDoors.mod_pocketDim.DDProperties;
+import StevenDimDoors.mod_pocketDim.DimData;
+import StevenDimDoors.mod_pocketDim.LinkData;
+import StevenDimDoors.mod_pocketDim.helpers.DungeonHelper;
+import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
+
+/**
+ * Builds the pockets behind doors that players are standing near before anyone walks through them, so that the
+ * teleport itself only has to look up a pocket that already exists. Links that haven't been used yet
+ * (hasGennedDoor == false) within a configurable radius of a player are handed to PocketGenerationScheduler,
+ * which works on them in the time left over by the pockets that players are actually waiting for.
+ *
+ * Pregenerated pockets keep their worlds loaded until someone visits them or PocketUnloader finds them idle,
+ * so the number of pockets that have been pregenerated but not visited yet and their approximate memory use
+ * are both capped.
+ */
+public class PocketPregenerator implements IRegularTickReceiver
+{
+	private static final int PREGENERATOR_INTERVAL = 100; //Look for doors every 5 seconds
+	//Approximate memory used by a chunk section: 4096 block IDs plus nibble arrays for metadata and light
+	private static final long SECTION_SIZE_ESTIMATE = 4096 + 3 * 2048;
+	private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
+	private static class PregeneratedPocket
+	{
+		public final LinkData link;
+		public final long size;
+
+		public PregeneratedPocket(LinkData link, long size)
+		{
+			this.link = link;
+			this.size = size;
+		}
+	}
+
+	private final DDProperties properties;
+	private final PocketGenerationScheduler scheduler;
+	private final int radiusSquared;
+	private final long maxBytes;
+	//Pregenerated pockets that nobody has visited yet, keyed by their dimension IDs
+	private final HashMap<Integer, PregeneratedPocket> pockets = new HashMap<Integer, PregeneratedPocket>();
+	private long totalBytes = 0;
+
+	public PocketPregenerator(IRegularTickSender sender, PocketGenerationScheduler scheduler, DDProperties properties)
+	{
+		this.properties = properties;
+		this.scheduler = scheduler;
+		this.radiusSquared = properties.PocketPregenerationRadius * properties.PocketPregenerationRadius;
+		this.maxBytes = properties.PocketPregenerationMemory * BYTES_PER_MEGABYTE;
+		if (properties.PocketPregenerationEnabled)
+		{
+			sender.registerForTicking(this, PREGENERATOR_INTERVAL, false,
+					IRegularTickSender.PRIORITY_LOW, IRegularTickSender.DEFAULT_BUDGET_MILLIS);
+		}
+	}
+
+	public void clear()
+	{
+		pockets.clear();
+		totalBytes = 0;
+	}
+
+	@Override
+	public void notifyTick()
+	{
+		releaseVisitedPockets();
+
+		int started = 0;
+		for (World world : DimensionManager.getWorlds())
+		{
+			if (world.playerEntities.isEmpty())
+			{
+				continue;
+			}
+			DimData dimData = dimHelper.dimList.get(world.provider.dimensionId);
+			if (dimData == null)
+			{
+				continue;
+			}
+			for (LinkData link : dimData.getLinks())
+			{
+				if (!hasCapacity())
+				{
+					DDMetrics.instance().recordWorkItems(this, started);
+					return;
+				}
+				if (!link.hasGennedDoor && !pockets.containsKey(link.destDimID) &&
+					!scheduler.isGenerating(link.destDimID) && dimHelper.instance.needsGeneration(link) &&
+					isNearPlayer(world, link))
+				{
+					long size = estimateSize(link);
+					if (totalBytes + size <= maxBytes && scheduler.pregenerate(link))
+					{
+						pockets.put(link.destDimID, new PregeneratedPocket(link, size));
+						totalBytes += size;
+						started++;
+					}
+				}
+			}
+		}
+		DDMetrics.instance().recordWorkItems(this, started);
+	}
+
+	public String getStatistics()
+	{
+		return "Pocket pregeneration: " + pockets.size() + " of " + properties.PocketPregenerationLimit + " pockets, " +
+				(totalBytes / 1024) + " of " + (maxBytes / 1024) + " KB";
+	}
+
+	private boolean hasCapacity()
+	{
+		return pockets.size() < properties.PocketPregenerationLimit && totalBytes < maxBytes;
+	}
+
+	/**
+	 * Stops counting pregenerated pockets against the caps once they've been visited or removed, or once the
+	 * link leading to them is gone. A closed rift or a broken door leaves the pocket itself in dimList, so the
+	 * link has to be looked up again. If another link has been created at the same spot, it's a different link
+	 * with its own destination, so the pocket is released as well.
+	 */
+	private void releaseVisitedPockets()
+	{
+		Iterator<PregeneratedPocket> iterator = pockets.values().iterator();
+		while (iterator.hasNext())
+		{
+			PregeneratedPocket pocket = iterator.next();
+			LinkData link = pocket.link;
+			if (link.hasGennedDoor || !dimHelper.dimList.containsKey(link.destDimID) ||
+				dimHelper.instance.getLinkDataFromCoords(link.locXCoord, link.locYCoord, link.locZCoord, link.locDimID) != link)
+			{
+				iterator.remove();
+				totalBytes -= pocket.size;
+			}
+		}
+	}
+
+	private boolean isNearPlayer(World world, LinkData link)
+	{
+		for (Object entity : world.playerEntities)
+		{
+			EntityPlayer player = (EntityPlayer) entity;
+			double dx = player.posX - link.locXCoord;
+			double dy = player.posY - link.locYCoord;
+			double dz = player.posZ - link.locZCoord;
+			if (dx * dx + dy * dy + dz * dz <= radiusSquared)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long estimateSize(LinkData link)
+	{
+		//Count the chunk sections that the pocket could touch. The dungeon hasn't been picked yet, so assume
+		//the largest one allowed.
+		DimData data = dimHelper.instance.getDimData(link.destDimID);
+		int size = data.isDimRandomRift ? DungeonHelper.MAX_DUNGEON_WIDTH : 2 * dimHelper.POCKET_SEARCH_RADIUS + 1;
+		long sections = (size / 16 + 2);
+		return sections * sections * sections * SECTION_SIZE_ESTIMATE;
+	}
+}
@@ -0,0 +1,122 @@
+package StevenDimDoors.mod_pocketDim.ticking;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
+import StevenDimDoors.mod_pocketDim.DDMetrics;
+import StevenDimDoors.mod_pocketDim.DDProperties;
+import StevenDimDoors.mod_pocketDim.DimData;
+import StevenDimDoors.mod_pocketDim.mod_pocketDim;
+import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
+import StevenDimDoors.mod_pocketDim.world.PocketProvider;
+
+/**
+ * Saves and unloads the worlds of pocket dimensions that have been empty for a while. Forge only unloads a
+ * world once all of its chunks have been unloaded, which may never happen for a pocket, so without this every
+ * pocket that has been visited keeps its WorldServer, chunks and rift tile entities in memory until the server
+ * stops. The world is loaded again as usual the next time someone enters the pocket.
+ *
+ * Pockets that are being generated or that are waiting in the dimension pool are left alone.
+ */
+public class PocketUnloader implements IRegularTickReceiver
+{
+	private static final int UNLOADER_INTERVAL = 200; //Check every 10 seconds
+
+	private final long unloadDelay;
+	//Maps the IDs of loaded pocket dimensions to the last time someone was in them
+	private final HashMap<Integer, Long> lastVisited = new HashMap<Integer, Long>();
+	private long unloadCount = 0;
+
+	public PocketUnloader(IRegularTickSender sender, DDProperties properties)
+	{
+		this.unloadDelay = properties.PocketUnloadDelay * 1000L;
+		if (properties.PocketUnloadDelay > 0)
+		{
+			sender.registerForTicking(this, UNLOADER_INTERVAL, false,
+					IRegularTickSender.PRIORITY_LOW, IRegularTickSender.DEFAULT_BUDGET_MILLIS);
+		}
+	}
+
+	public void clear()
+	{
+		lastVisited.clear();
+	}
+
+	@Override
+	public void notifyTick()
+	{
+		long now = System.currentTimeMillis();
+		int unloaded = 0;
+
+		//Forget about pockets that have been unloaded by someone else
+		Iterator<Integer> iterator = lastVisited.keySet().iterator();
+		while (iterator.hasNext())
+		{
+			if (DimensionManager.getWorld(iterator.next()) == null)
+			{
+				iterator.remove();
+			}
+		}
+
+		for (WorldServer world : DimensionManager.getWorlds())
+		{
+			if (!(world.provider instanceof PocketProvider))
+			{
+				continue;
+			}
+			int dimensionID = world.provider.dimensionId;
+			Long visited = lastVisited.get(dimensionID);
+			if (!world.playerEntities.isEmpty() || visited == null || isBusy(dimensionID))
+			{
+				lastVisited.put(dimensionID, now);
+			}
+			else if (now - visited >= unloadDelay)
+			{
+				//Forge saves the world and fires WorldEvent.Unload at the end of the tick
+				DimensionManager.unloadWorld(dimensionID);
+				lastVisited.remove(dimensionID);
+				unloadCount++;
+				unloaded++;
+			}
+		}
+		DDMetrics.instance().recordWorkItems(this, unloaded);
+	}
+
+	/**
+	 * Returns a human-readable summary of how many pockets exist and how many of them are loaded.
+	 */
+	public String getStatistics()
+	{
+		int total = 0;
+		for (DimData dimData : dimHelper.dimList.values())
+		{
+			if (dimData.isPocket)
+			{
+				total++;
+			}
+		}
+		int resident = 0;
+		int occupied = 0;
+		for (WorldServer world : DimensionManager.getWorlds())
+		{
+			if (world.provider instanceof PocketProvider)
+			{
+				resident++;
+				if (!world.playerEntities.isEmpty())
+				{
+					occupied++;
+				}
+			}
+		}
+		return "Pockets: " + resident + " of " + total + " loaded, " + occupied + " occupied, " +
+				unloadCount + " unloaded while idle";
+	}
+
+	private static boolean isBusy(int dimensionID)
+	{
+		return (mod_pocketDim.pocketGenerator != null && mod_pocketDim.pocketGenerator.isGenerating(dimensionID)) ||
+				(mod_pocketDim.pocketPool != null && mod_pocketDim.pocketPool.contains(dimensionID));
+	}
+}
@@ -1,16 +1,39 @@
 package StevenDimDoors.mod_pocketDim.ticking;
 
+import StevenDimDoors.mod_pocketDim.DDMetrics;
+import StevenDimDoors.mod_pocketDim.util.TimingHistogram;
+
 public class RegularTickReceiverInfo {
 	
 	public IRegularTickReceiver RegularTickReceiver;
 	public int Interval;
 	public boolean OnTickStart;
+	//The receiver runs on the ticks where (tickCount % Interval) == Phase
+	public int Phase;
+	public int Priority;
+	public long BudgetNanos;
+	
+	//Set when the receiver is due but hasn't run yet, for instance because it was deferred
+	public boolean IsDue = false;
+	//Set while an IResumableTickReceiver hasn't finished its current round of work
+	public boolean IsResuming = false;
+	public int DeferredTicks = 0;
+	public TimingHistogram Timings;
 	
 	public RegularTickReceiverInfo(IRegularTickReceiver regularTickReceiver, int interval, boolean onTickStart)
+	{
+		this(regularTickReceiver, interval, onTickStart, 0, IRegularTickSender.PRIORITY_NORMAL, IRegularTickSender.DEFAULT_BUDGET_MILLIS);
+	}
+	
+	public RegularTickReceiverInfo(IRegularTickReceiver regularTickReceiver, int interval, boolean onTickStart, int phase, int priority, int budgetMillis)
 	{
 		this.RegularTickReceiver = regularTickReceiver;
 		this.Interval = interval;
 		this.OnTickStart = onTickStart;
+		this.Phase = phase;
+		this.Priority = priority;
+		this.BudgetNanos = budgetMillis * 1000000L;
+		this.Timings = DDMetrics.instance().getReceiverTimings(regularTickReceiver);
 	}
 	
 }
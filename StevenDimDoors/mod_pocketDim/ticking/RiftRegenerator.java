@@ -1,6 +1,7 @@
 package StevenDimDoors.mod_pocketDim.ticking;
 
 import net.minecraft.world.World;
+import StevenDimDoors.mod_pocketDim.DDMetrics;
 import StevenDimDoors.mod_pocketDim.DDProperties;
 import StevenDimDoors.mod_pocketDim.LinkData;
 import StevenDimDoors.mod_pocketDim.TileEntityRift;
@@ -17,7 +18,7 @@ public class RiftRegenerator implements IRegularTickReceiver {
 	
 	public RiftRegenerator(IRegularTickSender sender, DDProperties properties)
 	{
-		sender.registerForTicking(this, RIFT_REGENERATION_INTERVAL, false);
+		sender.registerForTicking(this, RIFT_REGENERATION_INTERVAL, false, IRegularTickSender.PRIORITY_LOW, IRegularTickSender.DEFAULT_BUDGET_MILLIS);
 		this.properties = properties;
 	}
 	
@@ -58,6 +59,7 @@ public class RiftRegenerator implements IRegularTickReceiver {
 								dimHelper.getWorld(link.locDimID).setBlockTileEntity(link.locXCoord, link.locYCoord, link.locZCoord, new TileEntityRift());
 							}
 							rift.hasGrownRifts = true;
+							DDMetrics.instance().recordWorkItems(this, 1);
 						}
 					}
 				}
@@ -0,0 +1,229 @@
+package StevenDimDoors.mod_pocketDim.ticking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import StevenDimDoors.mod_pocketDim.DDMetrics;
+import StevenDimDoors.mod_pocketDim.TileEntityRift;
+import StevenDimDoors.mod_pocketDim.util.CoordinatePacker;
+import StevenDimDoors.mod_pocketDim.util.LongOpenHashMap;
+
+/**
+ * Runs the periodic work of server-side rifts (spawning endermen, finding nearby rifts and growing) from a
+ * single tick receiver instead of from each TileEntityRift. Rifts are grouped by chunk and visited in
+ * round-robin order, a fraction of them every tick, so that each rift is visited about once every
+ * RIFT_UPDATE_INTERVAL ticks and the work is spread evenly rather than done in bursts. Each tick also stops
+ * once its time budget is used up, in which case the remaining rifts are picked up on the next tick.
+ */
+public class RiftScheduler implements IRegularTickReceiver
+{
+	private static final int RIFT_SCHEDULER_INTERVAL = 1;
+	//How often each rift should be visited, in ticks. Matches the interval rifts used when they updated themselves.
+	private static final int RIFT_UPDATE_INTERVAL = 200;
+	private static final long TICK_BUDGET_NANOS = 2000000L; //2 ms
+
+	private static class RiftChunk
+	{
+		public final int dimensionID;
+		public final long key;
+		public final ArrayList<TileEntityRift> rifts = new ArrayList<TileEntityRift>(4);
+
+		public RiftChunk(int dimensionID, long key)
+		{
+			this.dimensionID = dimensionID;
+			this.key = key;
+		}
+	}
+
+	private final HashMap<Integer, LongOpenHashMap<RiftChunk>> chunksByDimension = new HashMap<Integer, LongOpenHashMap<RiftChunk>>();
+	private final ArrayList<RiftChunk> chunks = new ArrayList<RiftChunk>();
+	private int riftCount = 0;
+	private int chunkCursor = 0;
+	private int riftCursor = 0;
+
+	public RiftScheduler(IRegularTickSender sender)
+	{
+		//Registered at high priority so that a lagging server can't defer rift regeneration on every cycle.
+		//The scheduler keeps to its own TICK_BUDGET_NANOS, so it can't add much to a slow tick.
+		sender.registerForTicking(this, RIFT_SCHEDULER_INTERVAL, false,
+				IRegularTickSender.PRIORITY_HIGH, IRegularTickSender.DEFAULT_BUDGET_MILLIS);
+	}
+
+	public void register(TileEntityRift rift)
+	{
+		int dimensionID = rift.worldObj.provider.dimensionId;
+		long key = CoordinatePacker.pack(rift.xCoord >> 4, 0, rift.zCoord >> 4);
+
+		LongOpenHashMap<RiftChunk> dimensionChunks = chunksByDimension.get(dimensionID);
+		if (dimensionChunks == null)
+		{
+			dimensionChunks = new LongOpenHashMap<RiftChunk>();
+			chunksByDimension.put(dimensionID, dimensionChunks);
+		}
+		RiftChunk chunk = dimensionChunks.get(key);
+		if (chunk == null)
+		{
+			chunk = new RiftChunk(dimensionID, key);
+			dimensionChunks.put(key, chunk);
+			chunks.add(chunk);
+		}
+		chunk.rifts.add(rift);
+		riftCount++;
+	}
+
+	public void unregister(TileEntityRift rift)
+	{
+		LongOpenHashMap<RiftChunk> dimensionChunks = chunksByDimension.get(rift.worldObj.provider.dimensionId);
+		if (dimensionChunks != null)
+		{
+			RiftChunk chunk = dimensionChunks.get(CoordinatePacker.pack(rift.xCoord >> 4, 0, rift.zCoord >> 4));
+			int index = (chunk != null) ? chunk.rifts.indexOf(rift) : -1;
+			if (index >= 0)
+			{
+				//Empty chunks are dropped when the round-robin reaches them
+				chunk.rifts.remove(index);
+				riftCount--;
+				//Keep the cursor on the same rift if an earlier one in the current chunk was removed
+				if (index < riftCursor && chunkCursor < chunks.size() && chunks.get(chunkCursor) == chunk)
+				{
+					riftCursor--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops all the rifts of a dimension whose world is being unloaded. Forge doesn't unload the chunks of
+	 * a world one by one when the whole world is unloaded, so its rifts never unregister themselves.
+	 */
+	public void unregisterDimension(int dimensionID)
+	{
+		if (chunksByDimension.remove(dimensionID) == null)
+		{
+			return;
+		}
+		//Remove the dimension's chunks while keeping the order of the others, so that the round-robin
+		//carries on from the same chunk instead of skipping or repeating any
+		int kept = 0;
+		int newCursor = -1;
+		for (int index = 0; index < chunks.size(); index++)
+		{
+			RiftChunk chunk = chunks.get(index);
+			if (index == chunkCursor)
+			{
+				newCursor = kept;
+			}
+			if (chunk.dimensionID == dimensionID)
+			{
+				riftCount -= chunk.rifts.size();
+				if (index == chunkCursor)
+				{
+					//The current chunk is gone, so continue from the start of the next one
+					riftCursor = 0;
+				}
+			}
+			else
+			{
+				chunks.set(kept, chunk);
+				kept++;
+			}
+		}
+		chunks.subList(kept, chunks.size()).clear();
+		chunkCursor = (newCursor >= 0) ? newCursor : kept;
+	}
+
+	public void clear()
+	{
+		chunksByDimension.clear();
+		chunks.clear();
+		riftCount = 0;
+		chunkCursor = 0;
+		riftCursor = 0;
+	}
+
+	public int getRiftCount()
+	{
+		return riftCount;
+	}
+
+	@Override
+	public void notifyTick()
+	{
+		if (riftCount == 0)
+		{
+			chunks.clear();
+			chunksByDimension.clear();
+			chunkCursor = 0;
+			riftCursor = 0;
+			return;
+		}
+
+		int quota = (riftCount + RIFT_UPDATE_INTERVAL - 1) / RIFT_UPDATE_INTERVAL;
+		int visited = 0;
+		long deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+
+		while (quota > 0 && !chunks.isEmpty())
+		{
+			if (chunkCursor >= chunks.size())
+			{
+				chunkCursor = 0;
+			}
+			RiftChunk chunk = chunks.get(chunkCursor);
+			if (riftCursor >= chunk.rifts.size())
+			{
+				if (chunk.rifts.isEmpty())
+				{
+					removeChunk(chunkCursor);
+				}
+				else
+				{
+					chunkCursor++;
+				}
+				riftCursor = 0;
+				continue;
+			}
+
+			TileEntityRift rift = chunk.rifts.get(riftCursor);
+			quota--;
+			visited++;
+			try
+			{
+				rift.updateScheduled();
+			}
+			catch (Exception e)
+			{
+				System.err.println("An exception occurred in RiftScheduler.notifyTick():");
+				e.printStackTrace();
+			}
+			//Only advance if the rift wasn't removed while it was being updated
+			if (riftCursor < chunk.rifts.size() && chunk.rifts.get(riftCursor) == rift)
+			{
+				riftCursor++;
+			}
+			if (System.nanoTime() >= deadline)
+			{
+				break;
+			}
+		}
+		DDMetrics.instance().recordWorkItems(this, visited);
+	}
+
+	private void removeChunk(int index)
+	{
+		RiftChunk chunk = chunks.get(index);
+		RiftChunk last = chunks.remove(chunks.size() - 1);
+		if (last != chunk)
+		{
+			chunks.set(index, last);
+		}
+		LongOpenHashMap<RiftChunk> dimensionChunks = chunksByDimension.get(chunk.dimensionID);
+		if (dimensionChunks != null)
+		{
+			dimensionChunks.remove(chunk.key);
+			if (dimensionChunks.isEmpty())
+			{
+				chunksByDimension.remove(chunk.dimensionID);
+			}
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package StevenDimDoors.mod_pocketDim.ticking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.network.packet.Packet250CustomPayload;
+import StevenDimDoors.mod_pocketDim.DDMetrics;
+import StevenDimDoors.mod_pocketDim.DDProperties;
+import StevenDimDoors.mod_pocketDim.SyncUpdate;
+import StevenDimDoors.mod_pocketDim.SyncUpdateCodec;
+import StevenDimDoors.mod_pocketDim.util.CoordinatePacker;
+import StevenDimDoors.mod_pocketDim.util.LongOpenHashMap;
+import cpw.mods.fml.common.network.PacketDispatcher;
+import cpw.mods.fml.common.network.Player;
+
+/**
+ * Keeps a queue of link updates for each player and drains it once per tick, encoding the updates together
+ * with SyncUpdateCodec. A rift spreading or a dungeon being placed can change many links in one tick, and this
+ * turns what used to be a packet per link per player into a few compressed packets per player.
+ *
+ * Each queue holds at most one update per link location. A newer update for the same location replaces the
+ * queued one, and if a link is created and removed again before the client hears of it, both updates are
+ * dropped. At most LinkSyncRateLimit updates are sent to a player per tick and the rest wait for the next tick,
+ * in order. Updates for dimensions other than the one the player is in are dropped instead of being sent, since
+ * the client is sent those chunks again, links included, if the player returns.
+ */
+public class SyncUpdateBatcher implements IRegularTickReceiver
+{
+	private static final int BATCH_INTERVAL = 1; //Send updates every tick
+	//Sent slots are removed from the front of a queue once there are at least this many
+	private static final int COMPACTION_THRESHOLD = 256;
+
+	private static class PendingLink
+	{
+		//The sequence number of the queued update for this link
+		public int sequence;
+		//Whether the client had no link at this location before the first queued update
+		public final boolean absentOnClient;
+
+		public PendingLink(int sequence, boolean absentOnClient)
+		{
+			this.sequence = sequence;
+			this.absentOnClient = absentOnClient;
+		}
+	}
+
+	private static class PlayerQueue
+	{
+		public final EntityPlayer player;
+		//Queued updates in order. Slots are set to null when their update is replaced or cancelled.
+		public final ArrayList<SyncUpdate> slots = new ArrayList<SyncUpdate>();
+		//The sequence number of slots[0]
+		public int base = 0;
+		//The index of the next slot to send
+		public int head = 0;
+		public int size = 0;
+		//Maps packed link locations to their queued updates
+		public final LongOpenHashMap<PendingLink> links = new LongOpenHashMap<PendingLink>();
+
+		public PlayerQueue(EntityPlayer player)
+		{
+			this.player = player;
+		}
+
+		public int append(SyncUpdate update)
+		{
+			slots.add(update);
+			size++;
+			return base + slots.size() - 1;
+		}
+
+		public SyncUpdate get(int sequence)
+		{
+			return slots.get(sequence - base);
+		}
+
+		public void cancel(int sequence)
+		{
+			slots.set(sequence - base, null);
+			size--;
+		}
+
+		public void compact()
+		{
+			if (head == slots.size())
+			{
+				slots.clear();
+				base += head;
+				head = 0;
+			}
+			else if (head >= COMPACTION_THRESHOLD)
+			{
+				slots.subList(0, head).clear();
+				base += head;
+				head = 0;
+			}
+		}
+	}
+
+	private final DDProperties properties;
+	//Maps player names to their queues
+	private final HashMap<String, PlayerQueue> queues = new HashMap<String, PlayerQueue>();
+	private long updatesQueued = 0;
+	private long updatesCoalesced = 0;
+	private long updatesDropped = 0;
+	private long updatesSent = 0;
+	private long packetsSent = 0;
+	private long bytesSent = 0;
+	private long throttledTicks = 0;
+	private int peakBacklog = 0;
+
+	public SyncUpdateBatcher(IRegularTickSender sender, DDProperties properties)
+	{
+		this.properties = properties;
+		sender.registerForTicking(this, BATCH_INTERVAL, false,
+				IRegularTickSender.PRIORITY_NORMAL, IRegularTickSender.DEFAULT_BUDGET_MILLIS);
+	}
+
+	public void enqueue(EntityPlayer player, SyncUpdate update)
+	{
+		PlayerQueue queue = queues.get(player.username);
+		if (queue == null || queue.player != player)
+		{
+			if (queue != null)
+			{
+				//The player reconnected. The old queue was meant for the previous connection.
+				updatesDropped += queue.size;
+			}
+			queue = new PlayerQueue(player);
+			queues.put(player.username, queue);
+		}
+		updatesQueued++;
+
+		if (update.type != SyncUpdate.LINK_PUT && update.type != SyncUpdate.LINK_REMOVED)
+		{
+			queue.append(update);
+			return;
+		}
+
+		long key = CoordinatePacker.pack(update.link.locXCoord, update.link.locYCoord, update.link.locZCoord);
+		PendingLink pending = queue.links.get(key);
+		if (pending != null && queue.get(pending.sequence).dimID != update.dimID)
+		{
+			//The queued update is for a link in the dimension the player just left
+			queue.cancel(pending.sequence);
+			queue.links.remove(key);
+			updatesDropped++;
+			pending = null;
+		}
+		if (pending == null)
+		{
+			boolean absentOnClient = (update.type == SyncUpdate.LINK_PUT && update.isNew);
+			queue.links.put(key, new PendingLink(queue.append(update), absentOnClient));
+			return;
+		}
+
+		queue.cancel(pending.sequence);
+		updatesCoalesced++;
+		if (update.type == SyncUpdate.LINK_REMOVED && pending.absentOnClient)
+		{
+			//The client never heard of the link, so it doesn't need to hear of its removal either
+			queue.links.remove(key);
+			updatesCoalesced++;
+		}
+		else
+		{
+			//Send the newer update after any updates queued in between, such as a chunk being cleared
+			pending.sequence = queue.append(update);
+		}
+	}
+
+	public void removePlayer(EntityPlayer player)
+	{
+		PlayerQueue queue = queues.remove(player.username);
+		if (queue != null)
+		{
+			updatesDropped += queue.size;
+		}
+	}
+
+	public void clear()
+	{
+		queues.clear();
+	}
+
+	@Override
+	public void notifyTick()
+	{
+		if (queues.isEmpty())
+		{
+			return;
+		}
+		int limit = Math.max(properties.LinkSyncRateLimit, 1);
+		int count = 0;
+		int backlog = 0;
+		ArrayList<String> emptyQueues = new ArrayList<String>();
+		ArrayList<SyncUpdate> batch = new ArrayList<SyncUpdate>();
+
+		for (PlayerQueue queue : queues.values())
+		{
+			int dimensionID = queue.player.dimension;
+			while (queue.head < queue.slots.size() && batch.size() < limit)
+			{
+				SyncUpdate update = queue.slots.get(queue.head);
+				if (update != null)
+				{
+					queue.slots.set(queue.head, null);
+					queue.size--;
+					if (update.link != null)
+					{
+						queue.links.remove(CoordinatePacker.pack(update.link.locXCoord, update.link.locYCoord, update.link.locZCoord));
+					}
+					if (update.dimID == dimensionID)
+					{
+						batch.add(update);
+					}
+					else
+					{
+						updatesDropped++;
+					}
+				}
+				queue.head++;
+			}
+			queue.compact();
+
+			if (!batch.isEmpty())
+			{
+				for (Packet250CustomPayload packet : SyncUpdateCodec.encode(batch))
+				{
+					PacketDispatcher.sendPacketToPlayer(packet, (Player) queue.player);
+					packetsSent++;
+					bytesSent += packet.length;
+				}
+				count += batch.size();
+				batch.clear();
+			}
+			if (queue.size > 0)
+			{
+				backlog += queue.size;
+			}
+			else
+			{
+				emptyQueues.add(queue.player.username);
+			}
+		}
+
+		for (String username : emptyQueues)
+		{
+			queues.remove(username);
+		}
+		if (backlog > 0)
+		{
+			throttledTicks++;
+			peakBacklog = Math.max(peakBacklog, backlog);
+		}
+		updatesSent += count;
+		DDMetrics.instance().recordWorkItems(this, count);
+	}
+
+	public String getStatistics()
+	{
+		return "Link sync: " + updatesQueued + " updates queued, " + updatesSent + " sent in " + packetsSent +
+				" packets (" + (bytesSent / 1024) + " KB), " + updatesCoalesced + " coalesced, " + updatesDropped +
+				" dropped, " + throttledTicks + " ticks at the rate limit, peak backlog " + peakBacklog;
+	}
+}
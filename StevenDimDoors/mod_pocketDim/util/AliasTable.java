@@ -0,0 +1,190 @@
+package StevenDimDoors.mod_pocketDim.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Picks items at random in proportion to their weights in constant time, using Vose's alias method.
+ * The table is built once from a list of weighted items and can then be sampled any number of times
+ * without allocating anything. Items with weights less than 1 are left out, just as they would never
+ * be picked by WeightedRandom.
+ *
+ * Every column of the table holds one item and, unless that item fills the whole column, an alias for
+ * the rest of it. Sampling picks a column uniformly and then either its item or its alias. Thresholds
+ * are integers scaled by the total weight, so the probabilities are exact.
+ */
+public class AliasTable<T>
+{
+	//If this many samples in a row land on excluded items, fall back to a linear search
+	private static final int MAX_REJECTIONS = 8;
+
+	private final ArrayList<T> items;
+	private final int[] weights;
+	private final long[] thresholds;
+	private final int[] aliases;
+	private final int totalWeight;
+
+	public AliasTable(List<WeightedContainer<T>> source)
+	{
+		//Leave out items that could never be picked
+		long total = 0;
+		this.items = new ArrayList<T>(source.size());
+		ArrayList<Integer> usableWeights = new ArrayList<Integer>(source.size());
+		for (WeightedContainer<T> container : source)
+		{
+			if (container.itemWeight > 0)
+			{
+				items.add(container.getData());
+				usableWeights.add(container.itemWeight);
+				total += container.itemWeight;
+			}
+		}
+		if (total > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("The total weight of the items must fit in an int.");
+		}
+
+		int count = items.size();
+		this.totalWeight = (int) total;
+		this.weights = new int[count];
+		this.thresholds = new long[count];
+		this.aliases = new int[count];
+
+		//Scale the weights so that a column that exactly fits one item holds totalWeight
+		long[] scaled = new long[count];
+		int[] small = new int[count];
+		int[] large = new int[count];
+		int smallCount = 0;
+		int largeCount = 0;
+		for (int index = 0; index < count; index++)
+		{
+			weights[index] = usableWeights.get(index);
+			scaled[index] = (long) weights[index] * count;
+			if (scaled[index] < totalWeight)
+			{
+				small[smallCount++] = index;
+			}
+			else
+			{
+				large[largeCount++] = index;
+			}
+		}
+
+		//Fill each underfull column with part of an overfull one
+		while (smallCount > 0 && largeCount > 0)
+		{
+			int less = small[--smallCount];
+			int more = large[--largeCount];
+			thresholds[less] = scaled[less];
+			aliases[less] = more;
+			scaled[more] -= totalWeight - scaled[less];
+			if (scaled[more] < totalWeight)
+			{
+				small[smallCount++] = more;
+			}
+			else
+			{
+				large[largeCount++] = more;
+			}
+		}
+		//Whatever is left fills its column completely. Leftovers in small can only come from rounding.
+		while (largeCount > 0)
+		{
+			int index = large[--largeCount];
+			thresholds[index] = totalWeight;
+			aliases[index] = index;
+		}
+		while (smallCount > 0)
+		{
+			int index = small[--smallCount];
+			thresholds[index] = totalWeight;
+			aliases[index] = index;
+		}
+	}
+
+	public int size()
+	{
+		return items.size();
+	}
+
+	public boolean isEmpty()
+	{
+		return items.isEmpty();
+	}
+
+	public T get(int index)
+	{
+		return items.get(index);
+	}
+
+	/**
+	 * Returns the index of a random item, or -1 if the table is empty.
+	 */
+	public int sampleIndex(Random random)
+	{
+		if (items.isEmpty())
+		{
+			return -1;
+		}
+		int column = random.nextInt(items.size());
+		return (random.nextInt(totalWeight) < thresholds[column]) ? column : aliases[column];
+	}
+
+	/**
+	 * Returns a random item, or null if the table is empty.
+	 */
+	public T sample(Random random)
+	{
+		int index = sampleIndex(random);
+		return (index >= 0) ? items.get(index) : null;
+	}
+
+	/**
+	 * Returns a random item that isn't in excluded, or null if there are none. The odds of the remaining
+	 * items keep the same proportions as in the full table. Excluded items are rejected a few times before
+	 * the remaining items are searched directly, which is only worthwhile if most of the weight is excluded.
+	 */
+	public T sample(Random random, Collection<?> excluded)
+	{
+		if (excluded == null || excluded.isEmpty())
+		{
+			return sample(random);
+		}
+		for (int attempt = 0; attempt < MAX_REJECTIONS; attempt++)
+		{
+			T item = sample(random);
+			if (item == null || !excluded.contains(item))
+			{
+				return item;
+			}
+		}
+
+		int allowedWeight = 0;
+		for (int index = 0; index < items.size(); index++)
+		{
+			if (!excluded.contains(items.get(index)))
+			{
+				allowedWeight += weights[index];
+			}
+		}
+		if (allowedWeight == 0)
+		{
+			return null;
+		}
+		int target = random.nextInt(allowedWeight);
+		for (int index = 0; index < items.size(); index++)
+		{
+			if (!excluded.contains(items.get(index)))
+			{
+				target -= weights[index];
+				if (target < 0)
+				{
+					return items.get(index);
+				}
+			}
+		}
+		return null;
+	}
+}
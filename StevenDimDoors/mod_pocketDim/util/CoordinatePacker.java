@@ -0,0 +1,39 @@
+package StevenDimDoors.mod_pocketDim.util;
+
+/**
+ * Packs block coordinates into a single long so they can be used as keys without boxing.
+ * X and Z get 26 bits each, which covers the +/-30,000,000 block world border, and Y gets 12 bits.
+ * All three coordinates are stored as signed values and can be unpacked again.
+ */
+public final class CoordinatePacker
+{
+	private static final int XZ_BITS = 26;
+	private static final int Y_BITS = 12;
+	private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+	private static final long Y_MASK = (1L << Y_BITS) - 1;
+	private static final int Z_SHIFT = Y_BITS;
+	private static final int X_SHIFT = Y_BITS + XZ_BITS;
+
+	private CoordinatePacker() { }
+
+	public static long pack(int x, int y, int z)
+	{
+		return ((x & XZ_MASK) << X_SHIFT) | ((z & XZ_MASK) << Z_SHIFT) | (y & Y_MASK);
+	}
+
+	public static int unpackX(long packed)
+	{
+		//Shift the field up to the top of the long and back down to restore its sign
+		return (int) (packed >> X_SHIFT);
+	}
+
+	public static int unpackY(long packed)
+	{
+		return (int) ((packed << (64 - Y_BITS)) >> (64 - Y_BITS));
+	}
+
+	public static int unpackZ(long packed)
+	{
+		return (int) ((packed << (64 - X_SHIFT)) >> (64 - XZ_BITS));
+	}
+}
@@ -0,0 +1,277 @@
+package StevenDimDoors.mod_pocketDim.util;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A hash map from primitive long keys to objects that uses open addressing with linear probing.
+ * Keys are never boxed and entries are stored in two flat arrays, so lookups don't allocate.
+ * Removal shifts later entries back instead of leaving tombstones, and the table shrinks when
+ * most of its entries have been removed. Null values are not allowed.
+ *
+ * Iterating over the values is done either through iterator() or, without allocating anything,
+ * by looping from 0 to capacity() and skipping the slots for which valueAt() returns null.
+ */
+public class LongOpenHashMap<T> implements Iterable<T>
+{
+	private static final int MIN_CAPACITY = 8;
+	//The table grows when more than 3/4 of it is used and shrinks when less than 1/8 is used
+	private static final int LOAD_FACTOR_NUMERATOR = 3;
+	private static final int LOAD_FACTOR_DENOMINATOR = 4;
+	private static final int SHRINK_DIVISOR = 8;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+	private int mask;
+	private int modCount;
+
+	public LongOpenHashMap()
+	{
+		this(MIN_CAPACITY);
+	}
+
+	public LongOpenHashMap(int expectedSize)
+	{
+		allocate(capacityFor(expectedSize));
+	}
+
+	private static int capacityFor(int expectedSize)
+	{
+		int capacity = MIN_CAPACITY;
+		while (capacity * LOAD_FACTOR_NUMERATOR / LOAD_FACTOR_DENOMINATOR < expectedSize)
+		{
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int hash(long key)
+	{
+		//Finalization step of MurmurHash3. Packed coordinates differ mostly in a few bits,
+		//so they need to be mixed well before they're used to pick a slot.
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private int findSlot(long key)
+	{
+		int slot = hash(key) & mask;
+		while (values[slot] != null)
+		{
+			if (keys[slot] == key)
+			{
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return (size == 0);
+	}
+
+	public boolean containsKey(long key)
+	{
+		return (findSlot(key) >= 0);
+	}
+
+	@SuppressWarnings("unchecked")
+	public T get(long key)
+	{
+		int slot = findSlot(key);
+		return (slot >= 0) ? (T) values[slot] : null;
+	}
+
+	/**
+	 * Associates a value with a key and returns the value that was previously associated with it, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public T put(long key, T value)
+	{
+		if (value == null)
+		{
+			throw new IllegalArgumentException("value cannot be null.");
+		}
+		int slot = hash(key) & mask;
+		while (values[slot] != null)
+		{
+			if (keys[slot] == key)
+			{
+				T previous = (T) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		modCount++;
+		if (size > keys.length * LOAD_FACTOR_NUMERATOR / LOAD_FACTOR_DENOMINATOR)
+		{
+			resize(keys.length << 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the value associated with a key and returns it, or returns null if there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	public T remove(long key)
+	{
+		int slot = findSlot(key);
+		if (slot < 0)
+		{
+			return null;
+		}
+		T previous = (T) values[slot];
+
+		//Shift back any entries that were displaced past the removed slot so that
+		//every entry can still be reached from its home slot without tombstones.
+		int gap = slot;
+		int current = (slot + 1) & mask;
+		while (values[current] != null)
+		{
+			int home = hash(keys[current]) & mask;
+			//Move the entry if its home slot isn't cyclically between the gap and its current slot
+			if (((current - home) & mask) >= ((current - gap) & mask))
+			{
+				keys[gap] = keys[current];
+				values[gap] = values[current];
+				gap = current;
+			}
+			current = (current + 1) & mask;
+		}
+		values[gap] = null;
+		size--;
+		modCount++;
+		if (keys.length > MIN_CAPACITY && size < keys.length / SHRINK_DIVISOR)
+		{
+			resize(keys.length >> 1);
+		}
+		return previous;
+	}
+
+	public void clear()
+	{
+		if (size > 0 || keys.length > MIN_CAPACITY)
+		{
+			allocate(MIN_CAPACITY);
+			size = 0;
+			modCount++;
+		}
+	}
+
+	private void resize(int capacity)
+	{
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		for (int index = 0; index < oldKeys.length; index++)
+		{
+			if (oldValues[index] != null)
+			{
+				int slot = hash(oldKeys[index]) & mask;
+				while (values[slot] != null)
+				{
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[index];
+				values[slot] = oldValues[index];
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of slots in the table, for use with keyAt() and valueAt().
+	 */
+	public int capacity()
+	{
+		return keys.length;
+	}
+
+	public long keyAt(int slot)
+	{
+		return keys[slot];
+	}
+
+	/**
+	 * Returns the value in a slot of the table, or null if the slot is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public T valueAt(int slot)
+	{
+		return (T) values[slot];
+	}
+
+	@Override
+	public Iterator<T> iterator()
+	{
+		return new ValueIterator();
+	}
+
+	private class ValueIterator implements Iterator<T>
+	{
+		private final int expectedModCount = modCount;
+		private int next = advance(0);
+
+		private int advance(int slot)
+		{
+			while (slot < values.length && values[slot] == null)
+			{
+				slot++;
+			}
+			return slot;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return (next < values.length);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T next()
+		{
+			if (modCount != expectedModCount)
+			{
+				throw new ConcurrentModificationException();
+			}
+			if (next >= values.length)
+			{
+				throw new NoSuchElementException();
+			}
+			T value = (T) values[next];
+			next = advance(next + 1);
+			return value;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+}
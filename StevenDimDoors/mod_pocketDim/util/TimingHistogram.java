@@ -0,0 +1,97 @@
+package StevenDimDoors.mod_pocketDim.util;
+
+/**
+ * Records durations in nanoseconds using power-of-two buckets, so recording is constant time and the memory
+ * used doesn't grow with the number of samples. Percentiles are reported as the upper bound of the bucket
+ * they fall in, which is accurate to within a factor of two.
+ */
+public class TimingHistogram
+{
+	private static final int BUCKET_COUNT = 64;
+
+	private final long[] buckets = new long[BUCKET_COUNT];
+	private long count = 0;
+	private long totalNanos = 0;
+	private long maxNanos = 0;
+	private long workItems = 0;
+
+	public void record(long nanos)
+	{
+		if (nanos < 0)
+		{
+			nanos = 0;
+		}
+		//Bucket i holds the durations whose highest set bit is bit i - 1, so its upper bound is 2^i - 1
+		buckets[BUCKET_COUNT - Long.numberOfLeadingZeros(nanos)]++;
+		count++;
+		totalNanos += nanos;
+		if (nanos > maxNanos)
+		{
+			maxNanos = nanos;
+		}
+	}
+
+	public void addWorkItems(long items)
+	{
+		workItems += items;
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public long getTotalNanos()
+	{
+		return totalNanos;
+	}
+
+	public long getMeanNanos()
+	{
+		return (count > 0) ? totalNanos / count : 0;
+	}
+
+	public long getMaxNanos()
+	{
+		return maxNanos;
+	}
+
+	public long getWorkItems()
+	{
+		return workItems;
+	}
+
+	/**
+	 * Returns an upper bound on the given percentile of the recorded durations, for instance 0.99 for the 99th percentile.
+	 */
+	public long getPercentileNanos(double fraction)
+	{
+		if (count == 0)
+		{
+			return 0;
+		}
+		long target = (long) Math.ceil(fraction * count);
+		long seen = 0;
+		for (int index = 0; index < BUCKET_COUNT; index++)
+		{
+			seen += buckets[index];
+			if (seen >= target)
+			{
+				return Math.min((1L << index) - 1, maxNanos);
+			}
+		}
+		return maxNanos;
+	}
+
+	public void reset()
+	{
+		for (int index = 0; index < BUCKET_COUNT; index++)
+		{
+			buckets[index] = 0;
+		}
+		count = 0;
+		totalNanos = 0;
+		maxNanos = 0;
+		workItems = 0;
+	}
+}
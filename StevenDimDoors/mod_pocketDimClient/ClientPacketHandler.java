@@ -1,23 +1,94 @@
-
-
-// This is my package declaration, do not mess with the standard (package net.minecraft.src;) like I did,
-// Because I know what Im doing in this part, If you don't know what your doing keep it the normal (package net.minecraft.src;)
 package StevenDimDoors.mod_pocketDimClient;
 
-// Theses are all the imports you need
+import java.io.IOException;
+
 import net.minecraft.network.INetworkManager;
 import net.minecraft.network.packet.Packet250CustomPayload;
+import net.minecraftforge.common.DimensionManager;
+import StevenDimDoors.mod_pocketDim.DDProperties;
+import StevenDimDoors.mod_pocketDim.DimData;
+import StevenDimDoors.mod_pocketDim.LinkData;
+import StevenDimDoors.mod_pocketDim.SyncUpdate;
+import StevenDimDoors.mod_pocketDim.SyncUpdateCodec;
+import StevenDimDoors.mod_pocketDim.helpers.dimHelper;
+import cpw.mods.fml.client.FMLClientHandler;
 import cpw.mods.fml.common.network.IPacketHandler;
 import cpw.mods.fml.common.network.Player;
 
-// Create a class and implement IPacketHandler
-// This just handles the data packets in the server
-public class ClientPacketHandler implements IPacketHandler{
-
+/**
+ * Applies the dimension and link updates that the server sends in batches, see SyncUpdateCodec.
+ */
+public class ClientPacketHandler implements IPacketHandler
+{
 	@Override
-	public void onPacketData(INetworkManager manager,
-			Packet250CustomPayload packet, Player player) {
-		// TODO Auto-generated method stub
+	public void onPacketData(INetworkManager manager, Packet250CustomPayload packet, Player player)
+	{
+		if (!packet.channel.equals(SyncUpdateCodec.CHANNEL))
+		{
+			return;
+		}
+		//In singleplayer, the client shares the server's dimension data, so there's nothing to update.
+		//Applying the updates anyway could remove links that the server still has.
+		if (FMLClientHandler.instance().getClient().isIntegratedServerRunning())
+		{
+			return;
+		}
+
+		try
+		{
+			for (SyncUpdate update : SyncUpdateCodec.decode(packet.data))
+			{
+				apply(update);
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Failed to read a DimDoors sync packet: " + e.getMessage());
+		}
+	}
 
+	private static void apply(SyncUpdate update)
+	{
+		DimData dimData;
+		switch (update.type)
+		{
+			case SyncUpdate.DIMENSION:
+				if (!dimHelper.dimList.containsKey(update.dimID))
+				{
+					dimHelper.dimList.put(update.dimID, update.dimension);
+				}
+				if (update.dimension.isPocket)
+				{
+					try
+					{
+						DimensionManager.registerDimension(update.dimID, DDProperties.instance().PocketProviderID);
+					}
+					catch (Exception e)
+					{
+						//The dimension is already registered
+					}
+				}
+				break;
+			case SyncUpdate.LINK_PUT:
+				dimHelper.instance.createLink(update.link);
+				break;
+			case SyncUpdate.LINK_REMOVED:
+				dimData = dimHelper.dimList.get(update.dimID);
+				if (dimData != null)
+				{
+					dimData.removeLinkAtCoords(update.link);
+				}
+				break;
+			case SyncUpdate.CHUNK_CLEARED:
+				dimData = dimHelper.dimList.get(update.dimID);
+				if (dimData != null)
+				{
+					for (LinkData link : dimData.getLinksInChunk(update.chunkX, update.chunkZ))
+					{
+						dimData.removeLinkAtCoords(link);
+					}
+				}
+				break;
+		}
 	}
 }